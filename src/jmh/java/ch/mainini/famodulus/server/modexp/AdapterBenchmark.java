@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.modexp;
+
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.P_3072;
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.randomModexp;
+import ch.mainini.famodulus.server.util.BigIntegerStringAdapter;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of BigIntegerStringAdapter for a 3072 bit value, compared to the
+ * radix conversion of BigInteger it replaces.
+ * @author Pascal Mainini
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdapterBenchmark {
+
+//////////////////////////////////////// Fields
+
+    private final BigIntegerStringAdapter adapter = new BigIntegerStringAdapter();
+
+    private BigInteger value;
+    private String hex;
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Chooses a random value.
+     */
+    @Setup
+    public void setUp() {
+        value = randomModexp(P_3072, 3072)[1];
+        hex = value.toString(16);
+    }
+
+    /**
+     * @return the value marshaled by the adapter
+     */
+    @Benchmark
+    public String marshal() {
+        return adapter.marshal(value);
+    }
+
+    /**
+     * @return the value unmarshaled by the adapter
+     */
+    @Benchmark
+    public BigInteger unmarshal() {
+        return adapter.unmarshal(hex);
+    }
+
+    /**
+     * @return the value converted using BigInteger.toString(16)
+     */
+    @Benchmark
+    public String marshalRadix() {
+        return value.toString(16);
+    }
+
+    /**
+     * @return the value converted using new BigInteger(hex, 16)
+     */
+    @Benchmark
+    public BigInteger unmarshalRadix() {
+        return new BigInteger(hex, 16);
+    }
+}
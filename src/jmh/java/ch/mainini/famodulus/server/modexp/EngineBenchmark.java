@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.modexp;
+
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.P_1024;
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.P_2048;
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.P_3072;
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.randomModexp;
+import ch.mainini.famodulus.server.compute.FixedBaseTable;
+import ch.mainini.famodulus.server.compute.GmpEngine;
+import ch.mainini.famodulus.server.compute.MontgomeryContext;
+import com.squareup.jnagmp.Gmp;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of a single modexp with full-size base and exponent, comparing
+ * the available engines for the safe primes of the unit tests, of multiple
+ * bases sharing the exponent, and of building and using a fixed base table.
+ * @author Pascal Mainini
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EngineBenchmark {
+
+//////////////////////////////////////// Constants
+
+    private static final int SHARED_EXPONENT_BASES = 16;
+
+    private static final GmpEngine GMP_ENGINE = new GmpEngine();
+
+    private static final int TABLE_WINDOW = 5;
+
+//////////////////////////////////////// Fields
+
+    @Param({ "1024", "2048", "3072" })
+    private int bits;
+
+    private BigInteger modulus;
+    private BigInteger base;
+    private BigInteger exponent;
+    private BigInteger[] bases;
+    private FixedBaseTable table;
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Chooses the prime and a random base and exponent of the given size.
+     */
+    @Setup
+    public void setUp() {
+        modulus = bits == 1024 ? P_1024 : bits == 2048 ? P_2048 : P_3072;
+        final BigInteger[] modexp = randomModexp(modulus, bits);
+        base = modexp[1];
+        exponent = modexp[2];
+
+        bases = new BigInteger[SHARED_EXPONENT_BASES];
+        for(int i = 0; i < bases.length; i++) {
+            bases[i] = randomModexp(modulus, bits)[1];
+        }
+        table = new FixedBaseTable(base, modulus, bits, TABLE_WINDOW);
+    }
+
+    /**
+     * @return the result using Gmp.modPowSecure()
+     */
+    @Benchmark
+    public BigInteger gmpSecure() {
+        return Gmp.modPowSecure(base, exponent, modulus);
+    }
+
+    /**
+     * @return the result using Gmp.modPowInsecure()
+     */
+    @Benchmark
+    public BigInteger gmpInsecure() {
+        return Gmp.modPowInsecure(base, exponent, modulus);
+    }
+
+    /**
+     * @return the result using BigInteger.modPow()
+     */
+    @Benchmark
+    public BigInteger bigInteger() {
+        return base.modPow(exponent, modulus);
+    }
+
+    /**
+     * @return the result using the cached MontgomeryContext
+     */
+    @Benchmark
+    public BigInteger montgomery() {
+        return MontgomeryContext.of(modulus).modPow(base, exponent);
+    }
+
+    /**
+     * @return the results of all bases using separate calls of Gmp.modPowSecure()
+     */
+    @Benchmark
+    public BigInteger[] gmpSecureSeparate() {
+        final BigInteger[] results = new BigInteger[bases.length];
+        for(int i = 0; i < bases.length; i++) {
+            results[i] = Gmp.modPowSecure(bases[i], exponent, modulus);
+        }
+        return results;
+    }
+
+    /**
+     * @return the results of all bases using the shared exponent path of GmpEngine
+     */
+    @Benchmark
+    public BigInteger[] gmpSecureSharedExponent() {
+        return GMP_ENGINE.modPow(bases, exponent, modulus);
+    }
+
+    /**
+     * @return the results of all bases using the shared exponent path of MontgomeryContext
+     */
+    @Benchmark
+    public BigInteger[] montgomerySharedExponent() {
+        return MontgomeryContext.of(modulus).modPow(bases, exponent);
+    }
+
+    /**
+     * @return the result using a prebuilt fixed base table
+     */
+    @Benchmark
+    public BigInteger fixedBaseTable() {
+        return table.modPow(exponent);
+    }
+
+    /**
+     * @return a newly built fixed base table for the base and exponents of the given size
+     */
+    @Benchmark
+    public FixedBaseTable fixedBaseTableBuild() {
+        return new FixedBaseTable(base, modulus, bits, TABLE_WINDOW);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.modexp;
+
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.P_3072;
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.randomModexp;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the MOXy JSON binding of ModExpQueryBean for queries of
+ * various sizes with 3072 bit values.
+ * @author Pascal Mainini
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+//////////////////////////////////////// Fields
+
+    @Param({ "1", "16", "256", "4096" })
+    private int batchSize;
+
+    private ModExpJson json;
+    private ModExpQueryBean query;
+    private String serialized;
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Creates a full query of random modexps including results.
+     * @throws IOException in case of trouble
+     */
+    @Setup
+    public void setUp() throws IOException {
+        json = new ModExpJson();
+        final ModExpBean[] modexps = new ModExpBean[batchSize];
+        for(int i = 0; i < batchSize; i++) {
+            final BigInteger[] modexp = randomModexp(P_3072, 3072);
+            modexps[i] = new ModExpBean(modexp[0], modexp[1], modexp[2], modexp[3]);
+        }
+        query = new ModExpQueryBean(modexps);
+        query.setBrief(false);
+        serialized = write();
+    }
+
+    /**
+     * @return the query read from JSON
+     */
+    @Benchmark
+    public ModExpQueryBean read() {
+        return json.read(new StringReader(serialized), ModExpQueryBean.class);
+    }
+
+    /**
+     * @return the query written as JSON
+     * @throws IOException in case of trouble
+     */
+    @Benchmark
+    public String write() throws IOException {
+        final StringWriter writer = new StringWriter();
+        json.write(query, writer);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.modexp;
+
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.P_3072;
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.randomModexp;
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.serializeModexp;
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.serializeQuery;
+import ch.mainini.famodulus.server.Server;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end benchmark of a POST to /api/modexp against an in-process server,
+ * including HTTP, JSON binding and calculation of 3072 bit modexps.
+ * @author Pascal Mainini
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBenchmark {
+
+//////////////////////////////////////// Constants
+
+    private static final String API_URI = "http://localhost:8091/" + Server.API_PATH;
+
+//////////////////////////////////////// Fields
+
+    @Param({ "1", "16", "64" })
+    private int batchSize;
+
+    private HttpServer server;
+    private Client client;
+    private WebTarget target;
+    private String query;
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Starts the server and creates a brief query of random modexps.
+     */
+    @Setup
+    public void setUp() {
+        server = Server.startServer(API_URI);
+        client = ClientBuilder.newClient();
+        target = client.target(API_URI).path("modexp");
+
+        final String[] modexps = new String[batchSize];
+        for(int i = 0; i < batchSize; i++) {
+            final BigInteger[] modexp = randomModexp(P_3072, 3072);
+            modexps[i] = serializeModexp(modexp, false);
+        }
+        query = serializeQuery(null, null, null, true, modexps);
+    }
+
+    /**
+     * Stops client and server.
+     */
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.shutdownNow();
+    }
+
+    /**
+     * @return the response of the server
+     */
+    @Benchmark
+    public String post() {
+        return target.request().post(Entity.entity(query, MediaType.APPLICATION_JSON), String.class);
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * JMH benchmarks for package ch.mainini.famodulus.server.modexp and the
+ * calculation engines it uses.
+ */
+package ch.mainini.famodulus.server.modexp;
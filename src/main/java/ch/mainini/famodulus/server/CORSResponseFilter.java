@@ -49,7 +49,7 @@ public class CORSResponseFilter implements ContainerResponseFilter {
     public void filter(ContainerRequestContext ctx, ContainerResponseContext res) {
         MultivaluedMap<String, Object> headers = res.getHeaders();
         headers.add("Access-Control-Allow-Origin", origin);
-        headers.add("Access-Control-Allow-Methods", "GET, POST");
-        headers.add("Access-Control-Allow-Headers", "X-Requested-With, Content-Type");
+        headers.add("Access-Control-Allow-Methods", "GET, POST, DELETE");
+        headers.add("Access-Control-Allow-Headers", "X-Requested-With, Content-Type, Content-Encoding");
     }
 }
\ No newline at end of file
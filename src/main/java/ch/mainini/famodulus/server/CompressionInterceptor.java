@@ -0,0 +1,353 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server;
+
+import ch.mainini.famodulus.server.metrics.Metrics;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import javax.annotation.Priority;
+import javax.ws.rs.NotSupportedException;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Interceptor decompressing gzip or deflate encoded request entities and
+ * compressing response entities if the client accepts it.
+ *
+ * Responses are only compressed if their media type is listed in the system
+ * property famodulus.compression.mime_types and they are at least
+ * famodulus.compression.min_size bytes long (-1 disables compression).
+ * Streamed responses are compressed regardless of their size. The time spent
+ * in (de)compression is recorded in the default Metrics.
+ * @author Pascal Mainini
+ */
+@Provider
+@Priority(Priorities.ENTITY_CODER)
+public class CompressionInterceptor implements ReaderInterceptor, WriterInterceptor {
+
+//////////////////////////////////////// Constants
+
+    private static final Logger LOG = Logger.getLogger(CompressionInterceptor.class.getName());
+
+    private static final String ENCODING_GZIP = "gzip";
+    private static final String ENCODING_X_GZIP = "x-gzip";
+    private static final String ENCODING_DEFLATE = "deflate";
+    private static final String ENCODING_IDENTITY = "identity";
+
+    private static final int DEFAULT_MIN_SIZE = 1024;
+    private static final String DEFAULT_MIME_TYPES = MediaType.APPLICATION_JSON + ",application/x-ndjson," + MediaType.TEXT_PLAIN;
+
+//////////////////////////////////////// Fields
+
+    private final int minSize;
+    private final List<MediaType> mimeTypes = new ArrayList<>();
+
+    @Context
+    private HttpHeaders requestHeaders;
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Default constructor, retrieves minimum size and MIME types from system properties.
+     */
+    public CompressionInterceptor() {
+        this.minSize = Integer.getInteger("famodulus.compression.min_size", DEFAULT_MIN_SIZE);
+        for(String type: System.getProperty("famodulus.compression.mime_types", DEFAULT_MIME_TYPES).split(",")) {
+            if(!type.trim().isEmpty()) {
+                mimeTypes.add(MediaType.valueOf(type.trim()));
+            }
+        }
+        LOG.finest(String.format("Interceptor instantiated! Compressing %s from %d bytes.", mimeTypes, minSize));
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Decompresses the request entity according to its Content-Encoding.
+     * @param context the context of the reader
+     * @return the entity read
+     * @throws IOException in case reading fails
+     * @throws NotSupportedException if the encoding is not supported
+     */
+    @Override
+    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException {
+        final String encoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if(encoding != null && !ENCODING_IDENTITY.equalsIgnoreCase(encoding.trim())) {
+            final String name = encoding.trim().toLowerCase(Locale.ENGLISH);
+            final TimedInputStream timed;
+            if(ENCODING_GZIP.equals(name) || ENCODING_X_GZIP.equals(name)) {
+                timed = new TimedInputStream(new GZIPInputStream(context.getInputStream()));
+            } else if(ENCODING_DEFLATE.equals(name)) {
+                timed = new TimedInputStream(new InflaterInputStream(context.getInputStream()));
+            } else {
+                throw new NotSupportedException("Unsupported content encoding: " + encoding);
+            }
+            context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+            context.setInputStream(timed);
+            try {
+                return context.proceed();
+            } finally {
+                Metrics.getDefault().recordDecompress(timed.nanos);
+            }
+        }
+        return context.proceed();
+    }
+
+    /**
+     * Compresses the response entity if its type is compressible and the
+     * client accepts a supported encoding.
+     * @param context the context of the writer
+     * @throws IOException in case writing fails
+     */
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        if(minSize < 0 || !isCompressible(context.getMediaType())) {
+            context.proceed();
+            return;
+        }
+
+        context.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        final String encoding = requestHeaders != null ? negotiate(requestHeaders.getRequestHeader(HttpHeaders.ACCEPT_ENCODING)) : null;
+        if(encoding == null) {
+            context.proceed();
+            return;
+        }
+
+        final CompressingOutputStream out = new CompressingOutputStream(context, encoding,
+                context.getEntity() instanceof StreamingOutput ? 0 : minSize);
+        context.setOutputStream(out);
+        context.proceed();
+        out.close();
+        if(out.compressor != null) {
+            Metrics.getDefault().recordCompress(out.nanos);
+        }
+    }
+
+    /**
+     * @param type the media type of the response
+     * @return true if responses of the given type are compressed
+     */
+    private boolean isCompressible(MediaType type) {
+        if(type == null) {
+            return false;
+        }
+        for(MediaType mimeType: mimeTypes) {
+            if(mimeType.isCompatible(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Chooses the encoding of the response, preferring gzip over deflate.
+     * Encodings rejected explicitly with q=0 are not matched by "*", regardless
+     * of the order of the entries. If no encoding is acceptable, the response
+     * is sent uncompressed, even if identity is rejected.
+     * @param acceptEncoding the values of the Accept-Encoding header, may be null
+     * @return the encoding to use or null for no compression
+     */
+    static String negotiate(List<String> acceptEncoding) {
+        if(acceptEncoding == null) {
+            return null;
+        }
+
+        boolean gzip = false;
+        boolean deflate = false;
+        boolean any = false;
+        boolean gzipRejected = false;
+        boolean deflateRejected = false;
+        for(String header: acceptEncoding) {
+            for(String element: header.split(",")) {
+                final String[] parts = element.split(";");
+                final String name = parts[0].trim().toLowerCase(Locale.ENGLISH);
+                boolean accepted = true;
+                for(int i = 1; i < parts.length; i++) {
+                    final String parameter = parts[i].trim();
+                    if(parameter.startsWith("q=")) {
+                        try {
+                            accepted = Double.parseDouble(parameter.substring(2)) > 0;
+                        } catch(NumberFormatException e) {
+                            accepted = false;
+                        }
+                    }
+                }
+                final boolean isGzip = ENCODING_GZIP.equals(name) || ENCODING_X_GZIP.equals(name);
+                final boolean isDeflate = ENCODING_DEFLATE.equals(name);
+                if(!accepted) {
+                    gzipRejected |= isGzip;
+                    deflateRejected |= isDeflate;
+                    continue;
+                }
+                gzip |= isGzip;
+                deflate |= isDeflate;
+                any |= "*".equals(name);
+            }
+        }
+        if(!gzipRejected && (gzip || any)) {
+            return ENCODING_GZIP;
+        }
+        return !deflateRejected && (deflate || any) ? ENCODING_DEFLATE : null;
+    }
+
+///////////////////// Inner classes
+
+    /**
+     * Stream measuring the time spent reading from the decompressing stream.
+     */
+    private static class TimedInputStream extends FilterInputStream {
+
+        private long nanos;
+
+        /**
+         * @param in the decompressing stream to read from
+         */
+        TimedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final long startTime = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                nanos += System.nanoTime() - startTime;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final long startTime = System.nanoTime();
+            try {
+                return super.read(b, off, len);
+            } finally {
+                nanos += System.nanoTime() - startTime;
+            }
+        }
+    }
+
+    /**
+     * Stream buffering the entity up to the minimum size, then switching to
+     * compression and setting the Content-Encoding header. Entities smaller
+     * than the minimum size are written uncompressed when closed. Closing does
+     * not close the underlying stream, which is left to Jersey.
+     */
+    private static class CompressingOutputStream extends OutputStream {
+
+        private final WriterInterceptorContext context;
+        private final OutputStream target;
+        private final String encoding;
+        private final int minSize;
+
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private DeflaterOutputStream compressor;
+        private boolean closed;
+        private long nanos;
+
+        /**
+         * @param context the context of the writer, providing stream and headers
+         * @param encoding the encoding to use, gzip or deflate
+         * @param minSize the size from which on the entity is compressed
+         */
+        CompressingOutputStream(WriterInterceptorContext context, String encoding, int minSize) {
+            this.context = context;
+            this.target = context.getOutputStream();
+            this.encoding = encoding;
+            this.minSize = minSize;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if(compressor == null && buffer.size() + len < minSize) {
+                buffer.write(b, off, len);
+                return;
+            }
+            if(compressor == null) {
+                startCompression();
+            }
+
+            final long startTime = System.nanoTime();
+            compressor.write(b, off, len);
+            nanos += System.nanoTime() - startTime;
+        }
+
+        /**
+         * Flushes the compressed data, uncompressed data is kept until the
+         * minimum size is reached or the stream is closed.
+         * @throws IOException in case flushing fails
+         */
+        @Override
+        public void flush() throws IOException {
+            if(compressor != null) {
+                final long startTime = System.nanoTime();
+                compressor.flush();
+                nanos += System.nanoTime() - startTime;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(closed) {
+                return;
+            }
+            closed = true;
+
+            if(compressor == null && minSize == 0) {
+                startCompression();
+            }
+            if(compressor != null) {
+                final long startTime = System.nanoTime();
+                compressor.finish();
+                nanos += System.nanoTime() - startTime;
+            } else {
+                buffer.writeTo(target);
+            }
+            target.flush();
+        }
+
+        /**
+         * Sets the Content-Encoding header, creates the compressor and
+         * compresses the buffered data.
+         * @throws IOException in case writing fails
+         */
+        private void startCompression() throws IOException {
+            context.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+            context.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+
+            final long startTime = System.nanoTime();
+            compressor = ENCODING_GZIP.equals(encoding) ? new GZIPOutputStream(target, true) : new DeflaterOutputStream(target, true);
+            buffer.writeTo(compressor);
+            nanos += System.nanoTime() - startTime;
+            buffer = null;
+        }
+    }
+}
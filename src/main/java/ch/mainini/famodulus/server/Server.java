@@ -5,12 +5,25 @@
  */
 package ch.mainini.famodulus.server;
 
+import ch.mainini.famodulus.server.store.TableStore;
+import ch.mainini.famodulus.server.warmup.WarmUp;
 import java.io.IOException;
 import java.net.URI;
 import java.util.logging.Logger;
+import javax.ws.rs.ProcessingException;
+import org.glassfish.grizzly.IOStrategy;
 import org.glassfish.grizzly.http.server.CLStaticHttpHandler;
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.strategies.LeaderFollowerNIOStrategy;
+import org.glassfish.grizzly.strategies.SameThreadIOStrategy;
+import org.glassfish.grizzly.strategies.SimpleDynamicNIOStrategy;
+import org.glassfish.grizzly.strategies.WorkerThreadIOStrategy;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpContainer;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ContainerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
 
 /**
@@ -34,6 +47,25 @@ public class Server {
 
     private static final Logger LOG = Logger.getLogger(Server.class.getName());
 
+    /**
+     * Name prefix of the additional listeners, the default one is named "grizzly".
+     */
+    private static final String LISTENER_NAME = "famodulus";
+
+    private static final String IO_STRATEGY_SAME = "same";
+    private static final String IO_STRATEGY_WORKER = "worker";
+    private static final String IO_STRATEGY_LEADER = "leader";
+    private static final String IO_STRATEGY_DYNAMIC = "dynamic";
+
+    /**
+     * Defaults as used by Grizzly, -1 meaning unlimited.
+     */
+    private static final long DEFAULT_MAX_POST_SIZE = -1;
+    private static final int DEFAULT_WORKER_QUEUE_LIMIT = -1;
+    private static final int DEFAULT_BACKLOG = 4096;
+    private static final int DEFAULT_KEEPALIVE_MAX_REQUESTS = 256;
+    private static final int DEFAULT_KEEPALIVE_IDLE_TIMEOUT = 30;
+
 
 //////////////////////////////////////// Methods
 
@@ -45,6 +77,11 @@ public class Server {
     public static void main(String[] args) throws IOException {
         LOG.info("Configuring and starting famodulus-server webserver...");
 
+        final TableStore store = TableStore.getDefault();
+        if(store.isEnabled()) {
+            LOG.info(String.format("Mapped %d precomputed tables, %d bytes.", store.size(), store.getBytes()));
+        }
+
         final String base = System.getProperty("famodulus.base", DEFAULT_BASE_URI);
         final HttpServer server = startServer(base + API_PATH);
 
@@ -69,7 +106,16 @@ public class Server {
 
     /**
      * Starts the Grizzly HTTP server exposing JAX-RS resources defined in this
-     * application at the given URI.
+     * application at the given URI, and on all additional listeners
+     * configured using famodulus.listeners. The listeners are configured
+     * according to the famodulus.transport.* and famodulus.keepalive.*
+     * system properties.
+     *
+     * Before the listeners are opened, the application is warmed up as
+     * configured by the famodulus.warmup.* system properties. If
+     * famodulus.warmup.background is true, the listeners are opened at once
+     * and the warm-up runs in the background, /api/ready reports when it is
+     * done.
      *
      * @param apiURI Full URI to start the API at
      * @return The running Grizzly HTTP server.
@@ -77,9 +123,95 @@ public class Server {
     public static HttpServer startServer(String apiURI) {
         LOG.fine("Adding JAX-RS resources...");
         final ResourceConfig resourceConfig = new ResourceConfig().packages("ch.mainini.famodulus");
-        final HttpServer httpServer = GrizzlyHttpServerFactory.createHttpServer(URI.create(apiURI), resourceConfig);
+        final GrizzlyHttpContainer container = ContainerFactory.createContainer(GrizzlyHttpContainer.class, resourceConfig);
+        final HttpServer httpServer = GrizzlyHttpServerFactory.createHttpServer(URI.create(apiURI), container, false, null, false);
         httpServer.getServerConfiguration().addHttpHandler(new CLStaticHttpHandler(Server.class.getClassLoader(), "ch/mainini/famodulus/server/"), "/");
-
+        httpServer.getServerConfiguration().setMaxPostSize(Long.getLong("famodulus.max_post_size", DEFAULT_MAX_POST_SIZE));
+
+        final String listeners = System.getProperty("famodulus.listeners", "");
+        int count = 0;
+        for(String listener: listeners.split(",")) {
+            if(!listener.trim().isEmpty()) {
+                final URI uri = URI.create(listener.trim());
+                httpServer.addListener(new NetworkListener(LISTENER_NAME + "-" + ++count, uri.getHost(), uri.getPort()));
+            }
+        }
+        for(NetworkListener listener: httpServer.getListeners()) {
+            configureListener(listener);
+        }
+
+        final WarmUp warmUp = new WarmUp(container.getApplicationHandler(), URI.create(apiURI + "/"));
+        final boolean background = Boolean.getBoolean("famodulus.warmup.background");
+        if(background) {
+            WarmUp.reset();
+        } else {
+            warmUp.run();
+        }
+
+        try {
+            httpServer.start();
+        } catch(IOException e) {
+            throw new ProcessingException("Could not start the server!", e);
+        }
+
+        if(background) {
+            final Thread thread = new Thread(warmUp, "famodulus-warmup");
+            thread.setDaemon(true);
+            thread.start();
+        }
         return httpServer;
     }
+
+    /**
+     * Configures the transport, worker threads and keep-alive of a listener.
+     * @param listener the listener to configure
+     */
+    private static void configureListener(NetworkListener listener) {
+        final TCPNIOTransport transport = listener.getTransport();
+        final Integer selectorThreads = Integer.getInteger("famodulus.transport.selector_threads");
+        if(selectorThreads != null) {
+            transport.setSelectorRunnersCount(selectorThreads);
+        }
+        transport.setIOStrategy(ioStrategy(System.getProperty("famodulus.transport.io_strategy", IO_STRATEGY_WORKER)));
+        if(transport.getWorkerThreadPoolConfig() == null) {
+            // the same thread strategy creates no worker pool, but the queue limit and worker threads still apply
+            transport.setWorkerThreadPoolConfig(WorkerThreadIOStrategy.getInstance().createDefaultWorkerPoolConfig(transport));
+        }
+        final ThreadPoolConfig workers = transport.getWorkerThreadPoolConfig();
+        final Integer workerThreads = Integer.getInteger("famodulus.transport.worker_threads");
+        if(workerThreads != null) {
+            workers.setCorePoolSize(workerThreads).setMaxPoolSize(workerThreads);
+        }
+        workers.setQueueLimit(Integer.getInteger("famodulus.transport.worker_queue_limit", DEFAULT_WORKER_QUEUE_LIMIT));
+        transport.setTcpNoDelay(Boolean.parseBoolean(System.getProperty("famodulus.transport.tcp_nodelay", "true")));
+        transport.setServerConnectionBackLog(Integer.getInteger("famodulus.transport.backlog", DEFAULT_BACKLOG));
+
+        listener.getKeepAlive().setMaxRequestsCount(Integer.getInteger("famodulus.keepalive.max_requests", DEFAULT_KEEPALIVE_MAX_REQUESTS));
+        listener.getKeepAlive().setIdleTimeoutInSeconds(Integer.getInteger("famodulus.keepalive.idle_timeout", DEFAULT_KEEPALIVE_IDLE_TIMEOUT));
+
+        LOG.fine(String.format("Configured listener %s on %s:%d, %d selector threads, %d worker threads, %s.",
+                listener.getName(), listener.getHost(), listener.getPort(), transport.getSelectorRunnersCount(),
+                workers.getMaxPoolSize(), transport.getIOStrategy().getClass().getSimpleName()));
+    }
+
+    /**
+     * Returns the I/O strategy with the given name.
+     * @param name the name of the strategy, "same", "worker", "leader" or "dynamic"
+     * @return the strategy
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    private static IOStrategy ioStrategy(String name) {
+        switch(name) {
+            case IO_STRATEGY_SAME:
+                return SameThreadIOStrategy.getInstance();
+            case IO_STRATEGY_WORKER:
+                return WorkerThreadIOStrategy.getInstance();
+            case IO_STRATEGY_LEADER:
+                return LeaderFollowerNIOStrategy.getInstance();
+            case IO_STRATEGY_DYNAMIC:
+                return SimpleDynamicNIOStrategy.getInstance();
+            default:
+                throw new IllegalArgumentException("Unknown I/O strategy: " + name);
+        }
+    }
 }
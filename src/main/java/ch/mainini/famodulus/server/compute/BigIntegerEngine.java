@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+
+/**
+ * Engine calculating modexps in variable time using the sliding window
+ * implementation of BigInteger. Only suited for modexps without secret values.
+ * @author Pascal Mainini
+ */
+public class BigIntegerEngine implements ModExpEngine {
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Calculates base^exponent mod modulus using BigInteger.modPow().
+     * @param base the base
+     * @param exponent the exponent
+     * @param modulus the modulus, must be positive
+     * @return the result of the modexp
+     */
+    @Override
+    public BigInteger modPow(BigInteger base, BigInteger exponent, BigInteger modulus) {
+        return base.modPow(exponent, modulus);
+    }
+
+    /**
+     * Calculates the modexps of all bases one after the other.
+     * @param bases the bases
+     * @param exponent the exponent shared by all bases
+     * @param modulus the modulus shared by all bases
+     * @return the results, in the order of the bases
+     */
+    @Override
+    public BigInteger[] modPow(BigInteger[] bases, BigInteger exponent, BigInteger modulus) {
+        final BigInteger[] results = new BigInteger[bases.length];
+        for(int i = 0; i < bases.length; i++) {
+            results[i] = modPow(bases[i], exponent, modulus);
+        }
+        return results;
+    }
+
+    /**
+     * Calculates the modexps one after the other using BigInteger.modPow().
+     * @param bases the bases
+     * @param exponents the exponents, one per base
+     * @param modulus the modulus shared by all modexps
+     * @return the results, in the order of the bases
+     */
+    @Override
+    public BigInteger[] modPow(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus) {
+        final BigInteger[] results = new BigInteger[bases.length];
+        for(int i = 0; i < bases.length; i++) {
+            results[i] = modPow(bases[i], exponents[i], modulus);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+/**
+ * Holder of the dedicated fork/join pool on which all calculations are run.
+ * The number of threads can be configured using the system property
+ * famodulus.compute.threads and defaults to the number of available processors.
+ *
+ * Also holds the settings shared by all calculations splitting their work
+ * into chunks: famodulus.compute.parallel and famodulus.compute.min_cost.
+ * @author Pascal Mainini
+ */
+public final class ComputePool {
+
+//////////////////////////////////////// Constants
+
+    private static final Logger LOG = Logger.getLogger(ComputePool.class.getName());
+
+    private static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Estimated cost of a single 1024-bit modexp.
+     */
+    private static final long DEFAULT_MIN_CHUNK_COST = 1L << 30;
+
+    /**
+     * Number of chunks per compute thread, more chunks allow better balancing.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static final boolean PARALLEL = Boolean.parseBoolean(System.getProperty("famodulus.compute.parallel", "true"));
+
+    private static final long MIN_CHUNK_COST = Long.getLong("famodulus.compute.min_cost", DEFAULT_MIN_CHUNK_COST);
+
+    private static final ForkJoinPool POOL = createPool();
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Not instantiable, use getPool().
+     */
+    private ComputePool() { }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * @return the pool used for calculations
+     */
+    public static ForkJoinPool getPool() {
+        return POOL;
+    }
+
+    /**
+     * @return true if calculations may be split into chunks calculated in parallel
+     */
+    public static boolean isParallel() {
+        return PARALLEL;
+    }
+
+    /**
+     * Returns the estimated cost of a chunk of a calculation, so that each
+     * thread of the pool gets several chunks, but no chunk costs less than
+     * the configured minimum.
+     * @param cost the estimated cost of the whole calculation
+     * @return the cost up to which a chunk is calculated sequentially
+     */
+    public static long getGrain(long cost) {
+        return Math.max(MIN_CHUNK_COST, cost / (POOL.getParallelism() * CHUNKS_PER_THREAD));
+    }
+
+    /**
+     * Creates the pool according to the configured number of threads.
+     * @return the newly created pool
+     */
+    private static ForkJoinPool createPool() {
+        final int threads = Integer.getInteger("famodulus.compute.threads", DEFAULT_THREADS);
+        LOG.fine(String.format("Creating compute pool with %d threads.", threads));
+        return new ForkJoinPool(threads);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Admission control in front of the compute pool, bounding the estimated cost
+ * of all submitted but not yet completed tasks.
+ *
+ * A task is rejected if it would raise the pending cost above the maximum,
+ * unless nothing else is pending, so that a single oversized task can still
+ * run on an idle server. The maximum is configured using the system property
+ * famodulus.compute.max_pending_cost, 0 disables the limit.
+ * @author Pascal Mainini
+ */
+public final class ComputeQueue {
+
+//////////////////////////////////////// Constants
+
+    private static final Logger LOG = Logger.getLogger(ComputeQueue.class.getName());
+
+    /**
+     * Estimated cost of 256 modexps with 3072 bit modulus and exponent.
+     */
+    private static final long DEFAULT_MAX_PENDING_COST = 256L * 3072L * 3072L * 3072L;
+
+    /**
+     * Upper bound of the retry hint in seconds.
+     */
+    private static final long MAX_RETRY_AFTER = 60;
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final ComputeQueue DEFAULT = new ComputeQueue(ComputePool.getPool(),
+            Long.getLong("famodulus.compute.max_pending_cost", DEFAULT_MAX_PENDING_COST));
+
+//////////////////////////////////////// Fields
+
+    private final ForkJoinPool pool;
+    private final long maxPendingCost;
+
+    private final AtomicLong pendingCost = new AtomicLong();
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Cost and time of all completed tasks, for estimating the time to drain the queue.
+     */
+    private final LongAdder completedCost = new LongAdder();
+    private final LongAdder completedNanos = new LongAdder();
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Constructor which creates a queue in front of the given pool.
+     * @param pool the pool running the tasks
+     * @param maxPendingCost the maximum pending cost, 0 for no limit
+     */
+    public ComputeQueue(ForkJoinPool pool, long maxPendingCost) {
+        this.pool = pool;
+        this.maxPendingCost = maxPendingCost;
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * @return the queue in front of the default compute pool
+     */
+    public static ComputeQueue getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Submits a task for execution if the pending cost allows it.
+     * @param cost the estimated cost of the task
+     * @param task the task to run
+     * @return true if the task was submitted, false if it was rejected
+     */
+    public boolean submit(final long cost, final Runnable task) {
+        long pending;
+        do {
+            pending = pendingCost.get();
+            if(maxPendingCost > 0 && pending > 0 && pending + cost > maxPendingCost) {
+                rejected.increment();
+                if(LOG.isLoggable(Level.FINE)) {
+                    LOG.fine(String.format("Rejected task with cost %d, pending cost %d in %d tasks.", cost, pending, pendingTasks.get()));
+                }
+                return false;
+            }
+        } while(!pendingCost.compareAndSet(pending, pending + cost));
+        pendingTasks.incrementAndGet();
+
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long startTime = System.nanoTime();
+                try {
+                    task.run();
+                } finally {
+                    completedNanos.add(System.nanoTime() - startTime);
+                    completedCost.add(cost);
+                    pendingTasks.decrementAndGet();
+                    pendingCost.addAndGet(-cost);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return the estimated cost of all submitted but not yet completed tasks
+     */
+    public long getPendingCost() {
+        return pendingCost.get();
+    }
+
+    /**
+     * @return the number of submitted but not yet completed tasks
+     */
+    public int getPendingTasks() {
+        return pendingTasks.get();
+    }
+
+    /**
+     * @return the number of rejected tasks
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Estimates the time until the pending tasks are completed, based on the
+     * throughput of the tasks completed so far.
+     * @return the estimated time in seconds, between 1 and 60
+     */
+    public long getRetryAfter() {
+        final long cost = completedCost.sum();
+        if(cost == 0) {
+            return 1;
+        }
+        final double nanosPerCost = (double) completedNanos.sum() / cost;
+        final double seconds = pendingCost.get() * nanosPerCost / pool.getParallelism() / NANOS_PER_SECOND;
+        return Math.max(1, Math.min(MAX_RETRY_AFTER, (long) Math.ceil(seconds)));
+    }
+}
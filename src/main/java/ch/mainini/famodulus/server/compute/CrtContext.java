@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+
+/**
+ * Precomputed values for calculating modexps modulo a product of two distinct,
+ * odd primes using the Chinese remainder theorem.
+ *
+ * A modexp modulo p * q is calculated as two modexps of half the size modulo p
+ * and q, with the exponent reduced modulo p - 1 and q - 1, whose results are
+ * recombined using Garner's formula r = mq + q * (q^(-1) * (mp - mq) mod p).
+ * For secure modexps, the recombination is done on fixed-length limbs using
+ * Montgomery multiplication and never branches on the partial results.
+ *
+ * The primality of p and q is not verified, results are wrong if either of
+ * them is not prime.
+ * @author Pascal Mainini
+ */
+public final class CrtContext {
+
+//////////////////////////////////////// Fields
+
+    /**
+     * The larger prime.
+     */
+    private final BigInteger p;
+
+    /**
+     * The smaller prime.
+     */
+    private final BigInteger q;
+
+    private final BigInteger modulus;
+    private final BigInteger pMinusOne;
+    private final BigInteger qMinusOne;
+
+    /**
+     * q^(-1) mod p
+     */
+    private final BigInteger qInverse;
+
+    private final MontgomeryContext pContext;
+
+    /**
+     * q^(-1) mod p in Montgomery form modulo p.
+     */
+    private final int[] qInverseMontgomery;
+
+    /**
+     * The limbs of q, with the length of numbers modulo p.
+     */
+    private final int[] qLimbs;
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Constructor which precomputes all values for the given factorization.
+     * @param p the first prime factor of the modulus, must be odd
+     * @param q the second prime factor of the modulus, must be odd and differ from p
+     */
+    public CrtContext(BigInteger p, BigInteger q) {
+        if(!p.testBit(0) || !q.testBit(0) || p.compareTo(BigInteger.ONE) <= 0 || q.compareTo(BigInteger.ONE) <= 0) {
+            throw new IllegalArgumentException("Factors must be odd and greater than one!");
+        }
+        if(p.equals(q)) {
+            throw new IllegalArgumentException("Factors must be distinct!");
+        }
+
+        this.p = p.max(q);
+        this.q = p.min(q);
+        this.modulus = p.multiply(q);
+        this.pMinusOne = this.p.subtract(BigInteger.ONE);
+        this.qMinusOne = this.q.subtract(BigInteger.ONE);
+        this.qInverse = this.q.modInverse(this.p);
+
+        this.pContext = MontgomeryContext.of(this.p);
+        this.qInverseMontgomery = pContext.toMontgomery(qInverse);
+        this.qLimbs = Limbs.fromBigInteger(this.q, pContext.getLength());
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * @return the modulus p * q
+     */
+    public BigInteger getModulus() {
+        return modulus;
+    }
+
+    /**
+     * @return the larger of the two factors
+     */
+    public BigInteger getP() {
+        return p;
+    }
+
+    /**
+     * @return the smaller of the two factors
+     */
+    public BigInteger getQ() {
+        return q;
+    }
+
+    /**
+     * Calculates base^exponent mod p * q.
+     * @param base the base
+     * @param exponent the exponent, must be non-negative
+     * @param secure true to calculate in constant time
+     * @return the result of the modexp
+     */
+    public BigInteger modPow(BigInteger base, BigInteger exponent, boolean secure) {
+        if(exponent.signum() < 0) {
+            throw new ArithmeticException("Exponent must be non-negative!");
+        }
+        if(exponent.signum() == 0) {
+            return BigInteger.ONE;
+        }
+
+        final ModExpEngine engine = ModExpEngines.get(secure);
+        final BigInteger mp = engine.modPow(base, reduce(exponent, pMinusOne), p);
+        final BigInteger mq = engine.modPow(base, reduce(exponent, qMinusOne), q);
+        return secure ? combineSecure(mp, mq) : combine(mp, mq);
+    }
+
+    /**
+     * Reduces a positive exponent to [1, order], so that the result stays
+     * correct for bases divisible by the prime.
+     * @param exponent the exponent, must be positive
+     * @param order the prime minus one
+     * @return the reduced exponent
+     */
+    private static BigInteger reduce(BigInteger exponent, BigInteger order) {
+        return exponent.subtract(BigInteger.ONE).mod(order).add(BigInteger.ONE);
+    }
+
+    /**
+     * Recombines the partial results using BigInteger arithmetic.
+     * @param mp the result modulo p
+     * @param mq the result modulo q
+     * @return the result modulo p * q
+     */
+    private BigInteger combine(BigInteger mp, BigInteger mq) {
+        final BigInteger h = qInverse.multiply(mp.subtract(mq)).mod(p);
+        return mq.add(h.multiply(q));
+    }
+
+    /**
+     * Recombines the partial results on fixed-length limbs without branching on their values.
+     * @param mp the result modulo p
+     * @param mq the result modulo q
+     * @return the result modulo p * q
+     */
+    private BigInteger combineSecure(BigInteger mp, BigInteger mq) {
+        final int length = pContext.getLength();
+        final int[] t = pContext.newScratch();
+        final int[] a = Limbs.fromBigInteger(mp, length);
+        final int[] b = Limbs.fromBigInteger(mq, length);
+        final int[] h = new int[length];
+
+        pContext.toMontgomery(a, a, t);
+        pContext.toMontgomery(b, h, t);
+        pContext.subtract(a, h, h);
+        pContext.multiply(h, qInverseMontgomery, h, t);
+
+        // leave the Montgomery form by multiplying with one
+        final int[] unit = new int[length];
+        unit[0] = 1;
+        pContext.multiply(h, unit, h, t);
+        return Limbs.toBigInteger(Limbs.multiplyAdd(qLimbs, h, b));
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Cache of fixed base tables shared across requests, keyed by base and modulus.
+ *
+ * A table is only built once a (base, modulus) pair has been seen a given
+ * number of times, only odd moduli are supported. Tables are evicted in
+ * least-recently-used order as soon as their total size exceeds the
+ * configured number of bytes. Tables are built on the compute pool, lookups
+ * return null until the table of their pair is ready, so the modexps of the
+ * request which reached the threshold are calculated by the engine meanwhile.
+ *
+ * The default cache is configured using the system properties
+ * famodulus.fixedbase.cache_bytes (0 disables the cache),
+ * famodulus.fixedbase.threshold (lower by default with the pure Java engine)
+ * and famodulus.fixedbase.window.
+ * @author Pascal Mainini
+ */
+public class FixedBaseCache {
+
+//////////////////////////////////////// Constants
+
+    private static final Logger LOG = Logger.getLogger(FixedBaseCache.class.getName());
+
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final int DEFAULT_THRESHOLD_JAVA = 3;
+    private static final int DEFAULT_THRESHOLD_NATIVE = 128;
+    private static final int DEFAULT_WINDOW = 5;
+
+    /**
+     * Maximum number of pairs for which sightings are counted before the counts are reset.
+     */
+    private static final int MAX_SIGHTINGS = 1024;
+
+    private static final FixedBaseCache DEFAULT = new FixedBaseCache(
+            Long.getLong("famodulus.fixedbase.cache_bytes", DEFAULT_MAX_BYTES),
+            Integer.getInteger("famodulus.fixedbase.threshold", ModExpEngines.getTableMultiplyCost(true) > 1
+                    ? DEFAULT_THRESHOLD_NATIVE : DEFAULT_THRESHOLD_JAVA),
+            Integer.getInteger("famodulus.fixedbase.window", DEFAULT_WINDOW),
+            ComputePool.getPool());
+
+//////////////////////////////////////// Fields
+
+    private final long maxBytes;
+    private final int threshold;
+    private final int window;
+    private final Executor executor;
+
+    /**
+     * Tables in access order, guarded by this.
+     */
+    private final LinkedHashMap<Key, FixedBaseTable> tables = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final ConcurrentMap<Key, AtomicInteger> sightings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Key, Boolean> building = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Constructor which initializes an empty cache building its tables on the compute pool.
+     * @param maxBytes the maximum total size of all tables, 0 disables the cache
+     * @param threshold the number of sightings of a pair before building its table
+     * @param window the window size of the tables built
+     */
+    public FixedBaseCache(long maxBytes, int threshold, int window) {
+        this(maxBytes, threshold, window, ComputePool.getPool());
+    }
+
+    /**
+     * Constructor which initializes an empty cache.
+     * @param maxBytes the maximum total size of all tables, 0 disables the cache
+     * @param threshold the number of sightings of a pair before building its table
+     * @param window the window size of the tables built
+     * @param executor the executor building the tables
+     */
+    public FixedBaseCache(long maxBytes, int threshold, int window, Executor executor) {
+        this.maxBytes = maxBytes;
+        this.threshold = threshold;
+        this.window = window;
+        this.executor = executor;
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * @return the default cache shared across requests
+     */
+    public static FixedBaseCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Looks up the table for the given base and modulus. If there is none,
+     * the pair is counted and its table is built by the executor once it was
+     * seen often enough.
+     * @param base the base
+     * @param modulus the modulus
+     * @return the table for base and modulus, or null if there is none (yet)
+     */
+    public FixedBaseTable lookup(final BigInteger base, final BigInteger modulus) {
+        if(maxBytes <= 0 || !modulus.testBit(0) || modulus.compareTo(BigInteger.ONE) <= 0) {
+            return null;
+        }
+
+        final Key key = new Key(base, modulus);
+        final FixedBaseTable table = get(key);
+        if(table != null) {
+            hits.incrementAndGet();
+            return table;
+        }
+
+        misses.incrementAndGet();
+        if(countSighting(key) < threshold || building.putIfAbsent(key, Boolean.TRUE) != null) {
+            return null;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        put(key, new FixedBaseTable(base, modulus, modulus.bitLength(), window));
+                        sightings.remove(key);
+                    } finally {
+                        building.remove(key);
+                    }
+                }
+            });
+        } catch(RejectedExecutionException ex) {
+            LOG.fine("Compute pool rejected building a fixed base table.");
+            building.remove(key);
+        }
+        return get(key);
+    }
+
+    /**
+     * @return the number of lookups which found a table
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups which did not find a table
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of tables in the cache
+     */
+    public synchronized int size() {
+        return tables.size();
+    }
+
+    /**
+     * @return the total size of all tables in the cache
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the table with the given key without counting a hit.
+     * @param key the key of the table
+     * @return the table, or null if there is none
+     */
+    private synchronized FixedBaseTable get(Key key) {
+        return tables.get(key);
+    }
+
+    /**
+     * Counts a sighting of the given pair.
+     * @param key the pair seen
+     * @return the number of sightings so far
+     */
+    private int countSighting(Key key) {
+        if(sightings.size() > MAX_SIGHTINGS) {
+            sightings.clear();
+        }
+
+        AtomicInteger count = sightings.get(key);
+        if(count == null) {
+            final AtomicInteger previous = sightings.putIfAbsent(key, count = new AtomicInteger());
+            count = previous != null ? previous : count;
+        }
+        return count.incrementAndGet();
+    }
+
+    /**
+     * Adds a table to the cache, evicting the least recently used tables if needed.
+     * @param key the key of the table
+     * @param table the table to add
+     */
+    private synchronized void put(Key key, FixedBaseTable table) {
+        if(table.getSizeBytes() > maxBytes) {
+            LOG.fine(String.format("Fixed base table of %d bytes exceeds cache size, not caching.", table.getSizeBytes()));
+            return;
+        }
+
+        final FixedBaseTable previous = tables.put(key, table);
+        bytes += table.getSizeBytes() - (previous != null ? previous.getSizeBytes() : 0);
+
+        final Iterator<Map.Entry<Key, FixedBaseTable>> eldest = tables.entrySet().iterator();
+        while(bytes > maxBytes && eldest.hasNext()) {
+            final Map.Entry<Key, FixedBaseTable> entry = eldest.next();
+            bytes -= entry.getValue().getSizeBytes();
+            eldest.remove();
+        }
+        LOG.fine(String.format("Cached fixed base table, now %d tables with %d bytes.", tables.size(), bytes));
+    }
+
+///////////////////// Inner classes
+
+    /**
+     * Key of a table, consisting of base and modulus.
+     */
+    private static final class Key {
+
+        private final BigInteger base;
+        private final BigInteger modulus;
+        private final int hash;
+
+        /**
+         * @param base the base
+         * @param modulus the modulus
+         */
+        Key(BigInteger base, BigInteger modulus) {
+            this.base = base;
+            this.modulus = modulus;
+            this.hash = 31 * base.hashCode() + modulus.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return hash == other.hash && base.equals(other.base) && modulus.equals(other.modulus);
+        }
+    }
+}
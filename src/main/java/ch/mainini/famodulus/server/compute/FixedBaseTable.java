@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+import java.nio.IntBuffer;
+
+/**
+ * Table of precomputed powers of a fixed base for a given modulus.
+ *
+ * The exponent is split into digits of window bits, for each digit position i
+ * the table contains b^(d * 2^(window * i)) mod m for all digit values d. A
+ * modexp then only needs one multiplication per digit and no squarings.
+ * Entries are selected from the table reading all entries of a position, so
+ * the memory access pattern does not depend on the exponent. Entries are kept
+ * in Montgomery form, hence the modulus has to be odd.
+ *
+ * The entries are either kept on the heap or in a buffer provided by the
+ * caller, e.g. a memory-mapped file, from which they are read directly.
+ * @author Pascal Mainini
+ */
+public class FixedBaseTable {
+
+//////////////////////////////////////// Fields
+
+    private final BigInteger base;
+    private final MontgomeryContext context;
+    private final int window;
+    private final int positions;
+    private final int length;
+
+    /**
+     * All entries, position after position, each entry consisting of length limbs.
+     */
+    private final IntBuffer entries;
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Constructor which precomputes the table for the given base and modulus.
+     * @param base the fixed base
+     * @param modulus the modulus, must be odd and greater than one
+     * @param exponentBits the maximum number of bits of supported exponents
+     * @param window the number of exponent bits handled per multiplication
+     */
+    public FixedBaseTable(BigInteger base, BigInteger modulus, int exponentBits, int window) {
+        if(window < 1 || window > 8) {
+            throw new IllegalArgumentException("Invalid window for fixed base table!");
+        }
+
+        this.base = base;
+        this.context = MontgomeryContext.of(modulus);
+        this.window = window;
+        this.positions = Math.max(1, (exponentBits + window - 1) / window);
+        this.length = context.getLength();
+        final int[] entries = new int[positions * (1 << window) * length];
+        this.entries = IntBuffer.wrap(entries);
+
+        final int[] t = context.newScratch();
+        final int[] power = context.toMontgomery(base);
+        final int[] entry = new int[length];
+        for(int i = 0; i < positions; i++) {
+            context.one(entry);
+            for(int d = 0; d < 1 << window; d++) {
+                System.arraycopy(entry, 0, entries, ((i << window) + d) * length, length);
+                context.multiply(entry, power, entry, t);
+            }
+            System.arraycopy(entry, 0, power, 0, length);
+        }
+    }
+
+    /**
+     * Constructor which uses entries precomputed before, without copying them.
+     * @param base the fixed base
+     * @param modulus the modulus, must be odd and greater than one
+     * @param window the number of exponent bits handled per multiplication
+     * @param positions the number of digit positions
+     * @param entries the entries as written by getEntries(), from the current position on
+     */
+    public FixedBaseTable(BigInteger base, BigInteger modulus, int window, int positions, IntBuffer entries) {
+        if(window < 1 || window > 8 || positions < 1) {
+            throw new IllegalArgumentException("Invalid window or positions for fixed base table!");
+        }
+
+        this.base = base;
+        this.context = MontgomeryContext.of(modulus);
+        this.window = window;
+        this.positions = positions;
+        this.length = context.getLength();
+        if(entries.remaining() != positions * (1 << window) * length) {
+            throw new IllegalArgumentException("Invalid number of entries for fixed base table!");
+        }
+        this.entries = entries.slice();
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * @return the base of this table
+     */
+    public BigInteger getBase() {
+        return base;
+    }
+
+    /**
+     * @return the modulus of this table
+     */
+    public BigInteger getModulus() {
+        return context.getModulus();
+    }
+
+    /**
+     * @return the maximum number of bits of supported exponents
+     */
+    public int getExponentBits() {
+        return positions * window;
+    }
+
+    /**
+     * @return the number of exponent bits handled per multiplication
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * @return the number of digit positions
+     */
+    public int getPositions() {
+        return positions;
+    }
+
+    /**
+     * @return the approximate size of this table in memory
+     */
+    public long getSizeBytes() {
+        return 4L * entries.capacity();
+    }
+
+    /**
+     * @return true if the entries are kept on the heap, false if they are read from a provided buffer
+     */
+    public boolean isOnHeap() {
+        return entries.hasArray();
+    }
+
+    /**
+     * @return a read-only view of all entries, position after position
+     */
+    public IntBuffer getEntries() {
+        return entries.asReadOnlyBuffer();
+    }
+
+    /**
+     * Checks if the given exponent can be handled by this table.
+     * @param exponent the exponent to check
+     * @return true if exponent is non-negative and not longer than supported
+     */
+    public boolean supports(BigInteger exponent) {
+        return exponent.signum() >= 0 && exponent.bitLength() <= getExponentBits();
+    }
+
+    /**
+     * Calculates base^exponent mod modulus using the table. All digit
+     * positions are processed regardless of the length of the exponent.
+     * @param exponent the exponent, must be supported by this table
+     * @return the result of the modexp
+     */
+    public BigInteger modPow(BigInteger exponent) {
+        final int[] digits = Limbs.fromBigInteger(exponent, Limbs.length(getExponentBits()));
+        final int[] entry = new int[length];
+        final int[] result = new int[length];
+        final int[] t = context.newScratch();
+        final int count = 1 << window;
+
+        final int[] array = entries.hasArray() ? entries.array() : null;
+        final int arrayOffset = array != null ? entries.arrayOffset() : 0;
+
+        context.one(result);
+        for(int i = 0; i < positions; i++) {
+            final int digit = Limbs.digit(digits, i * window, window);
+            if(array != null) {
+                Limbs.select(array, arrayOffset + i * count * length, count, digit, entry);
+            } else {
+                Limbs.select(entries, i * count * length, count, digit, entry);
+            }
+            context.multiply(result, entry, result, t);
+        }
+        return context.fromMontgomery(result);
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import com.squareup.jnagmp.Gmp;
+import com.squareup.jnagmp.LibGmp;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Calculation of multiple modexps sharing a modulus using gmplib, calling the
+ * native functions directly instead of going through Gmp for each modexp.
+ *
+ * All bases and exponents are packed into a single direct buffer per thread,
+ * from which they are imported into native integers without further copies on
+ * the Java heap; the results are exported into the same buffer and unpacked
+ * once all modexps are calculated. The modulus and a shared exponent are
+ * imported only once per batch. Batches containing values gmplib does not
+ * accept, i.e. negative bases, non-positive exponents or an invalid modulus,
+ * are calculated by Gmp one by one, failing the same way.
+ * @author Pascal Mainini
+ */
+final class GmpBatch {
+
+//////////////////////////////////////// Constants
+
+    /**
+     * Import and export bytes, most significant first, without nails.
+     */
+    private static final int ORDER = 1;
+    private static final int SIZE = 1;
+    private static final int ENDIAN = 1;
+    private static final int NAILS = 0;
+
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+
+    private static final ThreadLocal<GmpBatch> INSTANCE = new ThreadLocal<GmpBatch>() {
+        @Override
+        protected GmpBatch initialValue() {
+            return new GmpBatch();
+        }
+    };
+
+//////////////////////////////////////// Fields
+
+    private final LibGmp.mpz_t base;
+    private final LibGmp.mpz_t exponent;
+    private final LibGmp.mpz_t modulus;
+    private final LibGmp.mpz_t result;
+
+    /**
+     * Memory holding the native integers, kept as long as the thread lives.
+     */
+    private final Memory integers;
+    private final Memory count;
+
+    private ByteBuffer buffer;
+    private Pointer pointer;
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Constructor which initializes the native integers of the calling thread.
+     */
+    private GmpBatch() {
+        Gmp.checkLoaded();
+        integers = new Memory(4L * LibGmp.mpz_t.SIZE);
+        base = init(0);
+        exponent = init(1);
+        modulus = init(2);
+        result = init(3);
+        count = new Memory(Native.SIZE_T_SIZE);
+        allocate(INITIAL_BUFFER_BYTES);
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Calculates bases[i]^exponents[i] mod modulus for all bases.
+     * @param bases the bases
+     * @param exponents the exponents, one per base or a single one shared by all bases
+     * @param modulus the modulus shared by all modexps
+     * @param secure true to use mpz_powm_sec, false for mpz_powm
+     * @return the results, in the order of the bases
+     */
+    static BigInteger[] modPow(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus, boolean secure) {
+        if(!isSupported(bases, exponents, modulus, secure)) {
+            final BigInteger[] results = new BigInteger[bases.length];
+            for(int i = 0; i < bases.length; i++) {
+                final BigInteger e = exponents[exponents.length == 1 ? 0 : i];
+                results[i] = secure ? Gmp.modPowSecure(bases[i], e, modulus) : Gmp.modPowInsecure(bases[i], e, modulus);
+            }
+            return results;
+        }
+        return INSTANCE.get().calculate(bases, exponents, modulus, secure);
+    }
+
+    /**
+     * @param bases the bases
+     * @param exponents the exponents
+     * @param modulus the modulus
+     * @param secure whether mpz_powm_sec is used
+     * @return true if gmplib accepts all values
+     */
+    private static boolean isSupported(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus, boolean secure) {
+        if(modulus.signum() <= 0 || secure && !modulus.testBit(0)) {
+            return false;
+        }
+        for(BigInteger b: bases) {
+            if(b.signum() < 0) {
+                return false;
+            }
+        }
+        for(BigInteger e: exponents) {
+            if(e.signum() <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Prepares the buffer, calculates the modexps and wipes the buffer and
+     * native integers afterwards if the calculation is secure.
+     * @param bases the bases
+     * @param exponents the exponents, one per base or a single shared one
+     * @param m the modulus
+     * @param secure true to use mpz_powm_sec
+     * @return the results
+     */
+    private BigInteger[] calculate(BigInteger[] bases, BigInteger[] exponents, BigInteger m, boolean secure) {
+        final boolean shared = exponents.length == 1;
+        final int slot = Math.max(byteLength(m), maxByteLength(bases));
+        final int exponentSlot = shared ? 0 : maxByteLength(exponents);
+        final long exponentsOffset = (long) slot * bases.length;
+        final long total = Math.max(exponentsOffset + (long) exponentSlot * bases.length, shared ? byteLength(exponents[0]) : 0);
+        if(total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Batch too large!");
+        }
+        if(buffer.capacity() < total) {
+            allocate((int) total);
+        }
+
+        try {
+            return calculatePacked(bases, exponents, m, secure, slot, exponentSlot, exponentsOffset);
+        } finally {
+            if(secure) {
+                wipe((int) total, slot, Math.max(exponentSlot, shared ? byteLength(exponents[0]) : 0));
+            }
+        }
+    }
+
+    /**
+     * Packs all operands into the buffer, which must be large enough, calculates the modexps and unpacks the results.
+     * @param bases the bases
+     * @param exponents the exponents, one per base or a single shared one
+     * @param m the modulus
+     * @param secure true to use mpz_powm_sec
+     * @param slot the number of bytes per base and result
+     * @param exponentSlot the number of bytes per exponent, 0 for a shared exponent
+     * @param exponentsOffset the offset of the exponents in the buffer
+     * @return the results
+     */
+    private BigInteger[] calculatePacked(BigInteger[] bases, BigInteger[] exponents, BigInteger m, boolean secure,
+            int slot, int exponentSlot, long exponentsOffset) {
+        final boolean shared = exponents.length == 1;
+        importValue(modulus, m);
+        if(shared) {
+            importValue(exponent, exponents[0]);
+        }
+
+        final int[] baseLengths = new int[bases.length];
+        final int[] exponentLengths = new int[shared ? 0 : bases.length];
+        for(int i = 0; i < bases.length; i++) {
+            baseLengths[i] = pack(bases[i], i * slot);
+            if(!shared) {
+                exponentLengths[i] = pack(exponents[i], (int) exponentsOffset + i * exponentSlot);
+            }
+        }
+
+        final int[] resultLengths = new int[bases.length];
+        for(int i = 0; i < bases.length; i++) {
+            final Pointer slotPointer = pointer.share((long) i * slot);
+            LibGmp.__gmpz_import(base, baseLengths[i], ORDER, SIZE, ENDIAN, NAILS, slotPointer);
+            if(!shared) {
+                LibGmp.__gmpz_import(exponent, exponentLengths[i], ORDER, SIZE, ENDIAN, NAILS,
+                        pointer.share(exponentsOffset + (long) i * exponentSlot));
+            }
+            if(secure) {
+                LibGmp.__gmpz_powm_sec(result, base, exponent, modulus);
+            } else {
+                LibGmp.__gmpz_powm(result, base, exponent, modulus);
+            }
+            LibGmp.__gmpz_export(slotPointer, count, ORDER, SIZE, ENDIAN, NAILS, result);
+            resultLengths[i] = LibGmp.readSizeT(count);
+        }
+
+        final BigInteger[] results = new BigInteger[bases.length];
+        for(int i = 0; i < bases.length; i++) {
+            final byte[] magnitude = new byte[resultLengths[i]];
+            buffer.position(i * slot);
+            buffer.get(magnitude);
+            results[i] = new BigInteger(1, magnitude);
+        }
+        return results;
+    }
+
+    /**
+     * Writes the magnitude of a non-negative value to the buffer.
+     * @param value the value
+     * @param offset the offset in the buffer
+     * @return the number of bytes written
+     */
+    private int pack(BigInteger value, int offset) {
+        final byte[] bytes = value.toByteArray();
+        final int skip = bytes[0] == 0 ? 1 : 0;
+        buffer.position(offset);
+        buffer.put(bytes, skip, bytes.length - skip);
+        Arrays.fill(bytes, (byte) 0);
+        return bytes.length - skip;
+    }
+
+    /**
+     * Overwrites the used region of the buffer and the native base, exponent
+     * and result with zeros, so no secret values remain in native memory.
+     * Importing zeros overwrites all limbs up to the given length; limbs
+     * beyond have been wiped by the batch which used them.
+     * @param bytes the number of bytes of the buffer used
+     * @param slot the maximum number of bytes of bases and results
+     * @param exponentBytes the maximum number of bytes of exponents
+     */
+    private void wipe(int bytes, int slot, int exponentBytes) {
+        pointer.setMemory(0, bytes, (byte) 0);
+        LibGmp.__gmpz_import(base, slot, ORDER, SIZE, ENDIAN, NAILS, pointer);
+        LibGmp.__gmpz_import(result, slot, ORDER, SIZE, ENDIAN, NAILS, pointer);
+        LibGmp.__gmpz_import(exponent, exponentBytes, ORDER, SIZE, ENDIAN, NAILS, pointer);
+    }
+
+    /**
+     * Imports a value into a native integer, using the start of the buffer as temporary storage.
+     * @param integer the native integer
+     * @param value the non-negative value
+     */
+    private void importValue(LibGmp.mpz_t integer, BigInteger value) {
+        LibGmp.__gmpz_import(integer, pack(value, 0), ORDER, SIZE, ENDIAN, NAILS, pointer);
+    }
+
+    /**
+     * Replaces the buffer by a larger one.
+     * @param bytes the minimum size of the buffer
+     */
+    private void allocate(int bytes) {
+        buffer = ByteBuffer.allocateDirect(Math.max(bytes, buffer != null ? 2 * buffer.capacity() : 0));
+        pointer = Native.getDirectBufferPointer(buffer);
+    }
+
+    /**
+     * Initializes the native integer at the given index of the integer memory.
+     * @param index the index
+     * @return the initialized integer
+     */
+    private LibGmp.mpz_t init(int index) {
+        final LibGmp.mpz_t integer = new LibGmp.mpz_t(integers.share((long) index * LibGmp.mpz_t.SIZE));
+        LibGmp.__gmpz_init(integer);
+        return integer;
+    }
+
+    /**
+     * @param value a non-negative value
+     * @return the number of bytes of its magnitude, at least one
+     */
+    private static int byteLength(BigInteger value) {
+        return Math.max(1, (value.bitLength() + 7) / 8);
+    }
+
+    /**
+     * @param values non-negative values
+     * @return the maximum number of bytes of their magnitudes
+     */
+    private static int maxByteLength(BigInteger[] values) {
+        int length = 1;
+        for(BigInteger value: values) {
+            length = Math.max(length, byteLength(value));
+        }
+        return length;
+    }
+}
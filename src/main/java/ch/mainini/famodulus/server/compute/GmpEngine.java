@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import com.squareup.jnagmp.Gmp;
+import java.math.BigInteger;
+
+/**
+ * Engine calculating modexps in constant time using gmplib via jnagmp.
+ * @author Pascal Mainini
+ */
+public class GmpEngine implements ModExpEngine {
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Calculates base^exponent mod modulus using Gmp.modPowSecure().
+     * @param base the base
+     * @param exponent the exponent
+     * @param modulus the modulus, must be odd
+     * @return the result of the modexp
+     */
+    @Override
+    public BigInteger modPow(BigInteger base, BigInteger exponent, BigInteger modulus) {
+        return Gmp.modPowSecure(base, exponent, modulus);
+    }
+
+    /**
+     * Calculates the modexps of all bases one after the other using a
+     * GmpBatch. Exponent and modulus are converted into native GMP integers
+     * only once for all bases.
+     * @param bases the bases
+     * @param exponent the exponent shared by all bases
+     * @param modulus the modulus shared by all bases
+     * @return the results, in the order of the bases
+     */
+    @Override
+    public BigInteger[] modPow(BigInteger[] bases, BigInteger exponent, BigInteger modulus) {
+        if(bases.length == 1) {
+            return new BigInteger[] { modPow(bases[0], exponent, modulus) };
+        }
+        return GmpBatch.modPow(bases, new BigInteger[] { exponent }, modulus, true);
+    }
+
+    /**
+     * Calculates the modexps one after the other using a GmpBatch, converting
+     * the modulus into a native GMP integer only once.
+     * @param bases the bases
+     * @param exponents the exponents, one per base
+     * @param modulus the modulus shared by all modexps
+     * @return the results, in the order of the bases
+     */
+    @Override
+    public BigInteger[] modPow(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus) {
+        if(bases.length == 1) {
+            return new BigInteger[] { modPow(bases[0], exponents[0], modulus) };
+        }
+        return GmpBatch.modPow(bases, exponents, modulus, true);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Helper functions for numbers represented as fixed-length arrays of 32-bit
+ * limbs, least significant limb first.
+ * @author Pascal Mainini
+ */
+public final class Limbs {
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Not instantiable, only static helpers.
+     */
+    private Limbs() { }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Returns the number of limbs needed to represent numbers of the given bit length.
+     * @param bits the number of bits
+     * @return the number of limbs, at least one
+     */
+    public static int length(int bits) {
+        return Math.max(1, (bits + 31) >>> 5);
+    }
+
+    /**
+     * Converts a non-negative BigInteger into limbs.
+     * @param value the value to convert, must fit into length limbs
+     * @param length the number of limbs
+     * @return the limbs of value
+     */
+    public static int[] fromBigInteger(BigInteger value, int length) {
+        final int[] limbs = new int[length];
+        fromBigInteger(value, limbs);
+        return limbs;
+    }
+
+    /**
+     * Converts a non-negative BigInteger into the given limbs.
+     * @param value the value to convert, must fit into the limbs
+     * @param limbs the limbs to store the value into
+     */
+    public static void fromBigInteger(BigInteger value, int[] limbs) {
+        if(value.signum() < 0 || value.bitLength() > limbs.length * 32) {
+            throw new IllegalArgumentException("Value does not fit into " + limbs.length + " limbs!");
+        }
+
+        final byte[] bytes = value.toByteArray();
+        Arrays.fill(limbs, 0);
+        for(int i = 0; i < bytes.length && i < limbs.length * 4; i++) {
+            limbs[i >>> 2] |= (bytes[bytes.length - 1 - i] & 0xff) << ((i & 3) << 3);
+        }
+    }
+
+    /**
+     * Converts limbs into a non-negative BigInteger.
+     * @param limbs the limbs to convert
+     * @return the value of the limbs
+     */
+    public static BigInteger toBigInteger(int[] limbs) {
+        final byte[] bytes = new byte[limbs.length * 4];
+        for(int i = 0; i < bytes.length; i++) {
+            bytes[bytes.length - 1 - i] = (byte) (limbs[i >>> 2] >>> ((i & 3) << 3));
+        }
+        return new BigInteger(1, bytes);
+    }
+
+    /**
+     * Extracts a digit of the given width from the limbs. Bits beyond the
+     * limbs are treated as zero.
+     * @param limbs the limbs to extract from
+     * @param offset the bit offset of the least significant bit of the digit
+     * @param width the width of the digit in bits, at most 31
+     * @return the digit
+     */
+    public static int digit(int[] limbs, int offset, int width) {
+        final int index = offset >>> 5;
+        final int shift = offset & 31;
+        if(index >= limbs.length) {
+            return 0;
+        }
+
+        int value = limbs[index] >>> shift;
+        if(shift + width > 32 && index + 1 < limbs.length) {
+            value |= limbs[index + 1] << (32 - shift);
+        }
+        return value & ((1 << width) - 1);
+    }
+
+    /**
+     * Copies one of count consecutive entries of a table into out, reading all
+     * entries with the same memory access pattern regardless of the index.
+     * @param table the table holding the entries
+     * @param offset the offset of the first entry in the table
+     * @param count the number of entries to choose from
+     * @param index the index of the entry to copy, in [0, count)
+     * @param out the array to copy the entry to, its length is the length of an entry
+     */
+    public static void select(int[] table, int offset, int count, int index, int[] out) {
+        final int length = out.length;
+        Arrays.fill(out, 0);
+        for(int j = 0, position = offset; j < count; j++, position += length) {
+            final int difference = j ^ index;
+            final int mask = ~((difference | -difference) >> 31);
+            for(int k = 0; k < length; k++) {
+                out[k] |= table[position + k] & mask;
+            }
+        }
+    }
+
+    /**
+     * Copies one of count consecutive entries of a table held in a buffer into
+     * out, as select() for arrays.
+     * @param table the buffer holding the entries, read using absolute indices
+     * @param offset the offset of the first entry in the table
+     * @param count the number of entries to choose from
+     * @param index the index of the entry to copy, in [0, count)
+     * @param out the array to copy the entry to, its length is the length of an entry
+     */
+    public static void select(IntBuffer table, int offset, int count, int index, int[] out) {
+        final int length = out.length;
+        Arrays.fill(out, 0);
+        for(int j = 0, position = offset; j < count; j++, position += length) {
+            final int difference = j ^ index;
+            final int mask = ~((difference | -difference) >> 31);
+            for(int k = 0; k < length; k++) {
+                out[k] |= table.get(position + k) & mask;
+            }
+        }
+    }
+
+    /**
+     * Calculates a * b + c using schoolbook multiplication. The sequence of
+     * operations only depends on the lengths of the limbs, not their values.
+     * @param a the first factor
+     * @param b the second factor
+     * @param c the summand, at most a.length + b.length limbs
+     * @return the limbs of a * b + c, a.length + b.length limbs
+     */
+    public static int[] multiplyAdd(int[] a, int[] b, int[] c) {
+        final long mask = 0xffffffffL;
+        final int[] result = new int[a.length + b.length];
+        System.arraycopy(c, 0, result, 0, c.length);
+        for(int i = 0; i < a.length; i++) {
+            final long ai = a[i] & mask;
+            long carry = 0;
+            for(int j = 0; j < b.length; j++) {
+                final long sum = (result[i + j] & mask) + ai * (b[j] & mask) + carry;
+                result[i + j] = (int) sum;
+                carry = sum >>> 32;
+            }
+            for(int k = i + b.length; k < result.length; k++) {
+                final long sum = (result[k] & mask) + carry;
+                result[k] = (int) sum;
+                carry = sum >>> 32;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+
+/**
+ * Interface for backends calculating modular exponentiations.
+ * @author Pascal Mainini
+ */
+public interface ModExpEngine {
+
+    /**
+     * Calculates base^exponent mod modulus.
+     * @param base the base
+     * @param exponent the exponent
+     * @param modulus the modulus
+     * @return the result of the modexp
+     */
+    BigInteger modPow(BigInteger base, BigInteger exponent, BigInteger modulus);
+
+    /**
+     * Calculates base^exponent mod modulus for multiple bases sharing the
+     * same exponent and modulus.
+     * @param bases the bases
+     * @param exponent the exponent shared by all bases
+     * @param modulus the modulus shared by all bases
+     * @return the results, in the order of the bases
+     */
+    BigInteger[] modPow(BigInteger[] bases, BigInteger exponent, BigInteger modulus);
+
+    /**
+     * Calculates bases[i]^exponents[i] mod modulus for multiple modexps
+     * sharing the same modulus.
+     * @param bases the bases
+     * @param exponents the exponents, one per base
+     * @param modulus the modulus shared by all modexps
+     * @return the results, in the order of the bases
+     */
+    BigInteger[] modPow(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus);
+}
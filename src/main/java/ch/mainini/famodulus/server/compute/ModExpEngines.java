@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import com.squareup.jnagmp.Gmp;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Selection of the engines used for calculations.
+ *
+ * The engine is chosen using the system property famodulus.engine, which is
+ * either "gmp" (default) or "java". If gmplib cannot be loaded, the pure Java
+ * engine is used instead.
+ *
+ * Modexps without secret values may be calculated in variable time using the
+ * engine chosen by famodulus.engine.insecure, either "gmp" (default) or "java"
+ * for the sliding window implementation of BigInteger.
+ *
+ * getTableMultiplyCost() estimates the cost of a multiplication of a fixed
+ * base table relative to the chosen engine.
+ * @author Pascal Mainini
+ */
+public final class ModExpEngines {
+
+//////////////////////////////////////// Constants
+
+    private static final Logger LOG = Logger.getLogger(ModExpEngines.class.getName());
+
+    private static final String ENGINE_GMP = "gmp";
+    private static final String ENGINE_JAVA = "java";
+
+    /**
+     * Cost of a table multiplication relative to a multiplication of gmplib or
+     * BigInteger.
+     */
+    public static final int NATIVE_TABLE_MULTIPLY_COST = 5;
+
+    private static final ModExpEngine SECURE = createSecure(System.getProperty("famodulus.engine", ENGINE_GMP));
+
+    private static final ModExpEngine INSECURE = createInsecure(System.getProperty("famodulus.engine.insecure", ENGINE_GMP));
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Not instantiable, use getSecure() or getInsecure().
+     */
+    private ModExpEngines() { }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * @return the engine for calculations which have to run in constant time
+     */
+    public static ModExpEngine getSecure() {
+        return SECURE;
+    }
+
+    /**
+     * @return the engine for calculations without secret values, running in variable time
+     */
+    public static ModExpEngine getInsecure() {
+        return INSECURE;
+    }
+
+    /**
+     * Returns the engine for the given kind of calculation.
+     * @param secure true if the calculation involves secret values
+     * @return the secure or insecure engine
+     */
+    public static ModExpEngine get(boolean secure) {
+        return secure ? SECURE : INSECURE;
+    }
+
+    /**
+     * Returns the estimated cost of a multiplication using a FixedBaseTable,
+     * relative to a multiplication done by the engine for the given kind of
+     * calculation.
+     * @param secure true if the calculation involves secret values
+     * @return 1 for the pure Java Montgomery engine, more for faster engines
+     */
+    public static int getTableMultiplyCost(boolean secure) {
+        return get(secure) instanceof MontgomeryEngine ? 1 : NATIVE_TABLE_MULTIPLY_COST;
+    }
+
+    /**
+     * Creates the constant time engine with the given name.
+     * @param name the name of the engine
+     * @return the engine, falling back to pure Java if gmplib is not available
+     */
+    private static ModExpEngine createSecure(String name) {
+        if(ENGINE_GMP.equals(name) && isGmpAvailable()) {
+            LOG.fine("Using gmplib for modexp calculation.");
+            return new GmpEngine();
+        }
+
+        if(!ENGINE_JAVA.equals(name) && !ENGINE_GMP.equals(name)) {
+            LOG.warning(String.format("Unknown engine %s, using pure Java engine.", name));
+        }
+        LOG.fine("Using pure Java Montgomery engine for modexp calculation.");
+        return new MontgomeryEngine();
+    }
+
+    /**
+     * Creates the variable time engine with the given name.
+     * @param name the name of the engine
+     * @return the engine, falling back to BigInteger if gmplib is not available
+     */
+    private static ModExpEngine createInsecure(String name) {
+        if(ENGINE_GMP.equals(name) && isGmpAvailable()) {
+            LOG.fine("Using gmplib for insecure modexp calculation.");
+            return new GmpInsecureEngine();
+        }
+
+        if(!ENGINE_JAVA.equals(name) && !ENGINE_GMP.equals(name)) {
+            LOG.warning(String.format("Unknown insecure engine %s, using BigInteger.", name));
+        }
+        LOG.fine("Using BigInteger for insecure modexp calculation.");
+        return new BigIntegerEngine();
+    }
+
+    /**
+     * @return true if gmplib could be loaded
+     */
+    private static boolean isGmpAvailable() {
+        try {
+            Gmp.checkLoaded();
+            return true;
+        } catch(Throwable t) {
+            LOG.log(Level.WARNING, "gmplib could not be loaded, falling back to pure Java engine.", t);
+            return false;
+        }
+    }
+}
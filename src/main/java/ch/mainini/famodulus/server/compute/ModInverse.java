@@ -0,0 +1,191 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * Simultaneous modular inversion using Montgomery's trick, calculating the
+ * inverses of n values sharing a modulus with a single inversion and 3(n-1)
+ * multiplications.
+ *
+ * The products of all prefixes of the values are calculated, the product of
+ * all values is inverted, and the inverse of each value is obtained from the
+ * inverse of its prefix while walking back. For odd moduli, the
+ * multiplications are done using Montgomery multiplication, which runs in
+ * constant time. If requested, the single inversion, which runs in variable
+ * time, is blinded by a random factor: only the blinded product is passed
+ * to BigInteger, which also detects whether it has an inverse.
+ *
+ * Values without inverse are excluded from the product: values divisible by
+ * the modulus right away, values sharing another factor with the modulus
+ * only if inverting the product fails, in which case all values are
+ * inverted separately, each blinded by its own factor if requested.
+ * @author Pascal Mainini
+ */
+public final class ModInverse {
+
+//////////////////////////////////////// Constants
+
+    private static final Random RND = new SecureRandom();
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Not instantiable, only static methods.
+     */
+    private ModInverse() { }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Estimates the cost of inverting values sharing a modulus, in the unit of
+     * the cost of ModExpBatch. Each value costs three multiplications, the
+     * single inversion is counted like one more value.
+     * @param modulus the modulus
+     * @param count the number of values
+     * @return the estimated cost
+     */
+    public static long estimateCost(BigInteger modulus, int count) {
+        final long bits = modulus.bitLength();
+        return 3 * (count + 1L) * bits * bits;
+    }
+
+    /**
+     * Calculates the inverses of all values modulo modulus.
+     * @param values the values to invert
+     * @param modulus the modulus, must be greater than one
+     * @param blinded true to blind the inversion of the product
+     * @return the inverses, in the order of the values, null for values without inverse
+     * @throws ArithmeticException if the modulus is not greater than one
+     */
+    public static BigInteger[] modInverse(BigInteger[] values, BigInteger modulus, boolean blinded) {
+        if(modulus.compareTo(BigInteger.ONE) <= 0) {
+            throw new ArithmeticException("Modulus must be greater than one!");
+        }
+
+        final BigInteger[] reduced = new BigInteger[values.length];
+        int[] indices = new int[values.length];
+        int count = 0;
+        for(int i = 0; i < values.length; i++) {
+            reduced[i] = values[i].mod(modulus);
+            if(reduced[i].signum() != 0) {
+                indices[count++] = i;
+            }
+        }
+
+        final BigInteger[] inverses = new BigInteger[values.length];
+        if(count == 0) {
+            return inverses;
+        }
+        if(!invert(reduced, indices, count, modulus, blinded, inverses)) {
+            for(int j = 0; j < count; j++) {
+                inverses[indices[j]] = inverse(reduced[indices[j]], modulus, blinded);
+            }
+        }
+        return inverses;
+    }
+
+    /**
+     * Inverts the given values using Montgomery's trick.
+     * @param values the reduced values
+     * @param indices the indices of the values to invert
+     * @param count the number of indices
+     * @param modulus the modulus
+     * @param blinded true to blind the inversion of the product
+     * @param inverses the array to store the inverses in
+     * @return false if the product of the values has no inverse, nothing is stored then
+     */
+    private static boolean invert(BigInteger[] values, int[] indices, int count, BigInteger modulus, boolean blinded, BigInteger[] inverses) {
+        if(modulus.testBit(0)) {
+            return invertMontgomery(values, indices, count, MontgomeryContext.of(modulus), blinded, inverses);
+        }
+
+        final BigInteger[] prefixes = new BigInteger[count];
+        prefixes[0] = values[indices[0]];
+        for(int j = 1; j < count; j++) {
+            prefixes[j] = prefixes[j - 1].multiply(values[indices[j]]).mod(modulus);
+        }
+        BigInteger inverse = inverse(prefixes[count - 1], modulus, blinded);
+        if(inverse == null) {
+            return false;
+        }
+
+        for(int j = count - 1; j > 0; j--) {
+            inverses[indices[j]] = inverse.multiply(prefixes[j - 1]).mod(modulus);
+            inverse = inverse.multiply(values[indices[j]]).mod(modulus);
+        }
+        inverses[indices[0]] = inverse;
+        return true;
+    }
+
+    /**
+     * Inverts the given values using Montgomery's trick, multiplying in Montgomery form.
+     * @param values the reduced values
+     * @param indices the indices of the values to invert
+     * @param count the number of indices
+     * @param context the context of the odd modulus
+     * @param blinded true to blind the inversion of the product
+     * @param inverses the array to store the inverses in
+     * @return false if the product of the values has no inverse, nothing is stored then
+     */
+    private static boolean invertMontgomery(BigInteger[] values, int[] indices, int count, MontgomeryContext context, boolean blinded, BigInteger[] inverses) {
+        final int length = context.getLength();
+        final int[] t = context.newScratch();
+        final int[][] converted = new int[count][];
+        final int[][] prefixes = new int[count][];
+        for(int j = 0; j < count; j++) {
+            converted[j] = context.toMontgomery(values[indices[j]]);
+            if(j == 0) {
+                prefixes[j] = converted[j];
+            } else {
+                prefixes[j] = new int[length];
+                context.multiply(prefixes[j - 1], converted[j], prefixes[j], t);
+            }
+        }
+
+        final BigInteger product = inverse(context.fromMontgomery(prefixes[count - 1]), context.getModulus(), blinded);
+        if(product == null) {
+            return false;
+        }
+
+        final int[] inverse = context.toMontgomery(product);
+        final int[] out = new int[length];
+        for(int j = count - 1; j > 0; j--) {
+            context.multiply(inverse, prefixes[j - 1], out, t);
+            inverses[indices[j]] = context.fromMontgomery(out);
+            context.multiply(inverse, converted[j], inverse, t);
+        }
+        inverses[indices[0]] = context.fromMontgomery(inverse);
+        return true;
+    }
+
+    /**
+     * Inverts a single value. If blinded, the value is never passed to
+     * BigInteger unblinded, as value * r has an inverse exactly if the value has.
+     * @param value the value, reduced modulo the modulus
+     * @param modulus the modulus
+     * @param blinded true to invert value * r for a random unit r instead of the value itself
+     * @return the inverse, or null if the value has no inverse
+     */
+    private static BigInteger inverse(BigInteger value, BigInteger modulus, boolean blinded) {
+        BigInteger r = BigInteger.ONE;
+        if(blinded) {
+            do {
+                r = new BigInteger(modulus.bitLength(), RND).mod(modulus);
+            } while(r.signum() == 0 || !r.gcd(modulus).equals(BigInteger.ONE));
+        }
+
+        try {
+            return value.multiply(r).mod(modulus).modInverse(modulus).multiply(r).mod(modulus);
+        } catch(ArithmeticException ex) {
+            return null;
+        }
+    }
+}
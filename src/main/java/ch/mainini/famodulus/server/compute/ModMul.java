@@ -0,0 +1,231 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Modular multiplication of many values, either element-wise for pairs of
+ * factors or as the product of all values sharing a modulus.
+ *
+ * The product of all values is calculated using a balanced product tree: the
+ * values are split in halves whose products are calculated recursively and
+ * multiplied, reducing modulo m at every node so intermediate values never
+ * exceed twice the size of the modulus. Subtrees are calculated in parallel on
+ * the compute pool; below the minimum cost of a chunk, the values of a subtree
+ * are multiplied sequentially. Element-wise products are split into chunks
+ * the same way.
+ *
+ * The estimated cost of a multiplication is the size of the modulus in bits
+ * squared, i.e. in the same unit as the cost of ModExpBatch, and chunks are
+ * sized using the same settings of ComputePool.
+ * @author Pascal Mainini
+ */
+public final class ModMul {
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Not instantiable, only static methods.
+     */
+    private ModMul() { }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Estimates the cost of multiplications, in the unit of the cost of ModExpBatch.
+     * @param modulus the largest modulus
+     * @param count the number of multiplications
+     * @return the estimated cost
+     */
+    public static long estimateCost(BigInteger modulus, int count) {
+        final long bits = modulus.bitLength();
+        return count * bits * bits;
+    }
+
+    /**
+     * Calculates a[i] * b[i] mod moduli[i] for all pairs of factors.
+     * @param a the first factors
+     * @param b the second factors, one per first factor
+     * @param moduli the positive moduli, one per first factor
+     * @return the products, in the order of the factors
+     * @throws ArithmeticException if a modulus is not positive
+     */
+    public static BigInteger[] multiply(BigInteger[] a, BigInteger[] b, BigInteger[] moduli) {
+        int bits = 1;
+        for(BigInteger modulus: moduli) {
+            bits = Math.max(bits, modulus.bitLength());
+        }
+
+        final BigInteger[] products = new BigInteger[a.length];
+        final int grain = grain(a.length, bits);
+        if(!ComputePool.isParallel() || a.length <= grain) {
+            multiply(a, b, moduli, products, 0, a.length);
+        } else {
+            ComputePool.getPool().invoke(new MultiplyTask(a, b, moduli, products, 0, a.length, grain));
+        }
+        return products;
+    }
+
+    /**
+     * Calculates the product of all values modulo modulus using a balanced product tree.
+     * @param values the values to multiply
+     * @param modulus the positive modulus
+     * @return the product, 1 mod modulus for no values
+     * @throws ArithmeticException if the modulus is not positive
+     */
+    public static BigInteger product(BigInteger[] values, BigInteger modulus) {
+        if(modulus.signum() <= 0) {
+            throw new ArithmeticException("Modulus must be positive!");
+        }
+        if(values.length == 0) {
+            return BigInteger.ONE.mod(modulus);
+        }
+
+        final int grain = grain(values.length, modulus.bitLength());
+        if(!ComputePool.isParallel() || values.length <= grain) {
+            return product(values, modulus, 0, values.length);
+        }
+        return ComputePool.getPool().invoke(new ProductTask(values, modulus, 0, values.length, grain));
+    }
+
+    /**
+     * Sequentially calculates a range of element-wise products.
+     * @param a the first factors
+     * @param b the second factors
+     * @param moduli the moduli
+     * @param products the array to store the products in
+     * @param from the first index to calculate
+     * @param to the index after the last one to calculate
+     */
+    private static void multiply(BigInteger[] a, BigInteger[] b, BigInteger[] moduli, BigInteger[] products, int from, int to) {
+        for(int i = from; i < to; i++) {
+            products[i] = a[i].multiply(b[i]).mod(moduli[i]);
+        }
+    }
+
+    /**
+     * Sequentially calculates the product of a range of values, which must not be empty.
+     * @param values the values
+     * @param modulus the modulus
+     * @param from the first index to multiply
+     * @param to the index after the last one to multiply
+     * @return the product of the range
+     */
+    private static BigInteger product(BigInteger[] values, BigInteger modulus, int from, int to) {
+        BigInteger product = values[from].mod(modulus);
+        for(int i = from + 1; i < to; i++) {
+            product = product.multiply(values[i]).mod(modulus);
+        }
+        return product;
+    }
+
+    /**
+     * @param count the number of multiplications
+     * @param bits the size of the modulus in bits
+     * @return the number of multiplications up to which a range is calculated sequentially
+     */
+    private static int grain(int count, int bits) {
+        final long cost = (long) bits * bits;
+        final long chunk = ComputePool.getGrain(cost * count);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, chunk / cost));
+    }
+
+///////////////////// Inner classes
+
+    /**
+     * Task calculating a range of element-wise products, splitting itself in
+     * halves as long as the range is larger than the grain.
+     */
+    private static final class MultiplyTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BigInteger[] a;
+        private final BigInteger[] b;
+        private final BigInteger[] moduli;
+        private final BigInteger[] products;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        /**
+         * @param a the first factors
+         * @param b the second factors
+         * @param moduli the moduli
+         * @param products the array to store the products in
+         * @param from the first index to calculate
+         * @param to the index after the last one to calculate
+         * @param grain the number of products up to which a range is calculated sequentially
+         */
+        MultiplyTask(BigInteger[] a, BigInteger[] b, BigInteger[] moduli, BigInteger[] products, int from, int to, int grain) {
+            this.a = a;
+            this.b = b;
+            this.moduli = moduli;
+            this.products = products;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= grain) {
+                multiply(a, b, moduli, products, from, to);
+            } else {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new MultiplyTask(a, b, moduli, products, from, mid, grain),
+                        new MultiplyTask(a, b, moduli, products, mid, to, grain));
+            }
+        }
+    }
+
+    /**
+     * Task calculating the product of a range of values as a node of the
+     * product tree, splitting itself in halves as long as the range is larger
+     * than the grain.
+     */
+    private static final class ProductTask extends RecursiveTask<BigInteger> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BigInteger[] values;
+        private final BigInteger modulus;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        /**
+         * @param values the values
+         * @param modulus the modulus
+         * @param from the first index to multiply
+         * @param to the index after the last one to multiply
+         * @param grain the number of values up to which a range is multiplied sequentially
+         */
+        ProductTask(BigInteger[] values, BigInteger modulus, int from, int to, int grain) {
+            this.values = values;
+            this.modulus = modulus;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected BigInteger compute() {
+            if(to - from <= grain) {
+                return product(values, modulus, from, to);
+            }
+            final int mid = (from + to) >>> 1;
+            final ProductTask right = new ProductTask(values, modulus, mid, to, grain);
+            right.fork();
+            final BigInteger left = new ProductTask(values, modulus, from, mid, grain).compute();
+            return left.multiply(right.join()).mod(modulus);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Precomputed values for Montgomery multiplication modulo a fixed, odd modulus.
+ *
+ * Numbers are represented as fixed-length limbs (see Limbs) in Montgomery
+ * form, i.e. multiplied by R = 2^(32 * length). Multiplication never branches
+ * on the values and does not allocate, all temporary values are kept in a
+ * scratch array provided by the caller.
+ *
+ * Contexts are cached across requests using of(), the number of cached
+ * contexts is configured using the system property famodulus.montgomery.cache_size.
+ * @author Pascal Mainini
+ */
+public final class MontgomeryContext {
+
+//////////////////////////////////////// Constants
+
+    private static final long MASK = 0xffffffffL;
+
+    private static final int DEFAULT_CACHE_SIZE = 64;
+
+    private static final int CACHE_SIZE = Integer.getInteger("famodulus.montgomery.cache_size", DEFAULT_CACHE_SIZE);
+
+    /**
+     * Cached contexts in access order, guarded by itself.
+     */
+    private static final Map<BigInteger, MontgomeryContext> CACHE = new LinkedHashMap<BigInteger, MontgomeryContext>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BigInteger, MontgomeryContext> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+//////////////////////////////////////// Fields
+
+    private final BigInteger modulus;
+    private final int length;
+    private final int[] m;
+
+    /**
+     * -m^(-1) mod 2^32
+     */
+    private final int mPrime;
+
+    /**
+     * R^2 mod m
+     */
+    private final int[] r2;
+
+    /**
+     * R mod m, the Montgomery form of one
+     */
+    private final int[] one;
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Constructor which precomputes all values for the given modulus.
+     * @param modulus the modulus, must be odd and greater than one
+     */
+    public MontgomeryContext(BigInteger modulus) {
+        if(!modulus.testBit(0) || modulus.compareTo(BigInteger.ONE) <= 0) {
+            throw new IllegalArgumentException("Modulus must be odd and greater than one!");
+        }
+
+        this.modulus = modulus;
+        this.length = Limbs.length(modulus.bitLength());
+        this.m = Limbs.fromBigInteger(modulus, length);
+
+        int inverse = m[0];
+        for(int i = 0; i < 5; i++) {
+            inverse *= 2 - m[0] * inverse;
+        }
+        this.mPrime = -inverse;
+
+        this.r2 = Limbs.fromBigInteger(BigInteger.ONE.shiftLeft(64 * length).mod(modulus), length);
+        this.one = Limbs.fromBigInteger(BigInteger.ONE.shiftLeft(32 * length).mod(modulus), length);
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Returns the context for the given modulus, from the cache if possible.
+     * @param modulus the modulus, must be odd and greater than one
+     * @return the context for modulus
+     */
+    public static MontgomeryContext of(BigInteger modulus) {
+        synchronized(CACHE) {
+            final MontgomeryContext context = CACHE.get(modulus);
+            if(context != null) {
+                return context;
+            }
+        }
+
+        final MontgomeryContext context = new MontgomeryContext(modulus);
+        synchronized(CACHE) {
+            CACHE.put(modulus, context);
+        }
+        return context;
+    }
+
+    /**
+     * @return the modulus of this context
+     */
+    public BigInteger getModulus() {
+        return modulus;
+    }
+
+    /**
+     * @return the number of limbs of numbers in this context
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return a new scratch array as needed by multiply()
+     */
+    public int[] newScratch() {
+        return new int[length + 2];
+    }
+
+    /**
+     * Copies the Montgomery form of one into out.
+     * @param out the limbs to store one into
+     */
+    public void one(int[] out) {
+        System.arraycopy(one, 0, out, 0, length);
+    }
+
+    /**
+     * Converts a BigInteger into Montgomery form.
+     * @param value the value to convert, may be negative or larger than the modulus
+     * @return the limbs of value in Montgomery form
+     */
+    public int[] toMontgomery(BigInteger value) {
+        final int[] result = Limbs.fromBigInteger(value.mod(modulus), length);
+        multiply(result, r2, result, newScratch());
+        return result;
+    }
+
+    /**
+     * Converts limbs of a value below R into Montgomery form, reducing it
+     * modulo m without branching on the value. out may be the same array as value.
+     * @param value the limbs of the value to convert
+     * @param out the limbs to store the value in Montgomery form into
+     * @param t scratch array obtained by newScratch()
+     */
+    public void toMontgomery(int[] value, int[] out, int[] t) {
+        multiply(value, r2, out, t);
+    }
+
+    /**
+     * Converts limbs in Montgomery form back into a BigInteger.
+     * @param value the limbs in Montgomery form
+     * @return the value as BigInteger, in [0, modulus)
+     */
+    public BigInteger fromMontgomery(int[] value) {
+        final int[] unit = new int[length];
+        unit[0] = 1;
+        final int[] result = new int[length];
+        multiply(value, unit, result, newScratch());
+        return Limbs.toBigInteger(result);
+    }
+
+    /**
+     * Calculates the Montgomery product a * b * R^(-1) mod m. out may be the
+     * same array as a or b.
+     * @param a the first factor in Montgomery form
+     * @param b the second factor in Montgomery form
+     * @param out the limbs to store the product into
+     * @param t scratch array obtained by newScratch()
+     */
+    public void multiply(int[] a, int[] b, int[] out, int[] t) {
+        final int n = length;
+        for(int i = 0; i < t.length; i++) {
+            t[i] = 0;
+        }
+
+        for(int i = 0; i < n; i++) {
+            final long ai = a[i] & MASK;
+            long carry = 0;
+            for(int j = 0; j < n; j++) {
+                final long sum = (t[j] & MASK) + ai * (b[j] & MASK) + carry;
+                t[j] = (int) sum;
+                carry = sum >>> 32;
+            }
+            long sum = (t[n] & MASK) + carry;
+            t[n] = (int) sum;
+            t[n + 1] = (int) (sum >>> 32);
+
+            final long u = (t[0] * mPrime) & MASK;
+            sum = (t[0] & MASK) + u * (m[0] & MASK);
+            carry = sum >>> 32;
+            for(int j = 1; j < n; j++) {
+                sum = (t[j] & MASK) + u * (m[j] & MASK) + carry;
+                t[j - 1] = (int) sum;
+                carry = sum >>> 32;
+            }
+            sum = (t[n] & MASK) + carry;
+            t[n - 1] = (int) sum;
+            t[n] = t[n + 1] + (int) (sum >>> 32);
+        }
+
+        // conditional subtraction of m, always computed and selected by mask
+        long borrow = 0;
+        for(int j = 0; j < n; j++) {
+            final long difference = (t[j] & MASK) - (m[j] & MASK) - borrow;
+            out[j] = (int) difference;
+            borrow = (difference >>> 63);
+        }
+        final long top = (t[n] & MASK) - borrow;
+        final int keep = (int) (top >> 63);
+        for(int j = 0; j < n; j++) {
+            out[j] = (t[j] & keep) | (out[j] & ~keep);
+        }
+    }
+
+    /**
+     * Calculates (a - b) mod m without branching on the values. out may be the
+     * same array as a or b.
+     * @param a the minuend, in [0, m)
+     * @param b the subtrahend, in [0, m)
+     * @param out the limbs to store the difference into
+     */
+    public void subtract(int[] a, int[] b, int[] out) {
+        long borrow = 0;
+        for(int j = 0; j < length; j++) {
+            final long difference = (a[j] & MASK) - (b[j] & MASK) - borrow;
+            out[j] = (int) difference;
+            borrow = difference >>> 63;
+        }
+
+        // conditional addition of m, selected by mask
+        final long add = -borrow & MASK;
+        long carry = 0;
+        for(int j = 0; j < length; j++) {
+            final long sum = (out[j] & MASK) + (m[j] & add) + carry;
+            out[j] = (int) sum;
+            carry = sum >>> 32;
+        }
+    }
+
+    /**
+     * Calculates base^exponent mod modulus using a fixed window ladder. The
+     * sequence of operations only depends on the number of limbs of the
+     * exponent, table entries are selected reading the whole table.
+     * @param base the base
+     * @param exponent the exponent, must be non-negative
+     * @return the result of the modexp
+     */
+    public BigInteger modPow(BigInteger base, BigInteger exponent) {
+        return modPow(new BigInteger[] { base }, exponent)[0];
+    }
+
+    /**
+     * Calculates base^exponent mod modulus for multiple bases, recoding the
+     * exponent into window digits only once and sharing all scratch space.
+     * Each modexp is calculated as in modPow(BigInteger, BigInteger).
+     * @param bases the bases
+     * @param exponent the exponent shared by all bases, must be non-negative
+     * @return the results, in the order of the bases
+     */
+    public BigInteger[] modPow(BigInteger[] bases, BigInteger exponent) {
+        if(exponent.signum() < 0) {
+            throw new ArithmeticException("Exponent must be non-negative!");
+        }
+
+        final int window = window(length);
+        final int count = 1 << window;
+        final int[] digits = Limbs.fromBigInteger(exponent, Limbs.length(exponent.bitLength()));
+        final int top = (digits.length * 32 + window - 1) / window * window - window;
+        final int[] recoded = new int[top / window + 1];
+        for(int offset = top; offset >= 0; offset -= window) {
+            recoded[offset / window] = Limbs.digit(digits, offset, window);
+        }
+
+        final int[] t = newScratch();
+        final int[] table = new int[count * length];
+        final int[] entry = new int[length];
+        final int[] result = new int[length];
+        final BigInteger[] results = new BigInteger[bases.length];
+        for(int i = 0; i < bases.length; i++) {
+            final int[] power = toMontgomery(bases[i]);
+            one(entry);
+            System.arraycopy(entry, 0, table, 0, length);
+            for(int d = 1; d < count; d++) {
+                multiply(entry, power, entry, t);
+                System.arraycopy(entry, 0, table, d * length, length);
+            }
+
+            one(result);
+            for(int j = recoded.length - 1; j >= 0; j--) {
+                for(int s = 0; s < window; s++) {
+                    multiply(result, result, result, t);
+                }
+                Limbs.select(table, 0, count, recoded[j], entry);
+                multiply(result, entry, result, t);
+            }
+            results[i] = fromMontgomery(result);
+        }
+        return results;
+    }
+
+    /**
+     * Chooses the window size for modexps with the given number of limbs.
+     * @param length the number of limbs
+     * @return the window size in bits
+     */
+    private static int window(int length) {
+        return length > 16 ? 5 : length > 4 ? 4 : 2;
+    }
+}
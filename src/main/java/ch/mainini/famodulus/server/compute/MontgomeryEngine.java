@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+
+/**
+ * Engine calculating modexps in constant time in pure Java, using Montgomery
+ * multiplication with contexts cached per modulus.
+ * @author Pascal Mainini
+ */
+public class MontgomeryEngine implements ModExpEngine {
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Calculates base^exponent mod modulus using MontgomeryContext.modPow().
+     * @param base the base
+     * @param exponent the exponent, must be non-negative
+     * @param modulus the modulus, must be odd and greater than one
+     * @return the result of the modexp
+     */
+    @Override
+    public BigInteger modPow(BigInteger base, BigInteger exponent, BigInteger modulus) {
+        return MontgomeryContext.of(modulus).modPow(base, exponent);
+    }
+
+    /**
+     * Calculates the modexps of all bases using MontgomeryContext.modPow(),
+     * recoding the exponent only once.
+     * @param bases the bases
+     * @param exponent the exponent shared by all bases, must be non-negative
+     * @param modulus the modulus, must be odd and greater than one
+     * @return the results, in the order of the bases
+     */
+    @Override
+    public BigInteger[] modPow(BigInteger[] bases, BigInteger exponent, BigInteger modulus) {
+        return MontgomeryContext.of(modulus).modPow(bases, exponent);
+    }
+
+    /**
+     * Calculates the modexps using MontgomeryContext.modPow(), looking up the
+     * context of the modulus only once.
+     * @param bases the bases
+     * @param exponents the exponents, one per base, must be non-negative
+     * @param modulus the modulus, must be odd and greater than one
+     * @return the results, in the order of the bases
+     */
+    @Override
+    public BigInteger[] modPow(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus) {
+        final MontgomeryContext context = MontgomeryContext.of(modulus);
+        final BigInteger[] results = new BigInteger[bases.length];
+        for(int i = 0; i < bases.length; i++) {
+            results[i] = context.modPow(bases[i], exponents[i]);
+        }
+        return results;
+    }
+}
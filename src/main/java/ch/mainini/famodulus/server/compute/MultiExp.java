@@ -0,0 +1,269 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Simultaneous exponentiation, calculating the product of b_i^e_i mod m
+ * sharing one chain of squarings between all bases.
+ *
+ * Small numbers of bases are handled using Straus' interleaved windows, larger
+ * ones using Pippenger's bucket method. Both run in variable time and are
+ * thus only suited for public exponents. For secret exponents, a constant
+ * time variant of Straus' method with fixed windows is used, which always
+ * multiplies and selects table entries reading the whole table of a base.
+ * @author Pascal Mainini
+ */
+public final class MultiExp {
+
+//////////////////////////////////////// Constants
+
+    /**
+     * Number of bases up to which Straus' method is used.
+     */
+    static final int STRAUS_THRESHOLD = 32;
+
+    private static final int STRAUS_WINDOW = 4;
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Not instantiable, only static methods.
+     */
+    private MultiExp() { }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Calculates the product of bases[i]^exponents[i] mod modulus in constant
+     * time. The interleaved method is used if it is estimated to be cheaper
+     * than separate modexps of the constant time engine, taking the cost of
+     * its pure Java multiplications relative to the engine into account.
+     * @param bases the bases
+     * @param exponents the exponents, must be non-negative
+     * @param modulus the modulus, must be odd and greater than one
+     * @return the product of all modexps
+     */
+    public static BigInteger multiExpSecure(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus) {
+        final long bits = Limbs.length(maxBits(exponents)) * 32L;
+        final long interleaved = ModExpEngines.getTableMultiplyCost(true)
+                * (bits + bases.length * (bits / STRAUS_WINDOW + (1 << STRAUS_WINDOW)));
+        if(interleaved < bases.length * bits) {
+            return strausSecure(bases, exponents, modulus);
+        }
+        return ModMul.product(ModExpEngines.getSecure().modPow(bases, exponents, modulus), modulus);
+    }
+
+    /**
+     * Calculates the product of bases[i]^exponents[i] mod modulus, choosing
+     * the method according to the number of bases.
+     * @param bases the bases
+     * @param exponents the exponents, must be non-negative
+     * @param modulus the modulus, must be greater than one
+     * @return the product of all modexps
+     */
+    public static BigInteger multiExp(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus) {
+        if(!modulus.testBit(0)) {
+            BigInteger product = BigInteger.ONE;
+            for(int i = 0; i < bases.length; i++) {
+                product = product.multiply(bases[i].modPow(exponents[i], modulus)).mod(modulus);
+            }
+            return product;
+        }
+
+        return bases.length <= STRAUS_THRESHOLD ? straus(bases, exponents, modulus) : pippenger(bases, exponents, modulus);
+    }
+
+    /**
+     * Calculates the product of bases[i]^exponents[i] mod modulus using
+     * Straus' method with a table of small powers per base.
+     * @param bases the bases
+     * @param exponents the exponents, must be non-negative
+     * @param modulus the modulus, must be odd and greater than one
+     * @return the product of all modexps
+     */
+    public static BigInteger straus(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus) {
+        final MontgomeryContext context = MontgomeryContext.of(modulus);
+        final int length = context.getLength();
+        final int count = 1 << STRAUS_WINDOW;
+        final int[] t = context.newScratch();
+        final int bits = maxBits(exponents);
+        final int[][] digits = toLimbs(exponents, bits);
+
+        final int[][][] tables = new int[bases.length][count][];
+        for(int i = 0; i < bases.length; i++) {
+            tables[i][1] = context.toMontgomery(bases[i]);
+            for(int d = 2; d < count; d++) {
+                tables[i][d] = new int[length];
+                context.multiply(tables[i][d - 1], tables[i][1], tables[i][d], t);
+            }
+        }
+
+        final int[] result = new int[length];
+        context.one(result);
+        for(int offset = (bits + STRAUS_WINDOW - 1) / STRAUS_WINDOW * STRAUS_WINDOW - STRAUS_WINDOW; offset >= 0; offset -= STRAUS_WINDOW) {
+            for(int s = 0; s < STRAUS_WINDOW; s++) {
+                context.multiply(result, result, result, t);
+            }
+            for(int i = 0; i < bases.length; i++) {
+                final int digit = Limbs.digit(digits[i], offset, STRAUS_WINDOW);
+                if(digit != 0) {
+                    context.multiply(result, tables[i][digit], result, t);
+                }
+            }
+        }
+        return context.fromMontgomery(result);
+    }
+
+    /**
+     * Calculates the product of bases[i]^exponents[i] mod modulus using
+     * Straus' method in constant time. The sequence of operations only depends
+     * on the number of bases and the number of limbs of the longest exponent,
+     * every digit is multiplied, including zero digits.
+     * @param bases the bases
+     * @param exponents the exponents, must be non-negative
+     * @param modulus the modulus, must be odd and greater than one
+     * @return the product of all modexps
+     */
+    public static BigInteger strausSecure(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus) {
+        final MontgomeryContext context = MontgomeryContext.of(modulus);
+        final int length = context.getLength();
+        final int count = 1 << STRAUS_WINDOW;
+        final int[] t = context.newScratch();
+        final int bits = Limbs.length(maxBits(exponents)) * 32;
+        final int[][] digits = toLimbs(exponents, bits);
+
+        final int[][] tables = new int[bases.length][count * length];
+        final int[] entry = new int[length];
+        for(int i = 0; i < bases.length; i++) {
+            final int[] power = context.toMontgomery(bases[i]);
+            context.one(entry);
+            System.arraycopy(entry, 0, tables[i], 0, length);
+            for(int d = 1; d < count; d++) {
+                context.multiply(entry, power, entry, t);
+                System.arraycopy(entry, 0, tables[i], d * length, length);
+            }
+        }
+
+        final int[] result = new int[length];
+        context.one(result);
+        for(int offset = (bits + STRAUS_WINDOW - 1) / STRAUS_WINDOW * STRAUS_WINDOW - STRAUS_WINDOW; offset >= 0; offset -= STRAUS_WINDOW) {
+            for(int s = 0; s < STRAUS_WINDOW; s++) {
+                context.multiply(result, result, result, t);
+            }
+            for(int i = 0; i < bases.length; i++) {
+                Limbs.select(tables[i], 0, count, Limbs.digit(digits[i], offset, STRAUS_WINDOW), entry);
+                context.multiply(result, entry, result, t);
+            }
+        }
+        return context.fromMontgomery(result);
+    }
+
+    /**
+     * Calculates the product of bases[i]^exponents[i] mod modulus using
+     * Pippenger's method, sorting the bases into buckets by exponent digit.
+     * @param bases the bases
+     * @param exponents the exponents, must be non-negative
+     * @param modulus the modulus, must be odd and greater than one
+     * @return the product of all modexps
+     */
+    public static BigInteger pippenger(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus) {
+        final MontgomeryContext context = MontgomeryContext.of(modulus);
+        final int length = context.getLength();
+        final int window = pippengerWindow(bases.length);
+        final int[] t = context.newScratch();
+        final int bits = maxBits(exponents);
+        final int[][] digits = toLimbs(exponents, bits);
+
+        final int[][] montgomery = new int[bases.length][];
+        for(int i = 0; i < bases.length; i++) {
+            montgomery[i] = context.toMontgomery(bases[i]);
+        }
+
+        final int[][] buckets = new int[1 << window][length];
+        final boolean[] filled = new boolean[1 << window];
+        final int[] running = new int[length];
+        final int[] sum = new int[length];
+        final int[] result = new int[length];
+        context.one(result);
+
+        for(int offset = (bits + window - 1) / window * window - window; offset >= 0; offset -= window) {
+            for(int s = 0; s < window; s++) {
+                context.multiply(result, result, result, t);
+            }
+
+            Arrays.fill(filled, false);
+            for(int i = 0; i < bases.length; i++) {
+                final int digit = Limbs.digit(digits[i], offset, window);
+                if(digit == 0) {
+                    continue;
+                }
+                if(filled[digit]) {
+                    context.multiply(buckets[digit], montgomery[i], buckets[digit], t);
+                } else {
+                    System.arraycopy(montgomery[i], 0, buckets[digit], 0, length);
+                    filled[digit] = true;
+                }
+            }
+
+            // product of bucket[d]^d, as product of running products from the top
+            boolean started = false;
+            context.one(running);
+            context.one(sum);
+            for(int d = buckets.length - 1; d > 0; d--) {
+                if(filled[d]) {
+                    context.multiply(running, buckets[d], running, t);
+                    started = true;
+                }
+                if(started) {
+                    context.multiply(sum, running, sum, t);
+                }
+            }
+            context.multiply(result, sum, result, t);
+        }
+        return context.fromMontgomery(result);
+    }
+
+    /**
+     * Chooses the window size for Pippenger's method.
+     * @param count the number of bases
+     * @return the window size in bits
+     */
+    static int pippengerWindow(int count) {
+        final int log = 31 - Integer.numberOfLeadingZeros(Math.max(1, count));
+        return Math.max(2, Math.min(16, log - 2));
+    }
+
+    /**
+     * Returns the maximum bit length of the given exponents.
+     * @param exponents the exponents
+     * @return the maximum bit length, at least one
+     */
+    private static int maxBits(BigInteger[] exponents) {
+        int bits = 1;
+        for(BigInteger exponent: exponents) {
+            bits = Math.max(bits, exponent.bitLength());
+        }
+        return bits;
+    }
+
+    /**
+     * Converts exponents into limbs of equal length.
+     * @param exponents the exponents, must be non-negative
+     * @param bits the maximum bit length of the exponents
+     * @return the limbs of all exponents
+     */
+    private static int[][] toLimbs(BigInteger[] exponents, int bits) {
+        final int[][] limbs = new int[exponents.length][];
+        for(int i = 0; i < exponents.length; i++) {
+            limbs[i] = Limbs.fromBigInteger(exponents[i], Limbs.length(bits));
+        }
+        return limbs;
+    }
+}
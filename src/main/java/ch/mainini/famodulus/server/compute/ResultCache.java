@@ -0,0 +1,338 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of modexp results shared across requests, keyed by the SHA-256 digest
+ * of base, exponent and modulus.
+ *
+ * The cache is split into stripes with their own lock, each holding an equal
+ * share of the configured number of bytes. Within a stripe, entries are evicted
+ * in least-recently-used order as soon as their estimated size exceeds the
+ * share, and dropped once they are older than the time to live.
+ *
+ * The default cache is configured using the system properties
+ * famodulus.cache.max_bytes (0 disables the cache, default), famodulus.cache.ttl
+ * (seconds) and famodulus.cache.stripes.
+ * @author Pascal Mainini
+ */
+public class ResultCache {
+
+//////////////////////////////////////// Constants
+
+    private static final long DEFAULT_TTL_SECONDS = 300;
+    private static final int DEFAULT_STRIPES = 16;
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final int DIGEST_BYTES = 32;
+
+    /**
+     * Estimated size of an entry besides the digest and the result: key,
+     * entry and node of the map, array headers and the BigInteger.
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private static final ResultCache DEFAULT = new ResultCache(
+            Long.getLong("famodulus.cache.max_bytes", 0),
+            Long.getLong("famodulus.cache.ttl", DEFAULT_TTL_SECONDS), TimeUnit.SECONDS,
+            Integer.getInteger("famodulus.cache.stripes", DEFAULT_STRIPES));
+
+    private static final ThreadLocal<MessageDigest> DIGEST = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance(DIGEST_ALGORITHM);
+            } catch(NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Digest " + DIGEST_ALGORITHM + " not available!", e);
+            }
+        }
+    };
+
+//////////////////////////////////////// Fields
+
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final Stripe[] stripes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Constructor which initializes an empty cache.
+     * @param maxBytes the maximum estimated size of all entries, 0 disables the cache
+     * @param ttl the time after which entries expire
+     * @param unit the unit of ttl
+     * @param stripes the number of independently locked stripes
+     */
+    public ResultCache(long maxBytes, long ttl, TimeUnit unit, int stripes) {
+        this.maxBytes = maxBytes;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.stripes = new Stripe[Math.max(1, stripes)];
+        for(int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe(maxBytes / this.stripes.length);
+        }
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * @return the default cache shared across requests
+     */
+    public static ResultCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return true if results are cached at all
+     */
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Calculates the key of a modexp.
+     * @param base the base
+     * @param exponent the exponent
+     * @param modulus the modulus
+     * @return the key for get and put
+     */
+    public Key key(BigInteger base, BigInteger exponent, BigInteger modulus) {
+        final MessageDigest digest = DIGEST.get();
+        update(digest, base);
+        update(digest, exponent);
+        update(digest, modulus);
+        return new Key(digest.digest());
+    }
+
+    /**
+     * Looks up the result of a modexp.
+     * @param key the key of the modexp
+     * @return the cached result, or null if there is none or it has expired
+     */
+    public BigInteger get(Key key) {
+        final BigInteger result = stripe(key).get(key, System.nanoTime());
+        (result != null ? hits : misses).incrementAndGet();
+        return result;
+    }
+
+    /**
+     * Adds the result of a modexp, evicting the least recently used entries if needed.
+     * @param key the key of the modexp
+     * @param result the result to cache
+     */
+    public void put(Key key, BigInteger result) {
+        if(isEnabled()) {
+            stripe(key).put(key, new Entry(result, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    /**
+     * @return the number of lookups which found a result
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups which did not find a result
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of entries in the cache, including expired ones not yet removed
+     */
+    public int size() {
+        int size = 0;
+        for(Stripe stripe: stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the estimated size of all entries in the cache
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for(Stripe stripe: stripes) {
+            bytes += stripe.getBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @param key the key of an entry
+     * @return the stripe responsible for the key
+     */
+    private Stripe stripe(Key key) {
+        return stripes[(key.hash & Integer.MAX_VALUE) % stripes.length];
+    }
+
+    /**
+     * Adds a value to a digest, prefixed by its length so that the
+     * concatenation of all values is unambiguous.
+     * @param digest the digest to update
+     * @param value the value to add
+     */
+    private static void update(MessageDigest digest, BigInteger value) {
+        final byte[] bytes = value.toByteArray();
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+///////////////////// Inner classes
+
+    /**
+     * Key of a result, consisting of the digest of base, exponent and modulus.
+     */
+    public static final class Key {
+
+        private final byte[] digest;
+        private final int hash;
+
+        /**
+         * @param digest the digest of base, exponent and modulus
+         */
+        Key(byte[] digest) {
+            this.digest = digest;
+            this.hash = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && Arrays.equals(digest, ((Key) obj).digest);
+        }
+    }
+
+    /**
+     * A cached result with its expiry and estimated size.
+     */
+    private static final class Entry {
+
+        private final BigInteger result;
+        private final long expires;
+        private final int bytes;
+
+        /**
+         * @param result the result
+         * @param expires the value of System.nanoTime() at which the entry expires
+         */
+        Entry(BigInteger result, long expires) {
+            this.result = result;
+            this.expires = expires;
+            this.bytes = ENTRY_OVERHEAD + DIGEST_BYTES + result.bitLength() / Byte.SIZE + 1;
+        }
+
+        /**
+         * @param now the current value of System.nanoTime()
+         * @return true if the entry has expired
+         */
+        boolean isExpired(long now) {
+            return now - expires >= 0;
+        }
+    }
+
+    /**
+     * Part of the cache guarded by its own lock.
+     */
+    private static final class Stripe {
+
+        private final long maxBytes;
+
+        /**
+         * Entries in access order, guarded by this.
+         */
+        private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+
+        /**
+         * @param maxBytes the maximum estimated size of the entries of this stripe
+         */
+        Stripe(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * @param key the key of the entry
+         * @param now the current value of System.nanoTime()
+         * @return the result of the entry, or null if there is none or it has expired
+         */
+        synchronized BigInteger get(Key key, long now) {
+            final Entry entry = entries.get(key);
+            if(entry == null) {
+                return null;
+            }
+            if(entry.isExpired(now)) {
+                entries.remove(key);
+                bytes -= entry.bytes;
+                return null;
+            }
+            return entry.result;
+        }
+
+        /**
+         * Adds an entry, evicting expired and least recently used entries if needed.
+         * @param key the key of the entry
+         * @param entry the entry to add
+         */
+        synchronized void put(Key key, Entry entry) {
+            if(entry.bytes > maxBytes) {
+                return;
+            }
+
+            final Entry previous = entries.put(key, entry);
+            bytes += entry.bytes - (previous != null ? previous.bytes : 0);
+
+            final long now = System.nanoTime();
+            final Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while(eldest.hasNext()) {
+                final Entry candidate = eldest.next().getValue();
+                if(bytes <= maxBytes && !candidate.isExpired(now)) {
+                    break;
+                }
+                bytes -= candidate.bytes;
+                eldest.remove();
+            }
+        }
+
+        /**
+         * @return the number of entries
+         */
+        synchronized int size() {
+            return entries.size();
+        }
+
+        /**
+         * @return the estimated size of all entries
+         */
+        synchronized long getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+
+/**
+ * Verification that bases are elements of the subgroup of prime order o of the
+ * multiplicative group modulo a prime m.
+ *
+ * For safe primes m = 2 * o + 1, the subgroup consists of the quadratic
+ * residues and membership is decided by the Jacobi symbol, which is far
+ * cheaper than a modexp. For all other groups, each base is raised to the
+ * order using the batch API of the engine, so the order is recoded only once.
+ * @author Pascal Mainini
+ */
+public final class SubgroupCheck {
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Not instantiable, only static methods.
+     */
+    private SubgroupCheck() { }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * @param order the order of the subgroup
+     * @param modulus the modulus
+     * @return true if modulus = 2 * order + 1
+     */
+    public static boolean isSafePrime(BigInteger order, BigInteger modulus) {
+        return order.shiftLeft(1).add(BigInteger.ONE).equals(modulus);
+    }
+
+    /**
+     * Checks whether all bases are elements of the subgroup of the given order.
+     * @param bases the bases to check
+     * @param order the prime order of the subgroup
+     * @param modulus the prime modulus
+     * @param secure true to use the constant time engine for groups which are not safe prime
+     * @return true if all bases are elements of the subgroup
+     */
+    public static boolean contains(BigInteger[] bases, BigInteger order, BigInteger modulus, boolean secure) {
+        if(isSafePrime(order, modulus)) {
+            for(BigInteger base: bases) {
+                if(jacobi(base.mod(modulus), modulus) != 1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        for(BigInteger power: ModExpEngines.get(secure).modPow(bases, order, modulus)) {
+            if(!BigInteger.ONE.equals(power)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculates the Jacobi symbol (a / n) using the binary algorithm.
+     * @param a the numerator, must be non-negative
+     * @param n the denominator, must be odd and positive
+     * @return -1, 0 or 1
+     */
+    static int jacobi(BigInteger a, BigInteger n) {
+        int result = 1;
+        while(a.signum() != 0) {
+            final int twos = a.getLowestSetBit();
+            a = a.shiftRight(twos);
+            final int nMod8 = n.intValue() & 7;
+            if((twos & 1) != 0 && (nMod8 == 3 || nMod8 == 5)) {
+                result = -result;
+            }
+
+            // quadratic reciprocity, a and n are both odd here
+            if(a.testBit(1) && n.testBit(1)) {
+                result = -result;
+            }
+            final BigInteger reduced = n.mod(a);
+            n = a;
+            a = reduced;
+        }
+        return BigInteger.ONE.equals(n) ? result : 0;
+    }
+}
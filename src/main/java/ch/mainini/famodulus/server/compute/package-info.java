@@ -0,0 +1,5 @@
+/**
+ * This package contains the calculation backends and the infrastructure
+ * (thread pools, precomputations, caches) shared by all REST resources.
+ */
+package ch.mainini.famodulus.server.compute;
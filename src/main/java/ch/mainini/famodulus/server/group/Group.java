@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.group;
+
+import ch.mainini.famodulus.server.compute.FixedBaseTable;
+import java.math.BigInteger;
+
+/**
+ * Registered group parameters with their precomputed state: a fixed base
+ * table for the generator, holding the Montgomery context of the modulus.
+ * The state is kept as long as the group is registered.
+ * @author Pascal Mainini
+ */
+public final class Group {
+
+//////////////////////////////////////// Fields
+
+    private final String id;
+    private final BigInteger modulus;
+    private final BigInteger generator;
+    private final BigInteger order;
+    private final FixedBaseTable table;
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Constructor which uses a table precomputed for the generator.
+     * @param id the id of the group
+     * @param modulus the modulus, must be odd and greater than one
+     * @param generator the generator
+     * @param order the order of the generator, or null if unknown
+     * @param table the fixed base table of the generator
+     */
+    Group(String id, BigInteger modulus, BigInteger generator, BigInteger order, FixedBaseTable table) {
+        this.id = id;
+        this.modulus = modulus;
+        this.generator = generator;
+        this.order = order;
+        this.table = table;
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * @return the id of the group
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the modulus
+     */
+    public BigInteger getModulus() {
+        return modulus;
+    }
+
+    /**
+     * @return the generator
+     */
+    public BigInteger getGenerator() {
+        return generator;
+    }
+
+    /**
+     * @return the order of the generator, or null if unknown
+     */
+    public BigInteger getOrder() {
+        return order;
+    }
+
+    /**
+     * @return the fixed base table of the generator
+     */
+    public FixedBaseTable getTable() {
+        return table;
+    }
+}
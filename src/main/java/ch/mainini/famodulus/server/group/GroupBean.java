@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.group;
+
+import ch.mainini.famodulus.server.util.BigIntegerStringAdapter;
+import java.math.BigInteger;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+/**
+ * Bean representing the parameters of a group and its id.
+ * @author Pascal Mainini
+ */
+public class GroupBean {
+
+//////////////////////////////////////// Fields
+
+    /**
+     * The id of the group, only set in responses.
+     */
+    @XmlAttribute(name = "id")
+    private String id;
+
+    @XmlAttribute(name = "m")
+    @XmlJavaTypeAdapter(BigIntegerStringAdapter.class)
+    private BigInteger modulus;
+
+    @XmlAttribute(name = "g")
+    @XmlJavaTypeAdapter(BigIntegerStringAdapter.class)
+    private BigInteger generator;
+
+    @XmlAttribute(name = "o")
+    @XmlJavaTypeAdapter(BigIntegerStringAdapter.class)
+    private BigInteger order;
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Default, empty constructor.
+     */
+    public GroupBean() { }
+
+    /**
+     * Constructor which initializes the bean from a registered group.
+     * @param group the group
+     */
+    public GroupBean(Group group) {
+        this.id = group.getId();
+        this.modulus = group.getModulus();
+        this.generator = group.getGenerator();
+        this.order = group.getOrder();
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @param id the id to set
+     */
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the modulus
+     */
+    public BigInteger getModulus() {
+        return modulus;
+    }
+
+    /**
+     * @param modulus the modulus to set
+     */
+    public void setModulus(BigInteger modulus) {
+        this.modulus = modulus;
+    }
+
+    /**
+     * @return the generator
+     */
+    public BigInteger getGenerator() {
+        return generator;
+    }
+
+    /**
+     * @param generator the generator to set
+     */
+    public void setGenerator(BigInteger generator) {
+        this.generator = generator;
+    }
+
+    /**
+     * @return the order of the generator
+     */
+    public BigInteger getOrder() {
+        return order;
+    }
+
+    /**
+     * @param order the order of the generator to set
+     */
+    public void setOrder(BigInteger order) {
+        this.order = order;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.group;
+
+import ch.mainini.famodulus.server.compute.FixedBaseTable;
+import ch.mainini.famodulus.server.store.TableStore;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry of group parameters referenced by id, shared across requests.
+ *
+ * The id of a group is derived from the SHA-256 digest of its parameters, so
+ * registering the same parameters again, e.g. after a restart of the server,
+ * yields the same id. The number of registered groups is limited by the system
+ * property famodulus.groups.max, the window of their fixed base tables is
+ * configured using famodulus.groups.window.
+ *
+ * The tables are taken from the default TableStore if it holds a table for
+ * generator and modulus already, new tables are added to it, so they survive
+ * a restart of the server.
+ * @author Pascal Mainini
+ */
+public class GroupRegistry {
+
+//////////////////////////////////////// Constants
+
+    private static final Logger LOG = Logger.getLogger(GroupRegistry.class.getName());
+
+    private static final int DEFAULT_MAX_GROUPS = 16;
+    private static final int DEFAULT_WINDOW = 5;
+
+    /**
+     * Number of digest bytes forming the id.
+     */
+    private static final int ID_BYTES = 8;
+
+    private static final GroupRegistry DEFAULT = new GroupRegistry(
+            Integer.getInteger("famodulus.groups.max", DEFAULT_MAX_GROUPS),
+            Integer.getInteger("famodulus.groups.window", DEFAULT_WINDOW));
+
+//////////////////////////////////////// Fields
+
+    private final int maxGroups;
+    private final int window;
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Constructor which initializes an empty registry.
+     * @param maxGroups the maximum number of registered groups
+     * @param window the window of the fixed base tables of the groups
+     */
+    public GroupRegistry(int maxGroups, int window) {
+        this.maxGroups = maxGroups;
+        this.window = window;
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * @return the default registry shared across requests
+     */
+    public static GroupRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Registers a group, precomputing its state. If the group is registered
+     * already, the existing group is returned.
+     * @param modulus the modulus, must be odd and greater than one
+     * @param generator the generator, must be in [1, modulus)
+     * @param order the order of the generator, or null if unknown
+     * @return the registered group
+     * @throws IllegalArgumentException if the parameters are invalid
+     * @throws IllegalStateException if the maximum number of groups is registered already
+     */
+    public synchronized Group register(BigInteger modulus, BigInteger generator, BigInteger order) {
+        if(!modulus.testBit(0) || modulus.compareTo(BigInteger.ONE) <= 0) {
+            throw new IllegalArgumentException("Modulus must be odd and greater than one!");
+        }
+        if(generator.signum() <= 0 || generator.compareTo(modulus) >= 0) {
+            throw new IllegalArgumentException("Generator must be in [1, modulus)!");
+        }
+        if(order != null && (order.signum() <= 0 || !generator.modPow(order, modulus).equals(BigInteger.ONE))) {
+            throw new IllegalArgumentException("Order must be positive and the order of the generator!");
+        }
+
+        final String id = id(modulus, generator, order);
+        Group group = groups.get(id);
+        if(group != null) {
+            return group;
+        }
+        if(groups.size() >= maxGroups) {
+            throw new IllegalStateException("Maximum number of groups registered!");
+        }
+
+        final long startTime = System.nanoTime();
+        final int bits = (order != null ? order : modulus).bitLength();
+        final FixedBaseTable stored = TableStore.getDefault().get(generator, modulus);
+        final FixedBaseTable table = stored != null && stored.getExponentBits() >= bits
+                ? stored : TableStore.getDefault().add(new FixedBaseTable(generator, modulus, bits, window));
+        group = new Group(id, modulus, generator, order, table);
+        groups.put(id, group);
+        if(LOG.isLoggable(Level.FINE)) {
+            LOG.fine(String.format("Registered group %s with a %s table of %d bytes in %f ms.", id, table == stored ? "stored" : "new",
+                    table.getSizeBytes(), (System.nanoTime() - startTime) / 1000000.0));
+        }
+        return group;
+    }
+
+    /**
+     * @param id the id of a group
+     * @return the group, or null if no group with this id is registered
+     */
+    public Group get(String id) {
+        return groups.get(id);
+    }
+
+    /**
+     * Removes a group, releasing its precomputed state.
+     * @param id the id of the group
+     * @return true if the group was registered
+     */
+    public synchronized boolean remove(String id) {
+        return groups.remove(id) != null;
+    }
+
+    /**
+     * @return the number of registered groups
+     */
+    public int size() {
+        return groups.size();
+    }
+
+    /**
+     * Derives the id of a group from its parameters.
+     * @param modulus the modulus
+     * @param generator the generator
+     * @param order the order or null
+     * @return the id, a hexadecimal string
+     */
+    private static String id(BigInteger modulus, BigInteger generator, BigInteger order) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Digest SHA-256 not available!", e);
+        }
+        for(BigInteger value: new BigInteger[] { modulus, generator, order != null ? order : BigInteger.ZERO }) {
+            final byte[] bytes = value.toByteArray();
+            digest.update((byte) (bytes.length >>> 24));
+            digest.update((byte) (bytes.length >>> 16));
+            digest.update((byte) (bytes.length >>> 8));
+            digest.update((byte) bytes.length);
+            digest.update(bytes);
+        }
+
+        final byte[] hash = digest.digest();
+        final StringBuilder id = new StringBuilder(2 * ID_BYTES);
+        for(int i = 0; i < ID_BYTES; i++) {
+            id.append(String.format("%02x", hash[i]));
+        }
+        return id.toString();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.group;
+
+import ch.mainini.famodulus.server.metrics.Metered;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+
+/**
+ * Resource for registering group parameters, which modexps can then reference
+ * by id instead of sending modulus, generator and order with every request.
+ * @author Pascal Mainini
+ */
+@Path("groups")
+public class GroupResource {
+
+//////////////////////////////////////// Methods
+
+    /**
+     * This method implements the API for registering a group. Registering the
+     * same parameters again returns the existing group.
+     * @param group the parameters of the group, modulus and generator are required
+     * @param uriInfo information about the request URI
+     * @return the registered group including its id, with status 201
+     */
+    @POST
+    @Metered
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response register(GroupBean group, @Context UriInfo uriInfo) {
+        if(group == null || group.getModulus() == null || group.getGenerator() == null) {
+            throw new BadRequestException("Modulus and generator are required!");
+        }
+
+        final Group registered;
+        try {
+            registered = GroupRegistry.getDefault().register(group.getModulus(), group.getGenerator(), group.getOrder());
+        } catch(IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        } catch(IllegalStateException e) {
+            throw new ClientErrorException(e.getMessage(), Response.Status.CONFLICT, e);
+        }
+        return Response.created(uriInfo.getAbsolutePathBuilder().path(registered.getId()).build())
+                .entity(new GroupBean(registered)).build();
+    }
+
+    /**
+     * This method implements the API for retrieving a registered group.
+     * @param id the id of the group
+     * @return the group
+     */
+    @GET
+    @Path("{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public GroupBean get(@PathParam("id") String id) {
+        final Group group = GroupRegistry.getDefault().get(id);
+        if(group == null) {
+            throw new NotFoundException("Unknown group!");
+        }
+        return new GroupBean(group);
+    }
+
+    /**
+     * This method implements the API for removing a registered group.
+     * @param id the id of the group
+     */
+    @DELETE
+    @Path("{id}")
+    public void remove(@PathParam("id") String id) {
+        if(!GroupRegistry.getDefault().remove(id)) {
+            throw new NotFoundException("Unknown group!");
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * This package contains the registry of group parameters referenced by id and
+ * the "groups" REST resource for managing it.
+ */
+package ch.mainini.famodulus.server.group;
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds with logarithmic buckets,
+ * bucket i counting the durations in [2^(i-1), 2^i). Recording neither
+ * allocates nor locks and may be done concurrently with reading.
+ * @author Pascal Mainini
+ */
+public class Histogram {
+
+//////////////////////////////////////// Constants
+
+    /**
+     * Number of buckets, covering all non-negative long values.
+     */
+    static final int BUCKETS = 64;
+
+//////////////////////////////////////// Fields
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Records a duration.
+     * @param nanos the duration in nanoseconds, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        final long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        sum.add(value);
+    }
+
+    /**
+     * @return the number of durations recorded
+     */
+    public long getCount() {
+        long count = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return the sum of all durations recorded in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Returns the number of durations recorded up to the given bucket.
+     * @param bucket the index of the bucket
+     * @return the number of durations shorter than 2^bucket nanoseconds
+     */
+    public long getCumulativeCount(int bucket) {
+        long count = 0;
+        for(int i = 0; i <= bucket && i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the bucket of the given duration.
+     * @param nanos the duration in nanoseconds, must not be negative
+     * @return the index of the bucket
+     */
+    static int bucket(long nanos) {
+        return Long.SIZE - Long.numberOfLeadingZeros(nanos);
+    }
+}
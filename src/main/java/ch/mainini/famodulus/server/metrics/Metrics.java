@@ -0,0 +1,266 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.metrics;
+
+import ch.mainini.famodulus.server.compute.ComputeQueue;
+import ch.mainini.famodulus.server.compute.ResultCache;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics collected while serving requests: counters for requests, modexps
+ * and bytes transferred, histograms of the time spent parsing, computing,
+ * serializing and (de)compressing per request, and the time per modexp by
+ * modulus size. The state of the default ComputeQueue and ResultCache is
+ * exported alongside.
+ *
+ * All recording methods are lock-free and do not allocate, so they may be
+ * called on the hot path.
+ * @author Pascal Mainini
+ */
+public class Metrics {
+
+//////////////////////////////////////// Constants
+
+    /**
+     * Upper bounds of the modulus size buckets in bits, the last bucket holds all larger moduli.
+     */
+    static final int[] MODULUS_BITS = new int[] { 1024, 2048, 3072, 4096, 8192 };
+
+    /**
+     * Smallest and largest bucket of the histograms exported, ~1 us and ~69 s.
+     */
+    private static final int MIN_EXPORTED_BUCKET = 10;
+    private static final int MAX_EXPORTED_BUCKET = 36;
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final Metrics DEFAULT = new Metrics();
+
+//////////////////////////////////////// Fields
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    private final Histogram parse = new Histogram();
+    private final Histogram compute = new Histogram();
+    private final Histogram serialize = new Histogram();
+    private final Histogram decompress = new Histogram();
+    private final Histogram compress = new Histogram();
+
+    private final LongAdder[] modexps = new LongAdder[MODULUS_BITS.length + 1];
+    private final Histogram[] modexpTimes = new Histogram[MODULUS_BITS.length + 1];
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Default constructor, creates empty metrics.
+     */
+    public Metrics() {
+        for(int i = 0; i < modexps.length; i++) {
+            modexps[i] = new LongAdder();
+            modexpTimes[i] = new Histogram();
+        }
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * @return the metrics shared by all resources
+     */
+    public static Metrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Records a request.
+     */
+    public void recordRequest() {
+        requests.increment();
+    }
+
+    /**
+     * @param bytes the number of bytes received
+     */
+    public void recordBytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    /**
+     * @param bytes the number of bytes sent
+     */
+    public void recordBytesOut(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    /**
+     * @param nanos the time spent reading a request entity
+     */
+    public void recordParse(long nanos) {
+        parse.record(nanos);
+    }
+
+    /**
+     * @param nanos the time spent calculating the response of a request
+     */
+    public void recordCompute(long nanos) {
+        compute.record(nanos);
+    }
+
+    /**
+     * @param nanos the time spent writing a response entity
+     */
+    public void recordSerialize(long nanos) {
+        serialize.record(nanos);
+    }
+
+    /**
+     * @param nanos the time spent decompressing a request entity
+     */
+    public void recordDecompress(long nanos) {
+        decompress.record(nanos);
+    }
+
+    /**
+     * @param nanos the time spent compressing a response entity
+     */
+    public void recordCompress(long nanos) {
+        compress.record(nanos);
+    }
+
+    /**
+     * Records a single modexp.
+     * @param modulusBits the size of the modulus in bits
+     * @param nanos the time spent calculating the modexp
+     */
+    public void recordModExp(int modulusBits, long nanos) {
+        final int bucket = modulusBucket(modulusBits);
+        modexps[bucket].increment();
+        modexpTimes[bucket].record(nanos);
+    }
+
+    /**
+     * @return the number of requests recorded
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @param modulusBits the size of the modulus in bits
+     * @return the number of modexps recorded in the bucket of the given size
+     */
+    public long getModExps(int modulusBits) {
+        return modexps[modulusBucket(modulusBits)].sum();
+    }
+
+    /**
+     * @return the histogram of the time spent computing
+     */
+    public Histogram getCompute() {
+        return compute;
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format.
+     * @param out the builder to append to
+     * @return out
+     */
+    public StringBuilder writePrometheus(StringBuilder out) {
+        writeHeader(out, "famodulus_requests_total", "counter", "Number of requests to metered resources.");
+        out.append("famodulus_requests_total ").append(requests.sum()).append('\n');
+        writeHeader(out, "famodulus_received_bytes_total", "counter", "Number of bytes of request entities.");
+        out.append("famodulus_received_bytes_total ").append(bytesIn.sum()).append('\n');
+        writeHeader(out, "famodulus_sent_bytes_total", "counter", "Number of bytes of response entities.");
+        out.append("famodulus_sent_bytes_total ").append(bytesOut.sum()).append('\n');
+
+        writeHeader(out, "famodulus_modexps_total", "counter", "Number of modexps calculated, by modulus size.");
+        for(int i = 0; i < modexps.length; i++) {
+            out.append("famodulus_modexps_total{bits=\"").append(bitsLabel(i)).append("\"} ").append(modexps[i].sum()).append('\n');
+        }
+
+        writeHeader(out, "famodulus_request_phase_seconds", "histogram", "Time spent per request, by phase.");
+        writeHistogram(out, "famodulus_request_phase_seconds", "phase=\"parse\"", parse);
+        writeHistogram(out, "famodulus_request_phase_seconds", "phase=\"compute\"", compute);
+        writeHistogram(out, "famodulus_request_phase_seconds", "phase=\"serialize\"", serialize);
+        writeHistogram(out, "famodulus_request_phase_seconds", "phase=\"decompress\"", decompress);
+        writeHistogram(out, "famodulus_request_phase_seconds", "phase=\"compress\"", compress);
+
+        writeHeader(out, "famodulus_modexp_seconds", "histogram", "Time spent per modexp, by modulus size.");
+        for(int i = 0; i < modexpTimes.length; i++) {
+            writeHistogram(out, "famodulus_modexp_seconds", "bits=\"" + bitsLabel(i) + "\"", modexpTimes[i]);
+        }
+
+        final ComputeQueue queue = ComputeQueue.getDefault();
+        writeHeader(out, "famodulus_compute_pending_tasks", "gauge", "Number of queued or running calculations.");
+        out.append("famodulus_compute_pending_tasks ").append(queue.getPendingTasks()).append('\n');
+        writeHeader(out, "famodulus_compute_pending_cost", "gauge", "Estimated cost of queued or running calculations.");
+        out.append("famodulus_compute_pending_cost ").append(queue.getPendingCost()).append('\n');
+        writeHeader(out, "famodulus_compute_rejected_total", "counter", "Number of requests rejected due to pending cost.");
+        out.append("famodulus_compute_rejected_total ").append(queue.getRejected()).append('\n');
+
+        final ResultCache cache = ResultCache.getDefault();
+        writeHeader(out, "famodulus_cache_hits_total", "counter", "Number of modexp results taken from the result cache.");
+        out.append("famodulus_cache_hits_total ").append(cache.getHits()).append('\n');
+        writeHeader(out, "famodulus_cache_misses_total", "counter", "Number of modexp results not found in the result cache.");
+        out.append("famodulus_cache_misses_total ").append(cache.getMisses()).append('\n');
+        writeHeader(out, "famodulus_cache_bytes", "gauge", "Estimated size of the result cache.");
+        out.append("famodulus_cache_bytes ").append(cache.getBytes()).append('\n');
+        return out;
+    }
+
+    /**
+     * Returns the bucket of the given modulus size.
+     * @param modulusBits the size of the modulus in bits
+     * @return the index of the first bucket whose upper bound is not smaller than the size
+     */
+    static int modulusBucket(int modulusBits) {
+        int bucket = 0;
+        while(bucket < MODULUS_BITS.length && modulusBits > MODULUS_BITS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    /**
+     * @param bucket the index of the modulus size bucket
+     * @return the label of the bucket, its upper bound or +Inf
+     */
+    private static String bitsLabel(int bucket) {
+        return bucket < MODULUS_BITS.length ? Integer.toString(MODULUS_BITS[bucket]) : "+Inf";
+    }
+
+    /**
+     * Writes the HELP and TYPE lines of a metric.
+     * @param out the builder to append to
+     * @param name the name of the metric
+     * @param type the type of the metric
+     * @param help the description of the metric
+     */
+    private static void writeHeader(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Writes the cumulative buckets, sum and count of a histogram in seconds.
+     * @param out the builder to append to
+     * @param name the name of the metric
+     * @param labels the labels identifying the histogram
+     * @param histogram the histogram to write
+     */
+    private static void writeHistogram(StringBuilder out, String name, String labels, Histogram histogram) {
+        for(int i = MIN_EXPORTED_BUCKET; i <= MAX_EXPORTED_BUCKET; i++) {
+            out.append(name).append("_bucket{").append(labels).append(",le=\"").append((1L << i) / NANOS_PER_SECOND)
+                    .append("\"} ").append(histogram.getCumulativeCount(i)).append('\n');
+        }
+        final long count = histogram.getCount();
+        out.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(count).append('\n');
+        out.append(name).append("_sum{").append(labels).append("} ").append(histogram.getSum() / NANOS_PER_SECOND).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(count).append('\n');
+    }
+}
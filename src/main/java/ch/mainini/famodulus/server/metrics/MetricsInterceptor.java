@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.metrics;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Records requests, the bytes transferred and the time spent reading and
+ * writing entities for all resource methods annotated with Metered.
+ *
+ * The time spent writing a StreamingOutput is not recorded as serialization,
+ * as it includes the calculation.
+ * @author Pascal Mainini
+ */
+@Provider
+@Metered
+public class MetricsInterceptor implements ContainerRequestFilter, ReaderInterceptor, WriterInterceptor {
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Counts the request.
+     * @param requestContext the context of the request
+     */
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        Metrics.getDefault().recordRequest();
+    }
+
+    /**
+     * Reads the entity, recording the time spent and the bytes read.
+     * @param context the context of the reader
+     * @return the entity read
+     * @throws IOException in case reading fails
+     */
+    @Override
+    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException {
+        final CountingInputStream in = new CountingInputStream(context.getInputStream());
+        context.setInputStream(in);
+
+        final long startTime = System.nanoTime();
+        try {
+            return context.proceed();
+        } finally {
+            Metrics.getDefault().recordParse(System.nanoTime() - startTime);
+            Metrics.getDefault().recordBytesIn(in.count);
+        }
+    }
+
+    /**
+     * Writes the entity, recording the time spent and the bytes written.
+     * @param context the context of the writer
+     * @throws IOException in case writing fails
+     */
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        final CountingOutputStream out = new CountingOutputStream(context.getOutputStream());
+        context.setOutputStream(out);
+
+        final long startTime = System.nanoTime();
+        try {
+            context.proceed();
+        } finally {
+            if(!(context.getEntity() instanceof StreamingOutput)) {
+                Metrics.getDefault().recordSerialize(System.nanoTime() - startTime);
+            }
+            Metrics.getDefault().recordBytesOut(out.count);
+        }
+    }
+
+///////////////////// Inner classes
+
+    /**
+     * Stream counting the bytes read.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        /**
+         * @param in the stream to read from
+         */
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if(b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if(read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Stream counting the bytes written.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        /**
+         * @param out the stream to write to
+         */
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
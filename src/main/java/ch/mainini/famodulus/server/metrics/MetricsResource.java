@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.metrics;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+/**
+ * Resource exposing the default Metrics in the Prometheus text format.
+ * @author Pascal Mainini
+ */
+@Path("metrics")
+public class MetricsResource {
+
+//////////////////////////////////////// Constants
+
+    /**
+     * Media type of the Prometheus text exposition format.
+     */
+    public static final String MEDIA_TYPE_PROMETHEUS = "text/plain; version=0.0.4";
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * This method implements the API for retrieving the metrics.
+     * @return the metrics in the Prometheus text format
+     */
+    @GET
+    @Produces(MEDIA_TYPE_PROMETHEUS)
+    public String metrics() {
+        return Metrics.getDefault().writePrometheus(new StringBuilder()).toString();
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * This package contains the metrics collected while serving requests and the
+ * REST resource exposing them in the Prometheus text format.
+ */
+package ch.mainini.famodulus.server.metrics;
@@ -0,0 +1,632 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.modexp;
+
+import ch.mainini.famodulus.server.compute.ComputePool;
+import ch.mainini.famodulus.server.compute.CrtContext;
+import ch.mainini.famodulus.server.compute.FixedBaseCache;
+import ch.mainini.famodulus.server.compute.FixedBaseTable;
+import ch.mainini.famodulus.server.compute.ModExpEngines;
+import ch.mainini.famodulus.server.compute.ResultCache;
+import ch.mainini.famodulus.server.compute.SubgroupCheck;
+import ch.mainini.famodulus.server.group.Group;
+import ch.mainini.famodulus.server.group.GroupRegistry;
+import ch.mainini.famodulus.server.metrics.Metrics;
+import ch.mainini.famodulus.server.store.TableStore;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.BadRequestException;
+
+/**
+ * A batch of modexps with all default values of the query applied, ready for
+ * calculation.
+ *
+ * The batch is split into chunks of roughly equal estimated cost (bits of the
+ * modulus squared times bits of the exponent) which are calculated in parallel
+ * on the compute pool, so that a single large modexp does not hold up the
+ * whole batch. Results are always kept in the order of the query.
+ *
+ * Parallel evaluation can be disabled using the system property
+ * famodulus.compute.parallel, the minimum cost of a chunk worth being split
+ * further is configured using famodulus.compute.min_cost.
+ *
+ * Modexps are calculated in constant time unless they or the query set secure
+ * to false, in which case the faster variable time engine is used.
+ *
+ * Before calculation, identical modexps and modexps sharing operands are
+ * grouped using a ModExpPlan. Other modexps with a (base, modulus) pair seen
+ * often enough are calculated using the tables of the default FixedBaseCache,
+ * unless the default TableStore holds a table for them.
+ *
+ * If the default ResultCache is enabled, results of modexps with cache set
+ * are taken from it without calculation, or stored in it otherwise. Cache
+ * defaults to true for modexps which are not secure and to false for secure
+ * ones, as the response time reveals whether a result was cached.
+ *
+ * Modexps with a non-negative exponent and the prime factors p and q of their
+ * modulus given are calculated using the Chinese remainder theorem. Factors
+ * given by the modexp itself must match its modulus, the default factors of
+ * the query are only applied to modexps whose modulus equals their product.
+ *
+ * Exponents of modexps with a group order o given are reduced modulo o before
+ * calculation. If the system property famodulus.order.check is true, the bases
+ * of such modexps are verified to be elements of the subgroup of order o using
+ * a SubgroupCheck, rejecting the whole batch otherwise.
+ *
+ * Modexps and queries may reference a group of the default GroupRegistry
+ * instead of giving modulus, base and order. Values given explicitly take
+ * precedence over those of the group, and values of a modexp or its group take
+ * precedence over those of the query or its group. Modexps using the generator
+ * and modulus of their group are calculated using the table of the group.
+ * @author Pascal Mainini
+ */
+public class ModExpBatch {
+
+//////////////////////////////////////// Constants
+
+    private static final Logger LOG = Logger.getLogger(ModExpBatch.class.getName());
+
+    private static final boolean CHECK_ORDER = Boolean.getBoolean("famodulus.order.check");
+
+//////////////////////////////////////// Fields
+
+    private final BigInteger[] moduli;
+    private final BigInteger[] bases;
+    private final BigInteger[] exponents;
+    private final BigInteger[] orders;
+    private final BigInteger[] results;
+    private final boolean[] secure;
+    private final boolean[] cached;
+    private final CrtContext[] crt;
+    private final FixedBaseTable[] tables;
+
+    /**
+     * Prefix sums of the estimated costs, costs[i] is the cost of all modexps before i.
+     */
+    private final long[] costs;
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Constructor which resolves all modexps of the given query.
+     * @param query the query to resolve
+     */
+    public ModExpBatch(ModExpQueryBean query) {
+        this(query, query.getModexps());
+    }
+
+    /**
+     * Constructor which concatenates resolved batches, e.g. of multiple
+     * requests, so their modexps are planned and calculated together.
+     * @param batches the batches to concatenate, must not have been evaluated yet
+     */
+    public ModExpBatch(List<ModExpBatch> batches) {
+        int size = 0;
+        for(ModExpBatch batch: batches) {
+            size += batch.size();
+        }
+        moduli = new BigInteger[size];
+        bases = new BigInteger[size];
+        exponents = new BigInteger[size];
+        orders = new BigInteger[size];
+        results = new BigInteger[size];
+        secure = new boolean[size];
+        cached = new boolean[size];
+        crt = new CrtContext[size];
+        tables = new FixedBaseTable[size];
+        costs = new long[size + 1];
+
+        int offset = 0;
+        for(ModExpBatch batch: batches) {
+            final int length = batch.size();
+            System.arraycopy(batch.moduli, 0, moduli, offset, length);
+            System.arraycopy(batch.bases, 0, bases, offset, length);
+            System.arraycopy(batch.exponents, 0, exponents, offset, length);
+            System.arraycopy(batch.orders, 0, orders, offset, length);
+            System.arraycopy(batch.secure, 0, secure, offset, length);
+            System.arraycopy(batch.cached, 0, cached, offset, length);
+            System.arraycopy(batch.crt, 0, crt, offset, length);
+            System.arraycopy(batch.tables, 0, tables, offset, length);
+            for(int i = 0; i < length; i++) {
+                costs[offset + i + 1] = costs[offset + i] + batch.costs[i + 1] - batch.costs[i];
+            }
+            offset += length;
+        }
+    }
+
+    /**
+     * Constructor which resolves the given modexps using the default values of
+     * the given query.
+     * @param defaults the query providing the default values
+     * @param modexps the modexps to resolve
+     * @throws BadRequestException if a modexp misses a value or its values are invalid
+     */
+    public ModExpBatch(ModExpQueryBean defaults, ModExpBean[] modexps) {
+        final int size = modexps.length;
+        moduli = new BigInteger[size];
+        bases = new BigInteger[size];
+        exponents = new BigInteger[size];
+        orders = new BigInteger[size];
+        results = new BigInteger[size];
+        secure = new boolean[size];
+        cached = new boolean[size];
+        crt = new CrtContext[size];
+        tables = new FixedBaseTable[size];
+        costs = new long[size + 1];
+
+        final Group defaultGroup = resolveGroup(defaults.getGroup());
+        final BigInteger defaultModulus = first(defaults.getModulus(), defaultGroup != null ? defaultGroup.getModulus() : null);
+        final BigInteger defaultBase = first(defaults.getBase(), defaultGroup != null ? defaultGroup.getGenerator() : null);
+        final BigInteger defaultOrder = first(defaults.getOrder(), defaultGroup != null ? defaultGroup.getOrder() : null);
+
+        if((defaults.getP() == null) != (defaults.getQ() == null)) {
+            throw new BadRequestException("Both default factors p and q are required!");
+        }
+        final Map<List<BigInteger>, CrtContext> contexts = new HashMap<>();
+        for(int i = 0; i < size; i++) {
+            final ModExpBean modexp = modexps[i];
+            final Group group = modexp.getGroup() != null ? resolveGroup(modexp.getGroup()) : defaultGroup;
+            final boolean ownGroup = modexp.getGroup() != null;
+            moduli[i] = first(modexp.getModulus(), ownGroup ? group.getModulus() : null, defaultModulus);
+            bases[i] = first(modexp.getBase(), ownGroup ? group.getGenerator() : null, defaultBase);
+            exponents[i] = modexp.getExponent() != null ? modexp.getExponent() : defaults.getExponent();
+            if(moduli[i] == null || bases[i] == null || exponents[i] == null) {
+                throw new BadRequestException("Modulus, base and exponent are required!");
+            }
+            secure[i] = modexp.getSecure() != null ? modexp.getSecure() : defaults.getSecure() == null || defaults.getSecure();
+            cached[i] = modexp.getCache() != null ? modexp.getCache() : defaults.getCache() != null ? defaults.getCache() : !secure[i];
+
+            orders[i] = first(modexp.getOrder(), ownGroup ? group.getOrder() : null, defaultOrder);
+            long checkCost = 0;
+            if(orders[i] != null) {
+                if(orders[i].signum() <= 0) {
+                    throw new BadRequestException("Group order must be positive!");
+                }
+                exponents[i] = exponents[i].mod(orders[i]);
+                if(CHECK_ORDER && !SubgroupCheck.isSafePrime(orders[i], moduli[i])) {
+                    checkCost = estimateCost(moduli[i], orders[i]);
+                }
+            }
+
+            if(modexp.getP() != null || modexp.getQ() != null) {
+                crt[i] = resolveCrt(contexts, modexp.getP(), modexp.getQ());
+                if(!crt[i].getModulus().equals(moduli[i])) {
+                    throw new BadRequestException("Factors p and q do not match the modulus!");
+                }
+            } else if(defaults.getP() != null && defaults.getP().multiply(defaults.getQ()).equals(moduli[i])) {
+                crt[i] = resolveCrt(contexts, defaults.getP(), defaults.getQ());
+            }
+            if(crt[i] != null && exponents[i].signum() < 0) {
+                crt[i] = null;
+            }
+            if(group != null && group.getGenerator().equals(bases[i]) && group.getModulus().equals(moduli[i])
+                    && group.getTable().supports(exponents[i])) {
+                tables[i] = group.getTable();
+            } else {
+                final FixedBaseTable stored = TableStore.getDefault().get(bases[i], moduli[i]);
+                if(stored != null && stored.supports(exponents[i])) {
+                    tables[i] = stored;
+                }
+            }
+
+            costs[i + 1] = costs[i] + checkCost + (crt[i] != null
+                    ? estimateCost(crt[i].getP(), crt[i].getP()) + estimateCost(crt[i].getQ(), crt[i].getQ())
+                    : estimateCost(moduli[i], exponents[i]));
+        }
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Estimates the cost of a single modexp.
+     * @param modulus the modulus of the modexp
+     * @param exponent the exponent of the modexp
+     * @return the estimated cost in arbitrary units
+     */
+    static long estimateCost(BigInteger modulus, BigInteger exponent) {
+        final long modulusBits = modulus.bitLength();
+        return modulusBits * modulusBits * Math.max(1, exponent.bitLength());
+    }
+
+    /**
+     * Looks up a group in the default registry.
+     * @param id the id of the group, may be null
+     * @return the group, or null if id is null
+     * @throws BadRequestException if no group with this id is registered
+     */
+    private static Group resolveGroup(String id) {
+        if(id == null) {
+            return null;
+        }
+        final Group group = GroupRegistry.getDefault().get(id);
+        if(group == null) {
+            throw new BadRequestException("Unknown group " + id + "!");
+        }
+        return group;
+    }
+
+    /**
+     * @param values the values in order of precedence, may contain null
+     * @return the first value not null, or null if all are null
+     */
+    private static BigInteger first(BigInteger... values) {
+        for(BigInteger value: values) {
+            if(value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the CRT context for the given factors, creating it if needed.
+     * @param contexts the contexts created so far, by factors
+     * @param p the first factor
+     * @param q the second factor
+     * @return the context
+     * @throws BadRequestException if a factor is missing or the factors are invalid
+     */
+    private static CrtContext resolveCrt(Map<List<BigInteger>, CrtContext> contexts, BigInteger p, BigInteger q) {
+        if(p == null || q == null) {
+            throw new BadRequestException("Both factors p and q are required!");
+        }
+
+        final List<BigInteger> factors = Arrays.asList(p, q);
+        CrtContext context = contexts.get(factors);
+        if(context == null) {
+            try {
+                context = new CrtContext(p, q);
+            } catch(IllegalArgumentException | ArithmeticException e) {
+                throw new BadRequestException("Invalid factors p and q: " + e.getMessage(), e);
+            }
+            contexts.put(factors, context);
+        }
+        return context;
+    }
+
+    /**
+     * @return the number of modexps in this batch
+     */
+    public int size() {
+        return results.length;
+    }
+
+    /**
+     * @return the estimated cost of the whole batch
+     */
+    public long getCost() {
+        return costs[results.length];
+    }
+
+    /**
+     * @param index the index of the modexp
+     * @return the resolved modulus
+     */
+    public BigInteger getModulus(int index) {
+        return moduli[index];
+    }
+
+    /**
+     * @param index the index of the modexp
+     * @return the resolved base
+     */
+    public BigInteger getBase(int index) {
+        return bases[index];
+    }
+
+    /**
+     * @param index the index of the modexp
+     * @return the resolved exponent
+     */
+    public BigInteger getExponent(int index) {
+        return exponents[index];
+    }
+
+    /**
+     * @param index the index of the modexp
+     * @return true if the modexp has to be calculated in constant time
+     */
+    public boolean isSecure(int index) {
+        return secure[index];
+    }
+
+    /**
+     * @param index the index of the modexp
+     * @return the resolved group order, or null
+     */
+    public BigInteger getOrder(int index) {
+        return orders[index];
+    }
+
+    /**
+     * @param index the index of the modexp
+     * @return the table of the group of the modexp or from the default
+     * TableStore if it applies to the modexp, or null
+     */
+    public FixedBaseTable getTable(int index) {
+        return tables[index];
+    }
+
+    /**
+     * @param index the index of the modexp
+     * @return the context for calculating the modexp using the Chinese remainder theorem, or null
+     */
+    public CrtContext getCrt(int index) {
+        return crt[index];
+    }
+
+    /**
+     * @param index the index of the modexp
+     * @return true if the result of the modexp may be taken from or stored in the result cache
+     */
+    public boolean isCached(int index) {
+        return cached[index];
+    }
+
+    /**
+     * Calculates all modexps of this batch according to a ModExpPlan, in
+     * parallel if enabled and worth it. Results found in the result cache are
+     * not calculated again.
+     * @return the results, in the order of the modexps
+     * @throws BadRequestException if checking group orders is enabled and a base is not an element of its subgroup
+     */
+    public BigInteger[] evaluate() {
+        final ResultCache.Key[] keys = new ResultCache.Key[size()];
+        final boolean[] known = lookupCache(keys);
+        if(CHECK_ORDER) {
+            checkOrders(known);
+        }
+        final ModExpPlan plan = new ModExpPlan(this, known);
+        plan.buildTables();
+
+        final ModExpPlan.Step[] steps = plan.getSteps().toArray(new ModExpPlan.Step[0]);
+        final long[] stepCosts = new long[steps.length + 1];
+        for(int s = 0; s < steps.length; s++) {
+            stepCosts[s + 1] = stepCosts[s];
+            for(int i: steps[s].getIndices()) {
+                stepCosts[s + 1] += costs[i + 1] - costs[i];
+            }
+        }
+
+        final long cost = stepCosts[steps.length];
+        final long grain = ComputePool.getGrain(cost);
+        if(!ComputePool.isParallel() || steps.length < 2 || cost <= grain) {
+            evaluate(steps, 0, steps.length, keys);
+        } else {
+            ComputePool.getPool().invoke(new ChunkTask(steps, stepCosts, keys, 0, steps.length, grain));
+        }
+
+        for(int i = 0; i < size(); i++) {
+            results[i] = results[plan.getSource(i)];
+        }
+        if(LOG.isLoggable(Level.FINE) && (steps.length < size() || plan.getTableCount() > 0)) {
+            LOG.fine(String.format("Planned %d modexps as %d steps using %d fixed base tables.", size(), steps.length, plan.getTableCount()));
+        }
+        return results;
+    }
+
+    /**
+     * Verifies that the bases of all modexps with a group order and not known
+     * yet are elements of their subgroup, checking all bases sharing order,
+     * modulus and secure option at once.
+     * @param known true for all modexps whose result is already known
+     * @throws BadRequestException if a base is not an element of its subgroup
+     */
+    private void checkOrders(boolean[] known) {
+        final Map<List<Object>, List<Integer>> groups = new HashMap<>();
+        for(int i = 0; i < size(); i++) {
+            if(orders[i] != null && !known[i]) {
+                final List<Object> key = Arrays.<Object>asList(orders[i], moduli[i], secure[i]);
+                List<Integer> members = groups.get(key);
+                if(members == null) {
+                    groups.put(key, members = new ArrayList<>());
+                }
+                members.add(i);
+            }
+        }
+
+        for(List<Integer> members: groups.values()) {
+            final int first = members.get(0);
+            final BigInteger[] groupBases = new BigInteger[members.size()];
+            for(int j = 0; j < groupBases.length; j++) {
+                groupBases[j] = bases[members.get(j)];
+            }
+            if(!SubgroupCheck.contains(groupBases, orders[first], moduli[first], secure[first])) {
+                throw new BadRequestException("Base is not an element of the subgroup of order " + orders[first].toString(16) + "!");
+            }
+        }
+    }
+
+    /**
+     * Looks up the results of all modexps allowing it in the result cache,
+     * if enabled.
+     * @param keys the array to store the keys of the modexps in, for adding their results later
+     * @return true for each modexp whose result has been found
+     */
+    private boolean[] lookupCache(ResultCache.Key[] keys) {
+        final ResultCache cache = ResultCache.getDefault();
+        final boolean[] known = new boolean[size()];
+        if(!cache.isEnabled()) {
+            return known;
+        }
+
+        for(int i = 0; i < size(); i++) {
+            if(cached[i]) {
+                keys[i] = cache.key(bases[i], exponents[i], moduli[i]);
+                results[i] = cache.get(keys[i]);
+                known[i] = results[i] != null;
+            }
+        }
+        return known;
+    }
+
+    /**
+     * Sequentially calculates the given range of steps. Single modexps
+     * calculated by an engine are collected by modulus and secure option and
+     * handed to the engine together, so it can share the modulus across them.
+     * @param steps the steps of the plan
+     * @param from the first step to calculate
+     * @param to the step after the last one to calculate
+     * @param keys the keys for adding results to the result cache, null for modexps not to add
+     */
+    private void evaluate(ModExpPlan.Step[] steps, int from, int to, ResultCache.Key[] keys) {
+        final Map<List<Object>, List<Integer>> pending = new HashMap<>();
+        for(int s = from; s < to; s++) {
+            final long startTime = System.nanoTime();
+            final int[] indices = steps[s].getIndices();
+            final int first = indices[0];
+            final BigInteger m = moduli[first];
+            final BigInteger e = exponents[first];
+
+            if(indices.length > 1) {
+                final BigInteger[] stepBases = new BigInteger[indices.length];
+                for(int j = 0; j < indices.length; j++) {
+                    stepBases[j] = bases[indices[j]];
+                }
+                final BigInteger[] stepResults = ModExpEngines.get(secure[first]).modPow(stepBases, e, m);
+                for(int j = 0; j < indices.length; j++) {
+                    results[indices[j]] = stepResults[j];
+                }
+            } else if(crt[first] != null) {
+                results[first] = crt[first].modPow(bases[first], e, secure[first]);
+            } else {
+                FixedBaseTable table = steps[s].getTable();
+                if(table == null) {
+                    table = tables[first];
+                }
+                if(table == null) {
+                    table = FixedBaseCache.getDefault().lookup(bases[first], m);
+                }
+                if(table == null || !table.supports(e)) {
+                    final List<Object> key = Arrays.<Object>asList(m, secure[first]);
+                    List<Integer> members = pending.get(key);
+                    if(members == null) {
+                        pending.put(key, members = new ArrayList<>());
+                    }
+                    members.add(first);
+                    continue;
+                }
+                results[first] = table.modPow(e);
+            }
+            complete(indices, startTime, keys);
+        }
+
+        for(List<Integer> members: pending.values()) {
+            final long startTime = System.nanoTime();
+            final int[] indices = new int[members.size()];
+            final BigInteger[] pendingBases = new BigInteger[indices.length];
+            final BigInteger[] pendingExponents = new BigInteger[indices.length];
+            for(int j = 0; j < indices.length; j++) {
+                indices[j] = members.get(j);
+                pendingBases[j] = bases[indices[j]];
+                pendingExponents[j] = exponents[indices[j]];
+            }
+            final BigInteger[] pendingResults = ModExpEngines.get(secure[indices[0]]).modPow(pendingBases, pendingExponents, moduli[indices[0]]);
+            for(int j = 0; j < indices.length; j++) {
+                results[indices[j]] = pendingResults[j];
+            }
+            complete(indices, startTime, keys);
+        }
+    }
+
+    /**
+     * Adds the results of calculated modexps to the result cache and records their metrics.
+     * @param indices the indices of the modexps
+     * @param startTime the time their calculation started
+     * @param keys the keys for adding results to the result cache, null for modexps not to add
+     */
+    private void complete(int[] indices, long startTime, ResultCache.Key[] keys) {
+        final Metrics metrics = Metrics.getDefault();
+        final long nanos = (System.nanoTime() - startTime) / indices.length;
+        for(int i: indices) {
+            if(keys[i] != null) {
+                ResultCache.getDefault().put(keys[i], results[i]);
+            }
+            metrics.recordModExp(moduli[i].bitLength(), nanos);
+
+            if(LOG.isLoggable(Level.FINEST)) {
+                LOG.finest(String.format("Calculated modexp, m: %s, b: %s, e: %s, r: %s ...",
+                        moduli[i].toString(16), bases[i].toString(16), exponents[i].toString(16), results[i].toString(16)));
+            }
+        }
+    }
+
+    /**
+     * Finds the index splitting the given range into two halves of about equal cost.
+     * @param costs the prefix sums of the costs
+     * @param from the first index of the range
+     * @param to the index after the last one of the range
+     * @return the index of the split, always within (from, to)
+     */
+    private static int split(long[] costs, int from, int to) {
+        final long half = costs[from] + (costs[to] - costs[from]) / 2;
+        int low = from + 1;
+        int high = to - 1;
+        while(low < high) {
+            final int mid = (low + high) >>> 1;
+            if(costs[mid] < half) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+///////////////////// Inner classes
+
+    /**
+     * Task calculating a range of steps, splitting itself by cost as long
+     * as the range is more expensive than the grain.
+     */
+    private class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ModExpPlan.Step[] steps;
+        private final long[] stepCosts;
+        private final ResultCache.Key[] keys;
+        private final int from;
+        private final int to;
+        private final long grain;
+
+        /**
+         * @param steps the steps of the plan
+         * @param stepCosts the prefix sums of the estimated costs of the steps
+         * @param keys the keys for adding results to the result cache
+         * @param from the first step to calculate
+         * @param to the step after the last one to calculate
+         * @param grain the cost up to which a range is calculated sequentially
+         */
+        ChunkTask(ModExpPlan.Step[] steps, long[] stepCosts, ResultCache.Key[] keys, int from, int to, long grain) {
+            this.steps = steps;
+            this.stepCosts = stepCosts;
+            this.keys = keys;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from < 2 || stepCosts[to] - stepCosts[from] <= grain) {
+                evaluate(steps, from, to, keys);
+            } else {
+                final int mid = split(stepCosts, from, to);
+                invokeAll(new ChunkTask(steps, stepCosts, keys, from, mid, grain),
+                        new ChunkTask(steps, stepCosts, keys, mid, to, grain));
+            }
+        }
+    }
+}
@@ -30,10 +30,48 @@ public class ModExpBean {
     @XmlJavaTypeAdapter(BigIntegerStringAdapter.class)
     private BigInteger exponent;
 
+    /**
+     * Prime order of the group of the base, if set the exponent is reduced
+     * modulo the order.
+     */
+    @XmlAttribute(name = "o")
+    @XmlJavaTypeAdapter(BigIntegerStringAdapter.class)
+    private BigInteger order;
+
+    /**
+     * Prime factors of the modulus, if set the modexp is calculated using the
+     * Chinese remainder theorem.
+     */
+    @XmlAttribute(name = "p")
+    @XmlJavaTypeAdapter(BigIntegerStringAdapter.class)
+    private BigInteger p;
+
+    @XmlAttribute(name = "q")
+    @XmlJavaTypeAdapter(BigIntegerStringAdapter.class)
+    private BigInteger q;
+
     @XmlAttribute(name = "r")
     @XmlJavaTypeAdapter(BigIntegerStringAdapter.class)
     private BigInteger result;
 
+    /**
+     * Id of a registered group providing modulus, base and order, null to
+     * use the group of the query.
+     */
+    private String group;
+
+    /**
+     * Whether this modexp involves secret values and has to be calculated in
+     * constant time, null to use the default of the query.
+     */
+    private Boolean secure;
+
+    /**
+     * Whether the result of this modexp may be taken from and stored in the
+     * result cache, null to use the default of the query.
+     */
+    private Boolean cache;
+
 //////////////////////////////////////// Constructors
 
     /**
@@ -113,6 +151,48 @@ public class ModExpBean {
         this.exponent = exponent;
     }
 
+    /**
+     * @return the order of the group
+     */
+    public BigInteger getOrder() {
+        return order;
+    }
+
+    /**
+     * @param order the order of the group to set
+     */
+    public void setOrder(BigInteger order) {
+        this.order = order;
+    }
+
+    /**
+     * @return the first prime factor of the modulus
+     */
+    public BigInteger getP() {
+        return p;
+    }
+
+    /**
+     * @param p the first prime factor of the modulus to set
+     */
+    public void setP(BigInteger p) {
+        this.p = p;
+    }
+
+    /**
+     * @return the second prime factor of the modulus
+     */
+    public BigInteger getQ() {
+        return q;
+    }
+
+    /**
+     * @param q the second prime factor of the modulus to set
+     */
+    public void setQ(BigInteger q) {
+        this.q = q;
+    }
+
     /**
      * @return the result
      */
@@ -126,4 +206,61 @@ public class ModExpBean {
     public void setResult(BigInteger result) {
         this.result = result;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the secure
+     */
+    public Boolean getSecure() {
+        return secure;
+    }
+
+    /**
+     * @param secure the secure to set
+     */
+    public void setSecure(Boolean secure) {
+        this.secure = secure;
+    }
+
+    /**
+     * @return the cache
+     */
+    public Boolean getCache() {
+        return cache;
+    }
+
+    /**
+     * @param cache the cache to set
+     */
+    public void setCache(Boolean cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return the id of the registered group
+     */
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * @param group the id of the registered group to set
+     */
+    public void setGroup(String group) {
+        this.group = group;
+    }
+
+    /**
+     * Removes all values but the result, e.g. for brief responses.
+     */
+    public void clear() {
+        modulus = null;
+        base = null;
+        exponent = null;
+        order = null;
+        group = null;
+        p = null;
+        q = null;
+        secure = null;
+        cache = null;
+    }
+}
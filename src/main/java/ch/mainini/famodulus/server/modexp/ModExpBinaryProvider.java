@@ -0,0 +1,366 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.modexp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Reader and writer for the compact binary representation of ModExpQueryBean.
+ *
+ * All integers are big-endian. A value is written as its signed length
+ * (int32, negative for negative values) followed by the bytes of its
+ * magnitude. A query starts with the format version and a flags byte
+ * (BRIEF, M, B, E, INSECURE, NO_CACHE, EXTENDED), followed by the default values indicated by the
+ * flags, the number of modexps (int32) and the modexps. Each modexp starts
+ * with a flags byte (M, B, E, R, INSECURE, NO_CACHE, EXTENDED) followed by the values indicated. Brief responses
+ * only consist of version, flags, the number of results and the results.
+ *
+ * If EXTENDED is set, the flags byte is directly followed by a second flags
+ * byte (O, P, Q, GROUP) whose values are written after those of the first
+ * one. The hexadecimal id of a group is written as a value as well.
+ * @author Pascal Mainini
+ */
+@Provider
+@Consumes(MediaType.APPLICATION_OCTET_STREAM)
+@Produces(MediaType.APPLICATION_OCTET_STREAM)
+public class ModExpBinaryProvider implements MessageBodyReader<ModExpQueryBean>, MessageBodyWriter<ModExpQueryBean> {
+
+//////////////////////////////////////// Constants
+
+    /**
+     * Version of the binary format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Flag for brief queries and responses.
+     */
+    public static final int FLAG_BRIEF = 0x01;
+
+    /**
+     * Flag for a present modulus.
+     */
+    public static final int FLAG_M = 0x02;
+
+    /**
+     * Flag for a present base.
+     */
+    public static final int FLAG_B = 0x04;
+
+    /**
+     * Flag for a present exponent.
+     */
+    public static final int FLAG_E = 0x08;
+
+    /**
+     * Flag for a present result.
+     */
+    public static final int FLAG_R = 0x10;
+
+    /**
+     * Flag for modexps without secret values (secure set to false).
+     */
+    public static final int FLAG_INSECURE = 0x20;
+
+    /**
+     * Flag for modexps bypassing the result cache (cache set to false).
+     */
+    public static final int FLAG_NO_CACHE = 0x40;
+
+    /**
+     * Flag for a following byte of extended flags.
+     */
+    public static final int FLAG_EXTENDED = 0x80;
+
+    /**
+     * Extended flag for a present first factor of the modulus.
+     */
+    public static final int EXTENDED_FLAG_P = 0x01;
+
+    /**
+     * Extended flag for a present second factor of the modulus.
+     */
+    public static final int EXTENDED_FLAG_Q = 0x02;
+
+    /**
+     * Extended flag for a present group order.
+     */
+    public static final int EXTENDED_FLAG_O = 0x04;
+
+    /**
+     * Extended flag for a present group id.
+     */
+    public static final int EXTENDED_FLAG_GROUP = 0x08;
+
+    /**
+     * Maximum number of bytes of a single value.
+     */
+    private static final int MAX_VALUE_BYTES = 1 << 20;
+
+    /**
+     * Maximum number of modexps allocated upfront.
+     */
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+
+//////////////////////////////////////// Methods
+
+///////////////////// Reading
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type == ModExpQueryBean.class;
+    }
+
+    /**
+     * Reads a query in binary format.
+     * @return the query read
+     * @throws IOException in case reading fails
+     * @throws BadRequestException in case the query is malformed
+     */
+    @Override
+    public ModExpQueryBean readFrom(Class<ModExpQueryBean> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(entityStream));
+        try {
+            if(in.readUnsignedByte() != VERSION) {
+                throw new BadRequestException("Unsupported binary format version!");
+            }
+
+            final int flags = in.readUnsignedByte();
+            final int extendedFlags = (flags & FLAG_EXTENDED) != 0 ? in.readUnsignedByte() : 0;
+            final ModExpQueryBean query = new ModExpQueryBean();
+            query.setBrief((flags & FLAG_BRIEF) != 0);
+            query.setModulus((flags & FLAG_M) != 0 ? readValue(in) : null);
+            query.setBase((flags & FLAG_B) != 0 ? readValue(in) : null);
+            query.setExponent((flags & FLAG_E) != 0 ? readValue(in) : null);
+            query.setOrder((extendedFlags & EXTENDED_FLAG_O) != 0 ? readValue(in) : null);
+            query.setP((extendedFlags & EXTENDED_FLAG_P) != 0 ? readValue(in) : null);
+            query.setQ((extendedFlags & EXTENDED_FLAG_Q) != 0 ? readValue(in) : null);
+            query.setGroup((extendedFlags & EXTENDED_FLAG_GROUP) != 0 ? readGroup(in) : null);
+            query.setSecure((flags & FLAG_INSECURE) != 0 ? Boolean.FALSE : null);
+            query.setCache((flags & FLAG_NO_CACHE) != 0 ? Boolean.FALSE : null);
+
+            final int count = in.readInt();
+            if(count < 0) {
+                throw new BadRequestException("Invalid number of modexps!");
+            }
+            final List<ModExpBean> modexps = new ArrayList<>(Math.min(count, MAX_INITIAL_CAPACITY));
+            for(int i = 0; i < count; i++) {
+                final int modexpFlags = in.readUnsignedByte();
+                final int modexpExtendedFlags = (modexpFlags & FLAG_EXTENDED) != 0 ? in.readUnsignedByte() : 0;
+                final ModExpBean modexp = new ModExpBean();
+                modexp.setModulus((modexpFlags & FLAG_M) != 0 ? readValue(in) : null);
+                modexp.setBase((modexpFlags & FLAG_B) != 0 ? readValue(in) : null);
+                modexp.setExponent((modexpFlags & FLAG_E) != 0 ? readValue(in) : null);
+                modexp.setOrder((modexpExtendedFlags & EXTENDED_FLAG_O) != 0 ? readValue(in) : null);
+                modexp.setP((modexpExtendedFlags & EXTENDED_FLAG_P) != 0 ? readValue(in) : null);
+                modexp.setQ((modexpExtendedFlags & EXTENDED_FLAG_Q) != 0 ? readValue(in) : null);
+                modexp.setGroup((modexpExtendedFlags & EXTENDED_FLAG_GROUP) != 0 ? readGroup(in) : null);
+                modexp.setSecure((modexpFlags & FLAG_INSECURE) != 0 ? Boolean.FALSE : null);
+                modexp.setCache((modexpFlags & FLAG_NO_CACHE) != 0 ? Boolean.FALSE : null);
+                modexps.add(modexp);
+            }
+            query.setModexps(modexps.toArray(new ModExpBean[modexps.size()]));
+            return query;
+        } catch(EOFException e) {
+            throw new BadRequestException("Unexpected end of binary query!", e);
+        }
+    }
+
+    /**
+     * Reads a group id, written as a value.
+     * @param in the stream to read from
+     * @return the hexadecimal id, padded to the length of registered ids
+     * @throws IOException in case reading fails
+     */
+    private static String readGroup(DataInputStream in) throws IOException {
+        return String.format("%016x", readValue(in));
+    }
+
+    /**
+     * Reads a single value.
+     * @param in the stream to read from
+     * @return the value read
+     * @throws IOException in case reading fails
+     */
+    private static BigInteger readValue(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if(length < -MAX_VALUE_BYTES || length > MAX_VALUE_BYTES) {
+            throw new BadRequestException("Value exceeds maximum length!");
+        }
+
+        final byte[] magnitude = new byte[Math.abs(length)];
+        in.readFully(magnitude);
+        return new BigInteger(length < 0 ? -1 : 1, magnitude);
+    }
+
+///////////////////// Writing
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type == ModExpQueryBean.class;
+    }
+
+    @Override
+    public long getSize(ModExpQueryBean query, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    /**
+     * Writes a response in binary format. Responses without brief flag set
+     * to false are written in brief format.
+     * @throws IOException in case writing fails
+     */
+    @Override
+    public void writeTo(ModExpQueryBean query, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(entityStream));
+        final ModExpBean[] modexps = query.getModexps() != null ? query.getModexps() : new ModExpBean[0];
+        out.writeByte(VERSION);
+
+        if(query.getBrief() == null || query.getBrief()) {
+            out.writeByte(FLAG_BRIEF);
+            out.writeInt(modexps.length);
+            for(ModExpBean modexp: modexps) {
+                writeValue(out, modexp.getResult());
+            }
+        } else {
+            out.writeByte(flags(query.getModulus(), query.getBase(), query.getExponent(), null) | insecureFlag(query.getSecure())
+                    | noCacheFlag(query.getCache()) | (extendedFlags(query.getOrder(), query.getP(), query.getQ(), query.getGroup()) != 0 ? FLAG_EXTENDED : 0));
+            writeExtendedFlags(out, query.getOrder(), query.getP(), query.getQ(), query.getGroup());
+            writeValues(out, query.getModulus(), query.getBase(), query.getExponent(), null, query.getOrder(), query.getP(), query.getQ(),
+                    groupValue(query.getGroup()));
+            out.writeInt(modexps.length);
+            for(ModExpBean modexp: modexps) {
+                out.writeByte(flags(modexp.getModulus(), modexp.getBase(), modexp.getExponent(), modexp.getResult())
+                        | insecureFlag(modexp.getSecure()) | noCacheFlag(modexp.getCache())
+                        | (extendedFlags(modexp.getOrder(), modexp.getP(), modexp.getQ(), modexp.getGroup()) != 0 ? FLAG_EXTENDED : 0));
+                writeExtendedFlags(out, modexp.getOrder(), modexp.getP(), modexp.getQ(), modexp.getGroup());
+                writeValues(out, modexp.getModulus(), modexp.getBase(), modexp.getExponent(), modexp.getResult(),
+                        modexp.getOrder(), modexp.getP(), modexp.getQ(), groupValue(modexp.getGroup()));
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Calculates the flags for the given values.
+     * @param m modulus or null
+     * @param b base or null
+     * @param e exponent or null
+     * @param r result or null
+     * @return the flags for all non-null values
+     */
+    private static int flags(BigInteger m, BigInteger b, BigInteger e, BigInteger r) {
+        return (m != null ? FLAG_M : 0) | (b != null ? FLAG_B : 0) | (e != null ? FLAG_E : 0) | (r != null ? FLAG_R : 0);
+    }
+
+    /**
+     * Calculates the extended flags for the given values.
+     * @param o group order or null
+     * @param p first factor or null
+     * @param q second factor or null
+     * @param group group id or null
+     * @return the extended flags for all non-null values
+     */
+    private static int extendedFlags(BigInteger o, BigInteger p, BigInteger q, String group) {
+        return (o != null ? EXTENDED_FLAG_O : 0) | (p != null ? EXTENDED_FLAG_P : 0) | (q != null ? EXTENDED_FLAG_Q : 0)
+                | (group != null ? EXTENDED_FLAG_GROUP : 0);
+    }
+
+    /**
+     * Writes the extended flags for the given values if any of them is set.
+     * @param out the stream to write to
+     * @param o group order or null
+     * @param p first factor or null
+     * @param q second factor or null
+     * @param group group id or null
+     * @throws IOException in case writing fails
+     */
+    private static void writeExtendedFlags(DataOutputStream out, BigInteger o, BigInteger p, BigInteger q, String group) throws IOException {
+        final int extendedFlags = extendedFlags(o, p, q, group);
+        if(extendedFlags != 0) {
+            out.writeByte(extendedFlags);
+        }
+    }
+
+    /**
+     * Converts a group id into the value written.
+     * @param group the hexadecimal group id, may be null
+     * @return the id as value, or null
+     */
+    private static BigInteger groupValue(String group) {
+        return group != null ? new BigInteger(group, 16) : null;
+    }
+
+    /**
+     * Calculates the flag for the given secure value.
+     * @param secure the secure value, may be null
+     * @return FLAG_INSECURE if secure is false, 0 otherwise
+     */
+    private static int insecureFlag(Boolean secure) {
+        return Boolean.FALSE.equals(secure) ? FLAG_INSECURE : 0;
+    }
+
+    /**
+     * Calculates the flag for the given cache value.
+     * @param cache the cache value, may be null
+     * @return FLAG_NO_CACHE if cache is false, 0 otherwise
+     */
+    private static int noCacheFlag(Boolean cache) {
+        return Boolean.FALSE.equals(cache) ? FLAG_NO_CACHE : 0;
+    }
+
+    /**
+     * Writes all non-null values of the given values.
+     * @param out the stream to write to
+     * @param values the values to write
+     * @throws IOException in case writing fails
+     */
+    private static void writeValues(DataOutputStream out, BigInteger... values) throws IOException {
+        for(BigInteger value: values) {
+            if(value != null) {
+                writeValue(out, value);
+            }
+        }
+    }
+
+    /**
+     * Writes a single value.
+     * @param out the stream to write to
+     * @param value the value to write
+     * @throws IOException in case writing fails
+     */
+    private static void writeValue(DataOutputStream out, BigInteger value) throws IOException {
+        final byte[] bytes = value.abs().toByteArray();
+        final int offset = bytes.length > 1 && bytes[0] == 0 ? 1 : 0;
+        final int length = value.signum() == 0 ? 0 : bytes.length - offset;
+
+        out.writeInt(value.signum() < 0 ? -length : length);
+        out.write(bytes, offset, length);
+    }
+}
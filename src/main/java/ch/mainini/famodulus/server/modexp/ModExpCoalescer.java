@@ -0,0 +1,336 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.modexp;
+
+import ch.mainini.famodulus.server.compute.ComputeQueue;
+import ch.mainini.famodulus.server.metrics.Metrics;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.ServiceUnavailableException;
+
+/**
+ * Coalescing of small batches of concurrent requests sharing a modulus into
+ * micro-batches, which are planned and calculated as a single ModExpBatch.
+ *
+ * A batch is coalesced if all its modexps share the same modulus and it has
+ * fewer modexps than the maximum size of a micro-batch. The micro-batch of a
+ * modulus is submitted to the compute queue once it reaches the maximum size
+ * or the delay since its first batch has passed, whichever comes first; each
+ * batch then completes separately with its part of the results. A longer delay
+ * and larger maximum size coalesce more batches at the price of latency.
+ *
+ * If a micro-batch is rejected by the compute queue, all its batches fail with
+ * status 503. If its calculation fails, its batches are calculated separately,
+ * so only the failing ones fail.
+ *
+ * The default coalescer is configured using the system properties
+ * famodulus.coalesce.delay (in microseconds, 0 disables coalescing) and
+ * famodulus.coalesce.max_size (number of modexps).
+ * @author Pascal Mainini
+ */
+public class ModExpCoalescer {
+
+//////////////////////////////////////// Constants
+
+    private static final Logger LOG = Logger.getLogger(ModExpCoalescer.class.getName());
+
+    private static final int DEFAULT_MAX_SIZE = 64;
+
+    private static final ModExpCoalescer DEFAULT = new ModExpCoalescer(
+            Long.getLong("famodulus.coalesce.delay", 0), TimeUnit.MICROSECONDS,
+            Integer.getInteger("famodulus.coalesce.max_size", DEFAULT_MAX_SIZE),
+            ComputeQueue.getDefault());
+
+//////////////////////////////////////// Fields
+
+    private final long delayNanos;
+    private final int maxSize;
+    private final ComputeQueue queue;
+    private final ScheduledExecutorService timer;
+
+    /**
+     * The micro-batches not submitted yet, by modulus, guarded by this.
+     */
+    private final Map<BigInteger, MicroBatch> open = new HashMap<>();
+
+    private final LongAdder coalescedBatches = new LongAdder();
+    private final LongAdder microBatches = new LongAdder();
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Constructor.
+     * @param delay the maximum delay of a micro-batch after its first batch, 0 to disable coalescing
+     * @param unit the unit of the delay
+     * @param maxSize the maximum number of modexps of a micro-batch
+     * @param queue the queue to submit the micro-batches to
+     */
+    public ModExpCoalescer(long delay, TimeUnit unit, int maxSize, ComputeQueue queue) {
+        this.delayNanos = unit.toNanos(delay);
+        this.maxSize = maxSize;
+        this.queue = queue;
+        this.timer = isEnabled() ? Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "famodulus-coalesce");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }) : null;
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * @return the default coalescer, configured by famodulus.coalesce.*
+     */
+    public static ModExpCoalescer getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return true if batches are coalesced at all
+     */
+    public boolean isEnabled() {
+        return delayNanos > 0 && maxSize > 1;
+    }
+
+    /**
+     * Adds a batch to the micro-batch of its modulus, if it can be coalesced.
+     * @param batch the resolved batch
+     * @param callback the callback to complete with the results of the batch
+     * @return true if the batch has been taken, false if it has to be calculated separately
+     */
+    public boolean submit(ModExpBatch batch, Callback callback) {
+        if(!isEnabled() || batch.size() == 0 || batch.size() >= maxSize) {
+            return false;
+        }
+        final BigInteger modulus = batch.getModulus(0);
+        for(int i = 1; i < batch.size(); i++) {
+            if(!modulus.equals(batch.getModulus(i))) {
+                return false;
+            }
+        }
+
+        final List<MicroBatch> ready = new ArrayList<>(2);
+        synchronized(this) {
+            MicroBatch micro = open.get(modulus);
+            if(micro != null && micro.size + batch.size() > maxSize) {
+                open.remove(modulus);
+                ready.add(micro);
+                micro = null;
+            }
+            if(micro == null) {
+                micro = new MicroBatch(modulus);
+                open.put(modulus, micro);
+                schedule(micro);
+            }
+            micro.add(batch, callback);
+            if(micro.size >= maxSize) {
+                open.remove(modulus);
+                ready.add(micro);
+            }
+        }
+        coalescedBatches.increment();
+
+        for(MicroBatch micro: ready) {
+            dispatch(micro);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of batches coalesced so far
+     */
+    public long getCoalescedBatches() {
+        return coalescedBatches.sum();
+    }
+
+    /**
+     * @return the number of micro-batches submitted so far
+     */
+    public long getMicroBatches() {
+        return microBatches.sum();
+    }
+
+    /**
+     * Schedules the submission of a micro-batch once the delay has passed.
+     * @param micro the micro-batch
+     */
+    private void schedule(final MicroBatch micro) {
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized(ModExpCoalescer.this) {
+                    if(open.get(micro.modulus) != micro) {
+                        return;
+                    }
+                    open.remove(micro.modulus);
+                }
+                dispatch(micro);
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Submits a micro-batch to the compute queue, failing all its batches if
+     * it is rejected or cannot be merged.
+     * @param micro the micro-batch
+     */
+    private void dispatch(final MicroBatch micro) {
+        microBatches.increment();
+        final ModExpBatch merged;
+        try {
+            merged = micro.batches.size() == 1 ? micro.batches.get(0) : new ModExpBatch(micro.batches);
+        } catch(Throwable t) {
+            micro.fail(t);
+            return;
+        }
+        final boolean submitted = queue.submit(merged.getCost(), new Runnable() {
+            @Override
+            public void run() {
+                micro.evaluate(merged);
+            }
+        });
+        if(!submitted) {
+            micro.fail(new ServiceUnavailableException(queue.getRetryAfter()));
+        }
+    }
+
+///////////////////// Inner classes
+
+    /**
+     * Callback receiving the results of a coalesced batch.
+     */
+    public interface Callback {
+
+        /**
+         * Called once all modexps of the batch have been calculated. The
+         * time spent has been recorded in the metrics already, once per
+         * micro-batch.
+         * @param results the results, in the order of the modexps
+         * @param nanos the time spent calculating the micro-batch
+         */
+        void completed(BigInteger[] results, long nanos);
+
+        /**
+         * Called if the batch has been rejected or its calculation failed.
+         * @param t the cause
+         */
+        void failed(Throwable t);
+    }
+
+    /**
+     * Batches sharing a modulus, calculated together.
+     */
+    private static final class MicroBatch {
+
+        private final BigInteger modulus;
+        private final List<ModExpBatch> batches = new ArrayList<>();
+        private final List<Callback> callbacks = new ArrayList<>();
+        private int size;
+
+        /**
+         * @param modulus the modulus shared by all modexps
+         */
+        MicroBatch(BigInteger modulus) {
+            this.modulus = modulus;
+        }
+
+        /**
+         * @param batch the batch to add
+         * @param callback the callback of the batch
+         */
+        void add(ModExpBatch batch, Callback callback) {
+            batches.add(batch);
+            callbacks.add(callback);
+            size += batch.size();
+        }
+
+        /**
+         * Calculates the batches and completes their callbacks, calculating
+         * them separately if the calculation of the merged batch fails. Every
+         * callback is either completed or failed, whatever is thrown.
+         * @param merged the merged batch
+         */
+        void evaluate(ModExpBatch merged) {
+            final long startTime = System.nanoTime();
+            final BigInteger[] results;
+            try {
+                results = merged.evaluate();
+            } catch(Throwable t) {
+                if(batches.size() == 1) {
+                    fail(t);
+                } else {
+                    evaluateSeparately();
+                }
+                return;
+            }
+
+            final long nanos = System.nanoTime() - startTime;
+            Metrics.getDefault().recordCompute(nanos);
+            int offset = 0;
+            for(int i = 0; i < batches.size(); i++) {
+                final int length = batches.get(i).size();
+                try {
+                    callbacks.get(i).completed(Arrays.copyOfRange(results, offset, offset + length), nanos);
+                } catch(Throwable t) {
+                    callbacks.get(i).failed(t);
+                }
+                offset += length;
+            }
+            if(LOG.isLoggable(Level.FINE)) {
+                LOG.fine(String.format("Coalesced %d batches of %d modexps with a %d-bit modulus, calculation took %f ms.",
+                        batches.size(), size, modulus.bitLength(), nanos / 1000000.0));
+            }
+        }
+
+        /**
+         * Calculates each batch on its own, completing or failing its callback.
+         */
+        private void evaluateSeparately() {
+            for(int i = 0; i < batches.size(); i++) {
+                final long startTime = System.nanoTime();
+                final BigInteger[] results;
+                try {
+                    results = batches.get(i).evaluate();
+                } catch(Throwable t) {
+                    callbacks.get(i).failed(t);
+                    continue;
+                }
+                final long nanos = System.nanoTime() - startTime;
+                Metrics.getDefault().recordCompute(nanos);
+                try {
+                    callbacks.get(i).completed(results, nanos);
+                } catch(Throwable t) {
+                    callbacks.get(i).failed(t);
+                }
+            }
+        }
+
+        /**
+         * Fails the callbacks of all batches.
+         * @param t the cause
+         */
+        void fail(Throwable t) {
+            for(Callback callback: callbacks) {
+                callback.failed(t);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.modexp;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import javax.ws.rs.BadRequestException;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+import org.eclipse.persistence.jaxb.JAXBContextFactory;
+import org.eclipse.persistence.jaxb.MarshallerProperties;
+import org.eclipse.persistence.jaxb.UnmarshallerProperties;
+
+/**
+ * JSON binding of the modexp beans using MOXy, for use outside of the
+ * message body readers and writers provided by JAX-RS, e.g. for streaming.
+ * Instances are not thread-safe.
+ * @author Pascal Mainini
+ */
+public class ModExpJson {
+
+//////////////////////////////////////// Constants
+
+    private static final String MEDIA_TYPE_JSON = "application/json";
+
+    private static final JAXBContext CONTEXT = createContext();
+
+//////////////////////////////////////// Fields
+
+    private final Unmarshaller unmarshaller;
+    private final Marshaller marshaller;
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Default constructor, creates marshaller and unmarshaller for JSON without root element.
+     */
+    public ModExpJson() {
+        try {
+            unmarshaller = CONTEXT.createUnmarshaller();
+            unmarshaller.setProperty(UnmarshallerProperties.MEDIA_TYPE, MEDIA_TYPE_JSON);
+            unmarshaller.setProperty(UnmarshallerProperties.JSON_INCLUDE_ROOT, false);
+
+            marshaller = CONTEXT.createMarshaller();
+            marshaller.setProperty(MarshallerProperties.MEDIA_TYPE, MEDIA_TYPE_JSON);
+            marshaller.setProperty(MarshallerProperties.JSON_INCLUDE_ROOT, false);
+        } catch(JAXBException e) {
+            throw new IllegalStateException("Could not configure JSON binding!", e);
+        }
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Reads a JSON object into a bean.
+     * @param <T> the type of the bean
+     * @param reader the reader providing exactly one JSON object
+     * @param type the class of the bean
+     * @return the bean read
+     * @throws BadRequestException if the JSON object cannot be read
+     */
+    public <T> T read(Reader reader, Class<T> type) {
+        try {
+            return unmarshaller.unmarshal(new StreamSource(reader), type).getValue();
+        } catch(JAXBException e) {
+            throw new BadRequestException("Invalid JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes a bean as JSON object.
+     * @param bean the bean to write
+     * @param writer the writer to write to
+     * @throws IOException if writing fails
+     */
+    public void write(Object bean, Writer writer) throws IOException {
+        try {
+            marshaller.marshal(bean, writer);
+        } catch(JAXBException e) {
+            throw new IOException("Could not write JSON!", e);
+        }
+    }
+
+    /**
+     * Creates the context for all modexp beans.
+     * @return the context
+     */
+    private static JAXBContext createContext() {
+        try {
+            return JAXBContextFactory.createContext(new Class<?>[] { ModExpQueryBean.class, ModExpBean.class }, null);
+        } catch(JAXBException e) {
+            throw new IllegalStateException("Could not create JAXB context!", e);
+        }
+    }
+}
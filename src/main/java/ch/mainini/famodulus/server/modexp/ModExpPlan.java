@@ -0,0 +1,386 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.modexp;
+
+import ch.mainini.famodulus.server.compute.FixedBaseTable;
+import ch.mainini.famodulus.server.compute.Limbs;
+import ch.mainini.famodulus.server.compute.ModExpEngines;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plan for calculating the modexps of a batch, grouping them by shared operands.
+ *
+ * Identical modexps are calculated only once. Groups of modexps sharing base
+ * and modulus are calculated using a fixed base table built for this batch
+ * only, groups sharing exponent and modulus are handed to the engine at once
+ * so the exponent is only recoded once. All other modexps, including those
+ * calculated using the Chinese remainder theorem, the table of a registered
+ * group or a stored table, are calculated on their own.
+ * A group is only formed if it has at least the number of members given by the
+ * system property famodulus.plan.min_group (0 disables grouping), and a fixed
+ * base table is only built if it is estimated to save work, weighting its
+ * multiplications using ModExpEngines.getTableMultiplyCost().
+ *
+ * The plan consists of a list of steps, each calculating one or multiple
+ * modexps; the steps are independent of each other and can be calculated in
+ * any order once the tables have been built.
+ * @author Pascal Mainini
+ */
+public class ModExpPlan {
+
+//////////////////////////////////////// Constants
+
+    private static final int DEFAULT_MIN_GROUP = 4;
+
+    private static final int MIN_GROUP = Integer.getInteger("famodulus.plan.min_group", DEFAULT_MIN_GROUP);
+
+    /**
+     * Maximum number of modexps of a step with shared exponent, larger groups
+     * are split into multiple steps so they can be calculated in parallel.
+     */
+    private static final int MAX_SHARED_EXPONENT_STEP = 32;
+
+    /**
+     * Maximum size of a fixed base table built for a single batch.
+     */
+    private static final long MAX_TABLE_BYTES = 8L * 1024 * 1024;
+
+    private static final int MAX_WINDOW = 8;
+
+//////////////////////////////////////// Fields
+
+    /**
+     * For each modexp, the index of the identical modexp actually calculated.
+     */
+    private final int[] sources;
+
+    private final List<Step> steps = new ArrayList<>();
+    private final List<BaseGroup> baseGroups = new ArrayList<>();
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Constructor which plans the calculation of all modexps of a batch whose
+     * result is not known yet.
+     * @param batch the batch to plan
+     * @param known true for all modexps whose result is already known
+     */
+    public ModExpPlan(ModExpBatch batch, boolean[] known) {
+        this(batch, known, MIN_GROUP, 0);
+    }
+
+    /**
+     * Constructor which plans the calculation of all modexps of a batch whose
+     * result is not known yet, using the given minimum size of groups.
+     * @param batch the batch to plan
+     * @param known true for all modexps whose result is already known
+     * @param minGroup the minimum number of modexps forming a group, 0 disables grouping
+     * @param tableCost the cost of a table multiplication relative to the engine, 0 to take it from the engines
+     */
+    ModExpPlan(ModExpBatch batch, boolean[] known, int minGroup, int tableCost) {
+        final int size = batch.size();
+        sources = new int[size];
+
+        final Map<Operands, Integer> unique = new HashMap<>();
+        final Map<Operands, List<Integer>> byBase = new HashMap<>();
+        final Map<Operands, List<Integer>> byExponent = new HashMap<>();
+        for(int i = 0; i < size; i++) {
+            sources[i] = i;
+            if(known[i]) {
+                continue;
+            }
+
+            final BigInteger m = batch.getModulus(i);
+            final BigInteger b = batch.getBase(i);
+            final BigInteger e = batch.getExponent(i);
+            final Integer first = unique.get(new Operands(b, e, m, batch.isSecure(i)));
+            if(first != null) {
+                sources[i] = first;
+                continue;
+            }
+            unique.put(new Operands(b, e, m, batch.isSecure(i)), i);
+
+            if(minGroup > 0 && batch.getCrt(i) == null && batch.getTable(i) == null) {
+                add(byBase, new Operands(b, null, m, false), i);
+                add(byExponent, new Operands(null, e, m, batch.isSecure(i)), i);
+            }
+        }
+
+        final Step[] baseSteps = new Step[size];
+        for(List<Integer> members: byBase.values()) {
+            final int window = members.size() >= minGroup
+                    ? chooseWindow(batch, members, tableCost > 0 ? tableCost : getTableCost(batch, members)) : 0;
+            if(window > 0) {
+                final BaseGroup group = new BaseGroup(batch, members, window);
+                baseGroups.add(group);
+                for(int i: members) {
+                    baseSteps[i] = new Step(new int[] { i }, group);
+                }
+            }
+        }
+
+        final boolean[] planned = new boolean[size];
+        for(int i = 0; i < size; i++) {
+            if(known[i] || sources[i] != i || planned[i]) {
+                continue;
+            }
+            if(baseSteps[i] != null) {
+                steps.add(baseSteps[i]);
+                continue;
+            }
+
+            final List<Integer> sharing = byExponent.get(new Operands(null, batch.getExponent(i), batch.getModulus(i), batch.isSecure(i)));
+            final List<Integer> members = new ArrayList<>();
+            if(sharing != null && sharing.size() >= minGroup) {
+                for(int j: sharing) {
+                    if(baseSteps[j] == null) {
+                        members.add(j);
+                    }
+                }
+            }
+            if(minGroup <= 0 || members.size() < minGroup) {
+                steps.add(new Step(new int[] { i }, null));
+                continue;
+            }
+
+            for(int from = 0; from < members.size(); from += MAX_SHARED_EXPONENT_STEP) {
+                final List<Integer> part = members.subList(from, Math.min(members.size(), from + MAX_SHARED_EXPONENT_STEP));
+                final int[] indices = new int[part.size()];
+                for(int j = 0; j < indices.length; j++) {
+                    indices[j] = part.get(j);
+                    planned[indices[j]] = true;
+                }
+                steps.add(new Step(indices, null));
+            }
+        }
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * @return the steps of this plan, calculating all modexps not known and not duplicated
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return the number of fixed base tables to build for this plan
+     */
+    public int getTableCount() {
+        return baseGroups.size();
+    }
+
+    /**
+     * Builds all fixed base tables of this plan.
+     */
+    public void buildTables() {
+        for(BaseGroup group: baseGroups) {
+            group.build();
+        }
+    }
+
+    /**
+     * @param index the index of a modexp
+     * @return the index of the identical modexp actually calculated, index itself if it is calculated
+     */
+    public int getSource(int index) {
+        return sources[index];
+    }
+
+    /**
+     * @param batch the batch containing the modexps
+     * @param members the indices of the modexps sharing base and modulus
+     * @return the highest cost of a table multiplication relative to the engines of the modexps
+     */
+    private static int getTableCost(ModExpBatch batch, List<Integer> members) {
+        int cost = 1;
+        for(int i: members) {
+            cost = Math.max(cost, ModExpEngines.getTableMultiplyCost(batch.isSecure(i)));
+        }
+        return cost;
+    }
+
+    /**
+     * Chooses the window of a fixed base table for the given modexps, minimizing
+     * the estimated cost of building and using the table.
+     * @param batch the batch containing the modexps
+     * @param members the indices of the modexps sharing base and modulus
+     * @param tableCost the cost of a table multiplication relative to a multiplication of the engine
+     * @return the window size, 0 if a table does not save work compared to
+     * separate modexps or is not applicable
+     */
+    static int chooseWindow(ModExpBatch batch, List<Integer> members, int tableCost) {
+        final BigInteger modulus = batch.getModulus(members.get(0));
+        if(!modulus.testBit(0) || modulus.compareTo(BigInteger.ONE) <= 0) {
+            return 0;
+        }
+
+        int bits = 1;
+        for(int i: members) {
+            if(batch.getExponent(i).signum() < 0) {
+                return 0;
+            }
+            bits = Math.max(bits, batch.getExponent(i).bitLength());
+        }
+
+        // separate modexps need about one squaring per bit and one multiplication per five bits
+        final long count = members.size();
+        final long limbBytes = 4L * Limbs.length(modulus.bitLength());
+        long best = count * (bits + bits / 5);
+        int window = 0;
+        for(int w = 1; w <= MAX_WINDOW; w++) {
+            final long positions = (bits + w - 1) / w;
+            final long cost = positions * ((1L << w) + count) * tableCost;
+            if(cost < best && positions * (1L << w) * limbBytes <= MAX_TABLE_BYTES) {
+                best = cost;
+                window = w;
+            }
+        }
+        return window;
+    }
+
+    /**
+     * Adds an index to the list of the given key.
+     * @param map the map of lists
+     * @param key the key
+     * @param index the index to add
+     */
+    private static void add(Map<Operands, List<Integer>> map, Operands key, int index) {
+        List<Integer> list = map.get(key);
+        if(list == null) {
+            map.put(key, list = new ArrayList<>());
+        }
+        list.add(index);
+    }
+
+///////////////////// Inner classes
+
+    /**
+     * A step of the plan: either a single modexp, a single modexp using the
+     * table of a group sharing base and modulus, or multiple modexps sharing
+     * exponent and modulus.
+     */
+    public static final class Step {
+
+        private final int[] indices;
+        private final BaseGroup group;
+
+        /**
+         * @param indices the indices of the modexps calculated
+         * @param group the group providing the table, or null
+         */
+        Step(int[] indices, BaseGroup group) {
+            this.indices = indices;
+            this.group = group;
+        }
+
+        /**
+         * @return the indices of the modexps calculated by this step
+         */
+        public int[] getIndices() {
+            return indices;
+        }
+
+        /**
+         * @return the fixed base table to use, or null to use the engine
+         */
+        public FixedBaseTable getTable() {
+            return group != null ? group.table : null;
+        }
+    }
+
+    /**
+     * Modexps sharing base and modulus, calculated using a common table.
+     */
+    private static final class BaseGroup {
+
+        private final BigInteger base;
+        private final BigInteger modulus;
+        private final int bits;
+        private final int window;
+        private FixedBaseTable table;
+
+        /**
+         * @param batch the batch containing the modexps
+         * @param members the indices of the modexps
+         * @param window the window of the table
+         */
+        BaseGroup(ModExpBatch batch, List<Integer> members, int window) {
+            int maxBits = 1;
+            for(int i: members) {
+                maxBits = Math.max(maxBits, batch.getExponent(i).bitLength());
+            }
+            this.base = batch.getBase(members.get(0));
+            this.modulus = batch.getModulus(members.get(0));
+            this.bits = maxBits;
+            this.window = window;
+        }
+
+        /**
+         * Builds the table of this group.
+         */
+        void build() {
+            table = new FixedBaseTable(base, modulus, bits, window);
+        }
+    }
+
+    /**
+     * Key consisting of the operands of a modexp, null operands are ignored.
+     */
+    private static final class Operands {
+
+        private final BigInteger base;
+        private final BigInteger exponent;
+        private final BigInteger modulus;
+        private final boolean secure;
+        private final int hash;
+
+        /**
+         * @param base the base or null
+         * @param exponent the exponent or null
+         * @param modulus the modulus
+         * @param secure whether the modexp has to be calculated in constant time
+         */
+        Operands(BigInteger base, BigInteger exponent, BigInteger modulus, boolean secure) {
+            this.base = base;
+            this.exponent = exponent;
+            this.modulus = modulus;
+            this.secure = secure;
+            this.hash = Arrays.hashCode(new Object[] { base, exponent, modulus, secure });
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Operands)) {
+                return false;
+            }
+            final Operands other = (Operands) obj;
+            return hash == other.hash && secure == other.secure && equal(base, other.base)
+                    && equal(exponent, other.exponent) && modulus.equals(other.modulus);
+        }
+
+        /**
+         * @param a a value or null
+         * @param b a value or null
+         * @return true if both are null or equal
+         */
+        private static boolean equal(BigInteger a, BigInteger b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -42,12 +42,50 @@ public class ModExpQueryBean {
     @XmlJavaTypeAdapter(BigIntegerStringAdapter.class)
     private BigInteger exponent;
 
+    /**
+     * Default prime order of the group for all modexps which do not specify
+     * their own, exponents are reduced modulo the order.
+     */
+    @XmlAttribute(name = "o")
+    @XmlJavaTypeAdapter(BigIntegerStringAdapter.class)
+    private BigInteger order;
+
+    /**
+     * Default prime factors of the modulus for all modexps which do not specify
+     * their own, used for modexps whose modulus equals their product.
+     */
+    @XmlAttribute(name = "p")
+    @XmlJavaTypeAdapter(BigIntegerStringAdapter.class)
+    private BigInteger p;
+
+    @XmlAttribute(name = "q")
+    @XmlJavaTypeAdapter(BigIntegerStringAdapter.class)
+    private BigInteger q;
+
+    /**
+     * Id of a registered group providing default modulus, base and order for
+     * all modexps which specify neither these values nor their own group.
+     */
+    private String group;
+
     /**
      * Return a brief response with only the results (true) or the full query
      * including results (false).
      */
     private Boolean brief = true;
 
+    /**
+     * Default for all modexps which do not specify whether they involve
+     * secret values. Calculations are done in constant time unless false.
+     */
+    private Boolean secure;
+
+    /**
+     * Default for all modexps which do not specify whether their results may
+     * be taken from and stored in the result cache. Defaults to true.
+     */
+    private Boolean cache;
+
 //////////////////////////////////////// Constructors
 
     /**
@@ -122,6 +160,48 @@ public class ModExpQueryBean {
         this.exponent = exponent;
     }
 
+    /**
+     * @return the order of the group
+     */
+    public BigInteger getOrder() {
+        return order;
+    }
+
+    /**
+     * @param order the order of the group to set
+     */
+    public void setOrder(BigInteger order) {
+        this.order = order;
+    }
+
+    /**
+     * @return the first prime factor of the modulus
+     */
+    public BigInteger getP() {
+        return p;
+    }
+
+    /**
+     * @param p the first prime factor of the modulus to set
+     */
+    public void setP(BigInteger p) {
+        this.p = p;
+    }
+
+    /**
+     * @return the second prime factor of the modulus
+     */
+    public BigInteger getQ() {
+        return q;
+    }
+
+    /**
+     * @param q the second prime factor of the modulus to set
+     */
+    public void setQ(BigInteger q) {
+        this.q = q;
+    }
+
     /**
      * @return the brief
      */
@@ -135,4 +215,68 @@ public class ModExpQueryBean {
     public void setBrief(Boolean brief) {
         this.brief = brief;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the secure
+     */
+    public Boolean getSecure() {
+        return secure;
+    }
+
+    /**
+     * @param secure the secure to set
+     */
+    public void setSecure(Boolean secure) {
+        this.secure = secure;
+    }
+
+    /**
+     * @return the cache
+     */
+    public Boolean getCache() {
+        return cache;
+    }
+
+    /**
+     * @param cache the cache to set
+     */
+    public void setCache(Boolean cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return the id of the registered group
+     */
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * @param group the id of the registered group to set
+     */
+    public void setGroup(String group) {
+        this.group = group;
+    }
+
+    /**
+     * Removes all default values and options, and all values but the results
+     * of the enclosed modexps, e.g. for brief responses.
+     */
+    public void clear() {
+        modulus = null;
+        base = null;
+        exponent = null;
+        order = null;
+        group = null;
+        p = null;
+        q = null;
+        brief = null;
+        secure = null;
+        cache = null;
+        if(modexps != null) {
+            for(ModExpBean modexp: modexps) {
+                modexp.clear();
+            }
+        }
+    }
+}
@@ -5,14 +5,34 @@
  */
 package ch.mainini.famodulus.server.modexp;
 
-import com.squareup.jnagmp.Gmp;
+import ch.mainini.famodulus.server.compute.ComputeQueue;
+import ch.mainini.famodulus.server.metrics.Metered;
+import ch.mainini.famodulus.server.metrics.Metrics;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.ws.rs.BadRequestException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 
 /**
  * Resource providing the ModExp functionality.
@@ -23,51 +43,220 @@ public class ModExpResource {
 
 //////////////////////////////////////// Constants
 
+    /**
+     * Media type of newline-delimited JSON as used for streaming.
+     */
+    public static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+
     private static final Logger LOG = Logger.getLogger(ModExpResource.class.getName());
 
+    private static final int DEFAULT_STREAM_CHUNK_SIZE = 256;
+
+    private static final int STREAM_CHUNK_SIZE = Integer.getInteger("famodulus.stream.chunk_size", DEFAULT_STREAM_CHUNK_SIZE);
+
 
 //////////////////////////////////////// Methods
 
     /**
-     * This method implements the API for querying modexps.
+     * This method implements the API for querying modexps. The calculation is
+     * queued on the compute pool, the request is rejected with status 503 if
+     * too much work is pending already. Small queries are coalesced with
+     * concurrent ones sharing the modulus if enabled, see ModExpCoalescer.
      * @param query The query containing one or multiple modexps to calculate
-     * @return The result of the calculations
+     * @param response The response to resume with the result of the calculations
      */
     @POST
+    @Metered
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public ModExpQueryBean query(ModExpQueryBean query) {
+    public void query(final ModExpQueryBean query, @Suspended final AsyncResponse response) {
+        final ModExpBatch batch = new ModExpBatch(query);
+        final boolean coalesced = ModExpCoalescer.getDefault().submit(batch, new ModExpCoalescer.Callback() {
+            @Override
+            public void completed(BigInteger[] results, long nanos) {
+                try {
+                    response.resume(complete(query, results, nanos));
+                } catch(Throwable t) {
+                    response.resume(t);
+                }
+            }
+
+            @Override
+            public void failed(Throwable t) {
+                response.resume(t);
+            }
+        });
+        if(coalesced) {
+            return;
+        }
+
+        final ComputeQueue queue = ComputeQueue.getDefault();
+
+        final boolean submitted = queue.submit(batch.getCost(), new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    response.resume(calculate(query, batch));
+                } catch(Throwable t) {
+                    response.resume(t);
+                }
+            }
+        });
+        if(!submitted) {
+            throw new ServiceUnavailableException(queue.getRetryAfter());
+        }
+    }
+
+    /**
+     * This method implements the API for querying modexps using the binary
+     * format of ModExpBinaryProvider.
+     * @param query The query containing one or multiple modexps to calculate
+     * @param response The response to resume with the result of the calculations
+     */
+    @POST
+    @Metered
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public void queryBinary(ModExpQueryBean query, @Suspended AsyncResponse response) {
+        query(query, response);
+    }
+
+    /**
+     * This method implements the streaming API for querying modexps. The
+     * first line contains the query with the default values, every following
+     * line a single modexp. Results are written line by line as soon as a
+     * chunk of modexps has been calculated.
+     * @param input The stream of newline-delimited JSON objects
+     * @return The stream of results, one JSON object per line
+     * @throws IOException In case the header cannot be read
+     */
+    @POST
+    @Metered
+    @Path("stream")
+    @Consumes(MEDIA_TYPE_NDJSON)
+    @Produces(MEDIA_TYPE_NDJSON)
+    public StreamingOutput stream(InputStream input) throws IOException {
+        final ModExpJson json = new ModExpJson();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        final String header = nextLine(reader);
+        if(header == null) {
+            throw new BadRequestException("Missing header line!");
+        }
+        final ModExpQueryBean defaults = json.read(new StringReader(header), ModExpQueryBean.class);
+        final boolean briefResponse = defaults.getBrief();
+
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException {
+                final long startTime = System.nanoTime();
+                final Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+                final List<ModExpBean> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+                long count = 0;
+
+                for(String line = nextLine(reader); line != null; line = nextLine(reader)) {
+                    chunk.add(json.read(new StringReader(line), ModExpBean.class));
+                    if(chunk.size() == STREAM_CHUNK_SIZE) {
+                        count += writeChunk(chunk, defaults, briefResponse, json, writer);
+                    }
+                }
+                count += writeChunk(chunk, defaults, briefResponse, json, writer);
+
+                if(LOG.isLoggable(Level.FINE)) {
+                    LOG.fine(String.format("Streaming calculation of %d modexps took %f ms.", count, (System.nanoTime() - startTime) / 1000000.0));
+                }
+            }
+        };
+    }
+
+    /**
+     * Calculates all modexps of a query.
+     * @param query the query containing the modexps
+     * @param batch the resolved modexps of the query
+     * @return the query with the results set
+     */
+    private static ModExpQueryBean calculate(ModExpQueryBean query, ModExpBatch batch) {
         final long startTime = System.nanoTime();
-        final BigInteger defaultModulus = query.getModulus();
-        final BigInteger defaultBase = query.getBase();
-        final BigInteger defaultExponent = query.getExponent();
+        final BigInteger[] results = batch.evaluate();
+        final long nanos = System.nanoTime() - startTime;
+        Metrics.getDefault().recordCompute(nanos);
+        return complete(query, results, nanos);
+    }
+
+    /**
+     * Sets the results of all modexps of a query. The time spent calculating
+     * is only logged, callers record it in the metrics.
+     * @param query the query containing the modexps
+     * @param results the results, in the order of the modexps
+     * @param nanos the time spent calculating the results
+     * @return the query with the results set
+     */
+    private static ModExpQueryBean complete(ModExpQueryBean query, BigInteger[] results, long nanos) {
         final boolean briefResponse = query.getBrief();
+        applyResults(query.getModexps(), results, false);
+        if(briefResponse) {
+            query.clear();
+        }
 
-        for(ModExpBean modexp: query.getModexps()) {
-            final BigInteger m = modexp.getModulus() != null ? modexp.getModulus() : defaultModulus;
-            final BigInteger b = modexp.getBase() != null ? modexp.getBase() : defaultBase;
-            final BigInteger e = modexp.getExponent() != null ? modexp.getExponent() : defaultExponent;
+        if(LOG.isLoggable(Level.FINE)) {
+            LOG.fine(String.format("Calculation took %f ms.", nanos / 1000000.0));
+        }
+        return query;
+    }
 
-            final BigInteger r = Gmp.modPowSecure(b, e, m);
-            modexp.setResult(r);
-            LOG.finest(String.format("Calculated modexp, m: %s, b: %s, e: %s, r: %s ...",
-                    m.toString(16), b.toString(16), e.toString(16), r.toString(16)));
+    /**
+     * Sets the results of the modexps, removing all other values for brief responses.
+     * @param modexps the modexps to set the results for
+     * @param results the results, in the order of the modexps
+     * @param briefResponse true to remove all values but the results
+     */
+    private static void applyResults(ModExpBean[] modexps, BigInteger[] results, boolean briefResponse) {
+        for(int i = 0; i < modexps.length; i++) {
+            final ModExpBean modexp = modexps[i];
+            modexp.setResult(results[i]);
 
             if(briefResponse) {
-                modexp.setModulus(null);
-                modexp.setBase(null);
-                modexp.setExponent(null);
+                modexp.clear();
             }
         }
+    }
 
-        if(briefResponse) {
-            query.setModulus(null);
-            query.setBase(null);
-            query.setExponent(null);
-            query.setBrief(null);
+    /**
+     * Calculates a chunk of streamed modexps and writes the results.
+     * @param chunk the modexps to calculate, cleared afterwards
+     * @param defaults the query providing the default values
+     * @param briefResponse true to only write the results
+     * @param json the JSON binding to use for writing
+     * @param writer the writer to write the results to
+     * @return the number of modexps calculated
+     * @throws IOException if writing fails
+     */
+    private static int writeChunk(List<ModExpBean> chunk, ModExpQueryBean defaults, boolean briefResponse,
+            ModExpJson json, Writer writer) throws IOException {
+        final ModExpBean[] modexps = chunk.toArray(new ModExpBean[chunk.size()]);
+        final long startTime = System.nanoTime();
+        applyResults(modexps, new ModExpBatch(defaults, modexps).evaluate(), briefResponse);
+        Metrics.getDefault().recordCompute(System.nanoTime() - startTime);
+
+        for(ModExpBean modexp: modexps) {
+            json.write(modexp, writer);
+            writer.write('\n');
         }
+        writer.flush();
+        chunk.clear();
+        return modexps.length;
+    }
 
-        LOG.fine(String.format("Calculation took %f ms.", (System.nanoTime() - startTime) / 1000000.0));
-        return query;
+    /**
+     * Reads the next non-empty line.
+     * @param reader the reader to read from
+     * @return the next non-empty line, or null at the end of the stream
+     * @throws IOException if reading fails
+     */
+    private static String nextLine(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        while(line != null && line.trim().isEmpty()) {
+            line = reader.readLine();
+        }
+        return line;
     }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.modinv;
+
+import ch.mainini.famodulus.server.compute.ComputeQueue;
+import ch.mainini.famodulus.server.compute.ModInverse;
+import ch.mainini.famodulus.server.metrics.Metered;
+import ch.mainini.famodulus.server.metrics.Metrics;
+import ch.mainini.famodulus.server.modexp.ModExpBean;
+import ch.mainini.famodulus.server.modexp.ModExpQueryBean;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Resource providing modular inversion of multiple values, calculating the
+ * inverses of all values sharing a modulus using a single inversion.
+ * @author Pascal Mainini
+ */
+@Path("modinv")
+public class ModInvResource {
+
+//////////////////////////////////////// Constants
+
+    private static final Logger LOG = Logger.getLogger(ModInvResource.class.getName());
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * This method implements the API for querying modular inverses. The
+     * calculation is queued on the compute pool, the request is rejected with
+     * status 503 if too much work is pending already.
+     * @param query The query containing the values to invert as bases, with their moduli
+     * @param response The response to resume with the query with the inverses set as results,
+     * no result is set for values without inverse
+     */
+    @POST
+    @Metered
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public void query(final ModExpQueryBean query, @Suspended final AsyncResponse response) {
+        final ModExpBean[] items = query.getModexps() != null ? query.getModexps() : new ModExpBean[0];
+        if(items.length == 0) {
+            throw new BadRequestException("At least one value is required!");
+        }
+
+        final Map<BigInteger, List<Integer>> byModulus = new LinkedHashMap<>();
+        final Map<BigInteger, Boolean> secure = new LinkedHashMap<>();
+        final BigInteger[] values = new BigInteger[items.length];
+        for(int i = 0; i < items.length; i++) {
+            final BigInteger modulus = items[i].getModulus() != null ? items[i].getModulus() : query.getModulus();
+            values[i] = items[i].getBase() != null ? items[i].getBase() : query.getBase();
+            if(modulus == null || values[i] == null) {
+                throw new BadRequestException("Modulus and value are required!");
+            }
+            if(modulus.compareTo(BigInteger.ONE) <= 0) {
+                throw new BadRequestException("Modulus must be greater than one!");
+            }
+
+            List<Integer> indices = byModulus.get(modulus);
+            if(indices == null) {
+                indices = new ArrayList<>();
+                byModulus.put(modulus, indices);
+                secure.put(modulus, false);
+            }
+            indices.add(i);
+            final Boolean itemSecure = items[i].getSecure() != null ? items[i].getSecure() : query.getSecure();
+            if(itemSecure == null || itemSecure) {
+                secure.put(modulus, true);
+            }
+        }
+
+        long cost = 0;
+        for(Map.Entry<BigInteger, List<Integer>> entry: byModulus.entrySet()) {
+            cost += ModInverse.estimateCost(entry.getKey(), entry.getValue().size());
+        }
+
+        final ComputeQueue queue = ComputeQueue.getDefault();
+        final boolean submitted = queue.submit(cost, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    response.resume(calculate(query, values, byModulus, secure));
+                } catch(Throwable t) {
+                    response.resume(t);
+                }
+            }
+        });
+        if(!submitted) {
+            throw new ServiceUnavailableException(queue.getRetryAfter());
+        }
+    }
+
+    /**
+     * Inverts the values of a query, all values sharing a modulus together.
+     * @param query the query containing the values
+     * @param values the values to invert, in the order of the modexps
+     * @param byModulus the indices of the values by modulus
+     * @param secure whether the inversion has to be blinded, by modulus
+     * @return the query with the inverses set as results
+     */
+    private static ModExpQueryBean calculate(ModExpQueryBean query, BigInteger[] values,
+            Map<BigInteger, List<Integer>> byModulus, Map<BigInteger, Boolean> secure) {
+        final long startTime = System.nanoTime();
+        final ModExpBean[] items = query.getModexps();
+        int invertible = 0;
+        for(Map.Entry<BigInteger, List<Integer>> entry: byModulus.entrySet()) {
+            final List<Integer> indices = entry.getValue();
+            final BigInteger[] group = new BigInteger[indices.size()];
+            for(int j = 0; j < group.length; j++) {
+                group[j] = values[indices.get(j)];
+            }
+            final BigInteger[] inverses = ModInverse.modInverse(group, entry.getKey(), secure.get(entry.getKey()));
+            for(int j = 0; j < group.length; j++) {
+                items[indices.get(j)].setResult(inverses[j]);
+                if(inverses[j] != null) {
+                    invertible++;
+                }
+            }
+        }
+        Metrics.getDefault().recordCompute(System.nanoTime() - startTime);
+
+        if(query.getBrief()) {
+            query.clear();
+        }
+
+        if(LOG.isLoggable(Level.FINE)) {
+            LOG.fine(String.format("Inversion of %d values with %d moduli, %d invertible, took %f ms.",
+                    items.length, byModulus.size(), invertible, (System.nanoTime() - startTime) / 1000000.0));
+        }
+        return query;
+    }
+}
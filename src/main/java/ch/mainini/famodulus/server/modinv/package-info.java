@@ -0,0 +1,4 @@
+/**
+ * This package contains the "modinv" REST resource
+ */
+package ch.mainini.famodulus.server.modinv;
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.modmul;
+
+import ch.mainini.famodulus.server.compute.ComputeQueue;
+import ch.mainini.famodulus.server.compute.ModMul;
+import ch.mainini.famodulus.server.metrics.Metered;
+import ch.mainini.famodulus.server.metrics.Metrics;
+import ch.mainini.famodulus.server.modexp.ModExpBean;
+import ch.mainini.famodulus.server.modexp.ModExpQueryBean;
+import java.math.BigInteger;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Resource providing modular multiplication, either of pairs of factors given
+ * as base and exponent of each modexp, or of all bases sharing a modulus.
+ * The calculations are queued on the compute pool like the ones of
+ * /api/modexp, requests are rejected with status 503 if too much work is
+ * pending already.
+ * @author Pascal Mainini
+ */
+@Path("modmul")
+public class ModMulResource {
+
+//////////////////////////////////////// Constants
+
+    private static final Logger LOG = Logger.getLogger(ModMulResource.class.getName());
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * This method implements the API for querying element-wise products.
+     * @param query The query containing the pairs of factors as base and exponent, with their moduli
+     * @param response The response to resume with the query with the products set as results
+     */
+    @POST
+    @Metered
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public void multiply(final ModExpQueryBean query, @Suspended final AsyncResponse response) {
+        final ModExpBean[] items = getItems(query);
+        final BigInteger[] moduli = new BigInteger[items.length];
+        final BigInteger[] a = new BigInteger[items.length];
+        final BigInteger[] b = new BigInteger[items.length];
+        BigInteger largest = BigInteger.ONE;
+        for(int i = 0; i < items.length; i++) {
+            moduli[i] = getModulus(items[i], query);
+            a[i] = items[i].getBase() != null ? items[i].getBase() : query.getBase();
+            b[i] = items[i].getExponent() != null ? items[i].getExponent() : query.getExponent();
+            if(a[i] == null || b[i] == null) {
+                throw new BadRequestException("Both factors b and e are required!");
+            }
+            largest = largest.max(moduli[i]);
+        }
+
+        submit(ModMul.estimateCost(largest, items.length), response, new Callable<Object>() {
+            @Override
+            public Object call() {
+                return multiply(query, a, b, moduli);
+            }
+        });
+    }
+
+    /**
+     * This method implements the API for querying the product of many values.
+     * @param query The query containing the values to multiply as bases, all using the same modulus
+     * @param response The response to resume with a modexp containing only the product as result,
+     * and the modulus if no brief response was requested
+     */
+    @POST
+    @Metered
+    @Path("product")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public void product(final ModExpQueryBean query, @Suspended final AsyncResponse response) {
+        final ModExpBean[] items = getItems(query);
+        final BigInteger modulus = getModulus(items[0], query);
+        final BigInteger[] values = new BigInteger[items.length];
+        for(int i = 0; i < items.length; i++) {
+            if(!modulus.equals(getModulus(items[i], query))) {
+                throw new BadRequestException("All values must use the same modulus!");
+            }
+            values[i] = items[i].getBase() != null ? items[i].getBase() : query.getBase();
+            if(values[i] == null) {
+                throw new BadRequestException("Value b is required!");
+            }
+        }
+
+        submit(ModMul.estimateCost(modulus, items.length), response, new Callable<Object>() {
+            @Override
+            public Object call() {
+                return product(values, modulus, query.getBrief());
+            }
+        });
+    }
+
+    /**
+     * Submits a calculation to the compute queue, resuming the response with its result.
+     * @param cost the estimated cost of the calculation
+     * @param response the response to resume
+     * @param calculation the calculation
+     * @throws ServiceUnavailableException if too much work is pending already
+     */
+    private static void submit(long cost, final AsyncResponse response, final Callable<Object> calculation) {
+        final ComputeQueue queue = ComputeQueue.getDefault();
+        final boolean submitted = queue.submit(cost, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    response.resume(calculation.call());
+                } catch(Throwable t) {
+                    response.resume(t);
+                }
+            }
+        });
+        if(!submitted) {
+            throw new ServiceUnavailableException(queue.getRetryAfter());
+        }
+    }
+
+    /**
+     * Calculates the element-wise products of a query.
+     * @param query the query containing the pairs of factors
+     * @param a the first factors
+     * @param b the second factors
+     * @param moduli the moduli
+     * @return the query with the products set as results
+     */
+    private static ModExpQueryBean multiply(ModExpQueryBean query, BigInteger[] a, BigInteger[] b, BigInteger[] moduli) {
+        final long startTime = System.nanoTime();
+        final ModExpBean[] items = query.getModexps();
+        final BigInteger[] products = ModMul.multiply(a, b, moduli);
+        for(int i = 0; i < items.length; i++) {
+            items[i].setResult(products[i]);
+        }
+        Metrics.getDefault().recordCompute(System.nanoTime() - startTime);
+
+        if(query.getBrief()) {
+            query.clear();
+        }
+
+        if(LOG.isLoggable(Level.FINE)) {
+            LOG.fine(String.format("Calculation of %d products took %f ms.", items.length, (System.nanoTime() - startTime) / 1000000.0));
+        }
+        return query;
+    }
+
+    /**
+     * Calculates the product of values sharing a modulus.
+     * @param values the values to multiply
+     * @param modulus the modulus
+     * @param briefResponse true to only return the product
+     * @return A modexp containing only the product as result, and the modulus if no brief response was requested
+     */
+    private static ModExpBean product(BigInteger[] values, BigInteger modulus, boolean briefResponse) {
+        final long startTime = System.nanoTime();
+        final ModExpBean result = new ModExpBean();
+        result.setResult(ModMul.product(values, modulus));
+        if(!briefResponse) {
+            result.setModulus(modulus);
+        }
+        Metrics.getDefault().recordCompute(System.nanoTime() - startTime);
+
+        if(LOG.isLoggable(Level.FINE)) {
+            LOG.fine(String.format("Product of %d values took %f ms.", values.length, (System.nanoTime() - startTime) / 1000000.0));
+        }
+        return result;
+    }
+
+    /**
+     * @param query the query
+     * @return the modexps of the query
+     * @throws BadRequestException if the query contains no modexps
+     */
+    private static ModExpBean[] getItems(ModExpQueryBean query) {
+        if(query.getModexps() == null || query.getModexps().length == 0) {
+            throw new BadRequestException("At least one value is required!");
+        }
+        return query.getModexps();
+    }
+
+    /**
+     * @param item the modexp
+     * @param query the query providing the default modulus
+     * @return the modulus of the modexp
+     * @throws BadRequestException if the modexp has no modulus or it is not positive
+     */
+    private static BigInteger getModulus(ModExpBean item, ModExpQueryBean query) {
+        final BigInteger modulus = item.getModulus() != null ? item.getModulus() : query.getModulus();
+        if(modulus == null || modulus.signum() <= 0) {
+            throw new BadRequestException("A positive modulus is required!");
+        }
+        return modulus;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * This package contains the "modmul" REST resource
+ */
+package ch.mainini.famodulus.server.modmul;
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.multiexp;
+
+import ch.mainini.famodulus.server.compute.ComputeQueue;
+import ch.mainini.famodulus.server.compute.MultiExp;
+import ch.mainini.famodulus.server.metrics.Metered;
+import ch.mainini.famodulus.server.metrics.Metrics;
+import ch.mainini.famodulus.server.modexp.ModExpBatch;
+import ch.mainini.famodulus.server.modexp.ModExpBean;
+import ch.mainini.famodulus.server.modexp.ModExpQueryBean;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Resource providing the MultiExp functionality, i.e. the product of
+ * multiple modexps sharing the same modulus.
+ *
+ * Modexps setting secure to false are multiplied using simultaneous
+ * exponentiation in variable time, secure ones in constant time, see
+ * MultiExp. The calculation is queued on the compute pool like the one of
+ * /api/modexp.
+ * @author Pascal Mainini
+ */
+@Path("multiexp")
+public class MultiExpResource {
+
+//////////////////////////////////////// Constants
+
+    private static final Logger LOG = Logger.getLogger(MultiExpResource.class.getName());
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * This method implements the API for querying multiexps. The calculation
+     * is queued on the compute pool, the request is rejected with status 503 if
+     * too much work is pending already.
+     * @param query The query containing the modexps to multiply, all using the same modulus
+     * @param response The response to resume with a modexp containing only the product as result,
+     * and the modulus if no brief response was requested
+     */
+    @POST
+    @Metered
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public void query(ModExpQueryBean query, @Suspended final AsyncResponse response) {
+        final boolean briefResponse = query.getBrief();
+        final ModExpBatch batch = new ModExpBatch(query);
+        if(batch.size() == 0) {
+            throw new BadRequestException("At least one modexp is required!");
+        }
+
+        final BigInteger modulus = batch.getModulus(0);
+        for(int i = 0; i < batch.size(); i++) {
+            if(!modulus.equals(batch.getModulus(i))) {
+                throw new BadRequestException("All modexps must use the same modulus!");
+            }
+            if(batch.getExponent(i).signum() < 0) {
+                throw new BadRequestException("Exponents must not be negative!");
+            }
+        }
+
+        final ComputeQueue queue = ComputeQueue.getDefault();
+        final boolean submitted = queue.submit(batch.getCost(), new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    response.resume(calculate(batch, modulus, briefResponse));
+                } catch(Throwable t) {
+                    response.resume(t);
+                }
+            }
+        });
+        if(!submitted) {
+            throw new ServiceUnavailableException(queue.getRetryAfter());
+        }
+    }
+
+    /**
+     * Calculates the product of all modexps of a batch.
+     * @param batch the batch, all modexps using the same modulus
+     * @param modulus the modulus
+     * @param briefResponse true to only return the product
+     * @return A modexp containing the product as result, and the modulus if no brief response was requested
+     */
+    private static ModExpBean calculate(ModExpBatch batch, BigInteger modulus, boolean briefResponse) {
+        final long startTime = System.nanoTime();
+        final List<BigInteger> secureBases = new ArrayList<>();
+        final List<BigInteger> secureExponents = new ArrayList<>();
+        final List<BigInteger> publicBases = new ArrayList<>();
+        final List<BigInteger> publicExponents = new ArrayList<>();
+        for(int i = 0; i < batch.size(); i++) {
+            (batch.isSecure(i) ? secureBases : publicBases).add(batch.getBase(i));
+            (batch.isSecure(i) ? secureExponents : publicExponents).add(batch.getExponent(i));
+        }
+
+        BigInteger product = BigInteger.ONE.mod(modulus);
+        if(!secureBases.isEmpty()) {
+            product = MultiExp.multiExpSecure(secureBases.toArray(new BigInteger[0]), secureExponents.toArray(new BigInteger[0]), modulus);
+        }
+        if(!publicBases.isEmpty()) {
+            product = product.multiply(MultiExp.multiExp(publicBases.toArray(new BigInteger[0]),
+                    publicExponents.toArray(new BigInteger[0]), modulus)).mod(modulus);
+        }
+
+        final ModExpBean result = new ModExpBean();
+        result.setResult(product);
+        if(!briefResponse) {
+            result.setModulus(modulus);
+        }
+        Metrics.getDefault().recordCompute(System.nanoTime() - startTime);
+
+        if(LOG.isLoggable(Level.FINE)) {
+            LOG.fine(String.format("Calculation of %d modexps, %d in constant time, took %f ms.",
+                    batch.size(), secureBases.size(), (System.nanoTime() - startTime) / 1000000.0));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * This package contains the "multiexp" REST resource
+ */
+package ch.mainini.famodulus.server.multiexp;
@@ -0,0 +1,456 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.store;
+
+import ch.mainini.famodulus.server.compute.FixedBaseTable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent store of precomputed fixed base tables, memory-mapped from a file.
+ *
+ * The file consists of a header with magic and format version, followed by
+ * records appended one after the other. Each record holds the base, modulus,
+ * window and number of positions of a table, its entries as little-endian
+ * limbs aligned to eight bytes, and a CRC-32 checksum over the whole record.
+ * When the file is opened, the entries of each valid record are mapped and
+ * used by the table directly, without copying them onto the heap. Records
+ * failing the checksum are skipped, a truncated record at the end of the file,
+ * e.g. from a crash while appending, is dropped and overwritten by the next
+ * record added.
+ *
+ * The default store uses the file given by the system property
+ * famodulus.tables.file and is disabled if it is not set. The file is locked
+ * while open; if it is locked by another process already, the store is only
+ * read and new tables are not persisted.
+ * @author Pascal Mainini
+ */
+public class TableStore implements Closeable {
+
+//////////////////////////////////////// Constants
+
+    private static final Logger LOG = Logger.getLogger(TableStore.class.getName());
+
+    /**
+     * "FMTS", the magic of the file header.
+     */
+    private static final int FILE_MAGIC = 0x464d5453;
+
+    /**
+     * "FMTR", the magic of each record.
+     */
+    private static final int RECORD_MAGIC = 0x464d5452;
+
+    private static final int VERSION = 1;
+
+    private static final int FILE_HEADER_BYTES = 8;
+
+    /**
+     * Magic, window, positions, limbs per entry, length of the base and length of the modulus.
+     */
+    private static final int RECORD_HEADER_BYTES = 24;
+
+    private static final int CHECKSUM_BYTES = 8;
+    private static final int ALIGNMENT = 8;
+
+    private static final int MAX_WINDOW = 8;
+    private static final int MAX_VALUE_BYTES = 1 << 16;
+
+    /**
+     * Number of bytes checksummed or written at once.
+     */
+    private static final int CHUNK_BYTES = 64 * 1024;
+
+    private static final TableStore DEFAULT = openDefault(System.getProperty("famodulus.tables.file"));
+
+//////////////////////////////////////// Fields
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final Map<List<BigInteger>, FixedBaseTable> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Offset at which the next record is appended.
+     */
+    private long end;
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Constructor for a disabled store, which neither holds nor persists any table.
+     */
+    public TableStore() {
+        this.channel = null;
+        this.lock = null;
+    }
+
+    /**
+     * Constructor which opens or creates the given file and maps all valid records.
+     * @param file the file of the store
+     * @throws IOException if the file cannot be opened or is not a table store
+     */
+    public TableStore(File file) throws IOException {
+        final FileChannel opened = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock acquired = null;
+        try {
+            try {
+                acquired = opened.tryLock();
+            } catch(OverlappingFileLockException e) {
+                acquired = null;
+            }
+            if(acquired == null) {
+                LOG.warning(String.format("Table store %s is locked, new tables are not persisted.", file));
+            }
+            this.channel = opened;
+            this.lock = acquired;
+            load();
+        } catch(IOException | RuntimeException e) {
+            if(acquired != null) {
+                acquired.release();
+            }
+            opened.close();
+            throw e;
+        }
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * @return the default store, configured by famodulus.tables.file
+     */
+    public static TableStore getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return true if this store is backed by a file
+     */
+    public boolean isEnabled() {
+        return channel != null;
+    }
+
+    /**
+     * @param base the fixed base
+     * @param modulus the modulus
+     * @return the stored table for base and modulus, or null if there is none
+     */
+    public FixedBaseTable get(BigInteger base, BigInteger modulus) {
+        return tables.isEmpty() ? null : tables.get(Arrays.asList(base, modulus));
+    }
+
+    /**
+     * Appends a table to the file and maps it. If the store is disabled, read
+     * only or writing fails, the table is not persisted and returned as is.
+     * @param table the table to add
+     * @return the table backed by the file, or the given table if it was not persisted
+     */
+    public synchronized FixedBaseTable add(FixedBaseTable table) {
+        if(channel == null || lock == null) {
+            return table;
+        }
+
+        try {
+            final FixedBaseTable mapped = append(table);
+            put(mapped);
+            return mapped;
+        } catch(IOException e) {
+            LOG.log(Level.WARNING, "Could not persist fixed base table!", e);
+            return table;
+        }
+    }
+
+    /**
+     * @return the number of tables in this store
+     */
+    public int size() {
+        return tables.size();
+    }
+
+    /**
+     * @return the number of bytes of the file used by valid records
+     */
+    public synchronized long getBytes() {
+        return end;
+    }
+
+    /**
+     * Closes the file. Tables mapped before stay valid.
+     * @throws IOException if closing fails
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(channel != null) {
+            if(lock != null && lock.isValid()) {
+                lock.release();
+            }
+            channel.close();
+        }
+    }
+
+    /**
+     * Opens the default store, which is disabled if no file is given or it cannot be opened.
+     * @param file the name of the file, or null
+     * @return the store
+     */
+    private static TableStore openDefault(String file) {
+        if(file == null || file.isEmpty()) {
+            return new TableStore();
+        }
+        try {
+            return new TableStore(new File(file));
+        } catch(IOException e) {
+            LOG.log(Level.SEVERE, String.format("Could not open table store %s, precomputed tables are not persisted!", file), e);
+            return new TableStore();
+        }
+    }
+
+    /**
+     * Reads the header of the file, writing it if the file is empty, and maps all valid records.
+     * @throws IOException if reading fails or the file is not a table store
+     */
+    private void load() throws IOException {
+        final long size = channel.size();
+        if(size < FILE_HEADER_BYTES) {
+            if(size > 0 || lock == null) {
+                throw new IOException("Not a table store: file too short!");
+            }
+            final ByteBuffer header = order(ByteBuffer.allocate(FILE_HEADER_BYTES));
+            header.putInt(FILE_MAGIC).putInt(VERSION).flip();
+            write(header, 0);
+            end = FILE_HEADER_BYTES;
+            return;
+        }
+
+        final ByteBuffer header = read(0, FILE_HEADER_BYTES);
+        if(header.getInt() != FILE_MAGIC) {
+            throw new IOException("Not a table store: invalid magic!");
+        }
+        final int version = header.getInt();
+        if(version != VERSION) {
+            throw new IOException(String.format("Unsupported table store version %d!", version));
+        }
+
+        long offset = FILE_HEADER_BYTES;
+        int skipped = 0;
+        while(offset < size) {
+            final long next = loadRecord(offset, size);
+            if(next < 0) {
+                skipped++;
+                offset = -next;
+            } else if(next == 0) {
+                LOG.warning(String.format("Dropping %d bytes of truncated or invalid records at the end of the table store.", size - offset));
+                break;
+            } else {
+                offset = next;
+            }
+        }
+        end = offset;
+        if(skipped > 0) {
+            LOG.warning(String.format("Skipped %d table store records with invalid checksum.", skipped));
+        }
+        LOG.fine(String.format("Mapped %d fixed base tables, %d bytes.", tables.size(), end));
+    }
+
+    /**
+     * Maps the record at the given offset.
+     * @param offset the offset of the record
+     * @param size the size of the file
+     * @return the offset of the next record, its negation if this record is
+     * skipped, or 0 if the record is truncated or malformed
+     * @throws IOException if reading fails
+     */
+    private long loadRecord(long offset, long size) throws IOException {
+        if(offset + RECORD_HEADER_BYTES > size) {
+            return 0;
+        }
+        final ByteBuffer header = read(offset, RECORD_HEADER_BYTES);
+        final int magic = header.getInt();
+        final int window = header.getInt();
+        final int positions = header.getInt();
+        final int length = header.getInt();
+        final int baseBytes = header.getInt();
+        final int modulusBytes = header.getInt();
+        if(magic != RECORD_MAGIC || window < 1 || window > MAX_WINDOW || positions < 1 || length < 1
+                || baseBytes < 1 || baseBytes > MAX_VALUE_BYTES || modulusBytes < 1 || modulusBytes > MAX_VALUE_BYTES) {
+            return 0;
+        }
+
+        final long valuesOffset = offset + RECORD_HEADER_BYTES;
+        final long entriesOffset = align(valuesOffset + baseBytes + modulusBytes);
+        final long entriesBytes = 4L * positions * (1L << window) * length;
+        final long checksumOffset = entriesOffset + entriesBytes;
+        if(entriesBytes > Integer.MAX_VALUE || checksumOffset + CHECKSUM_BYTES > size) {
+            return 0;
+        }
+        final long next = checksumOffset + CHECKSUM_BYTES;
+
+        final ByteBuffer values = read(valuesOffset, baseBytes + modulusBytes);
+        final MappedByteBuffer entries = channel.map(FileChannel.MapMode.READ_ONLY, entriesOffset, entriesBytes);
+        final CRC32 crc = new CRC32();
+        update(crc, read(offset, (int) (entriesOffset - offset)));
+        update(crc, entries.duplicate());
+        if(read(checksumOffset, CHECKSUM_BYTES).getLong() != crc.getValue()) {
+            return -next;
+        }
+
+        final byte[] base = new byte[baseBytes];
+        final byte[] modulus = new byte[modulusBytes];
+        values.get(base).get(modulus);
+        try {
+            final FixedBaseTable table = new FixedBaseTable(new BigInteger(1, base), new BigInteger(1, modulus),
+                    window, positions, order(entries).asIntBuffer());
+            put(table);
+        } catch(IllegalArgumentException e) {
+            return -next;
+        }
+        return next;
+    }
+
+    /**
+     * Appends a table at the end of the valid records and maps its entries.
+     * @param table the table to append
+     * @return the table backed by the file
+     * @throws IOException if writing fails
+     */
+    private FixedBaseTable append(FixedBaseTable table) throws IOException {
+        final byte[] base = table.getBase().toByteArray();
+        final byte[] modulus = table.getModulus().toByteArray();
+        final byte[] baseMagnitude = Arrays.copyOfRange(base, base[0] == 0 && base.length > 1 ? 1 : 0, base.length);
+        final byte[] modulusMagnitude = Arrays.copyOfRange(modulus, modulus[0] == 0 ? 1 : 0, modulus.length);
+        final IntBuffer entries = table.getEntries();
+        final int length = entries.capacity() / (table.getPositions() << table.getWindow());
+
+        final long offset = end;
+        final long entriesOffset = align(offset + RECORD_HEADER_BYTES + baseMagnitude.length + modulusMagnitude.length);
+        final long entriesBytes = 4L * entries.capacity();
+        final CRC32 crc = new CRC32();
+
+        channel.truncate(offset);
+        final ByteBuffer header = order(ByteBuffer.allocate((int) (entriesOffset - offset)));
+        header.putInt(RECORD_MAGIC).putInt(table.getWindow()).putInt(table.getPositions()).putInt(length)
+                .putInt(baseMagnitude.length).putInt(modulusMagnitude.length).put(baseMagnitude).put(modulusMagnitude);
+        header.position(0);
+        update(crc, header.duplicate());
+        write(header, offset);
+
+        final ByteBuffer chunk = order(ByteBuffer.allocate(CHUNK_BYTES));
+        long position = entriesOffset;
+        while(entries.hasRemaining()) {
+            chunk.clear();
+            while(entries.hasRemaining() && chunk.remaining() >= 4) {
+                chunk.putInt(entries.get());
+            }
+            chunk.flip();
+            update(crc, chunk.duplicate());
+            position += write(chunk, position);
+        }
+
+        final ByteBuffer checksum = order(ByteBuffer.allocate(CHECKSUM_BYTES));
+        checksum.putLong(crc.getValue()).flip();
+        write(checksum, position);
+        channel.force(true);
+        end = position + CHECKSUM_BYTES;
+
+        final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, entriesOffset, entriesBytes);
+        return new FixedBaseTable(table.getBase(), table.getModulus(), table.getWindow(), table.getPositions(), order(mapped).asIntBuffer());
+    }
+
+    /**
+     * Keeps a table, replacing a stored table for the same base and modulus
+     * only if the new one supports more exponent bits.
+     * @param table the table
+     */
+    private void put(FixedBaseTable table) {
+        final List<BigInteger> key = Arrays.asList(table.getBase(), table.getModulus());
+        final FixedBaseTable existing = tables.get(key);
+        if(existing == null || existing.getExponentBits() < table.getExponentBits()) {
+            tables.put(key, table);
+        }
+    }
+
+    /**
+     * Updates a checksum with the remaining bytes of a buffer.
+     * @param crc the checksum
+     * @param buffer the buffer, consumed
+     */
+    private static void update(CRC32 crc, ByteBuffer buffer) {
+        final byte[] chunk = new byte[Math.min(CHUNK_BYTES, buffer.remaining())];
+        while(buffer.hasRemaining()) {
+            final int count = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, count);
+            crc.update(chunk, 0, count);
+        }
+    }
+
+    /**
+     * @param offset an offset in the file
+     * @return the offset rounded up to the alignment of the entries
+     */
+    private static long align(long offset) {
+        return (offset + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /**
+     * @param buffer a buffer
+     * @return the buffer, set to little-endian byte order
+     */
+    private static <T extends ByteBuffer> T order(T buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Reads bytes of the file.
+     * @param offset the offset to read from
+     * @param count the number of bytes to read
+     * @return a little-endian buffer holding the bytes, positioned at its start
+     * @throws IOException if reading fails or the file ends
+     */
+    private ByteBuffer read(long offset, int count) throws IOException {
+        final ByteBuffer buffer = order(ByteBuffer.allocate(count));
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of table store!");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes all remaining bytes of a buffer to the file.
+     * @param buffer the buffer to write
+     * @param offset the offset to write at
+     * @return the number of bytes written
+     * @throws IOException if writing fails
+     */
+    private int write(ByteBuffer buffer, long offset) throws IOException {
+        final int count = buffer.remaining();
+        long position = offset;
+        while(buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return count;
+    }
+}
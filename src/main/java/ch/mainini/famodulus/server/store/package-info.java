@@ -0,0 +1,5 @@
+/**
+ * This package contains the persistent, memory-mapped store of precomputed
+ * fixed base tables.
+ */
+package ch.mainini.famodulus.server.store;
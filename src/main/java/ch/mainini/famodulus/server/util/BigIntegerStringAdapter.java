@@ -9,7 +9,7 @@ import java.math.BigInteger;
 import javax.xml.bind.annotation.adapters.XmlAdapter;
 
 /**
- * Adapter for marshaling BigInteger from/to String
+ * Adapter for marshaling BigInteger from/to hexadecimal String, using HexCodec
  * @author Pascal Mainini
  */
 public class BigIntegerStringAdapter extends XmlAdapter<String, BigInteger> {
@@ -23,7 +23,7 @@ public class BigIntegerStringAdapter extends XmlAdapter<String, BigInteger> {
      */
     @Override
     public String marshal(BigInteger value) {
-        return value.toString(16);
+        return HexCodec.encode(value);
     }
 
     /**
@@ -33,6 +33,6 @@ public class BigIntegerStringAdapter extends XmlAdapter<String, BigInteger> {
      */
     @Override
     public BigInteger unmarshal(String value) {
-        return new BigInteger(value, 16);
+        return HexCodec.decode(value);
     }
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.util;
+
+import java.math.BigInteger;
+
+/**
+ * Codec for converting BigInteger from/to hexadecimal strings without the
+ * generic radix conversion of BigInteger. Accepts and produces the same
+ * representation as new BigInteger(s, 16) and BigInteger.toString(16).
+ * @author Pascal Mainini
+ */
+public final class HexCodec {
+
+//////////////////////////////////////// Constants
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Value of each ASCII character as hex digit, -1 for invalid characters.
+     */
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        for(int i = 0; i < VALUES.length; i++) {
+            VALUES[i] = (byte) Character.digit((char) i, 16);
+        }
+    }
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Not instantiable, only static methods.
+     */
+    private HexCodec() { }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Decodes a hexadecimal string with optional sign.
+     * @param value the string to decode
+     * @return the decoded BigInteger
+     * @throws NumberFormatException if value is not a valid hexadecimal number
+     */
+    public static BigInteger decode(CharSequence value) {
+        return decode(value, 0, value.length());
+    }
+
+    /**
+     * Decodes a part of a character sequence as hexadecimal number with optional sign.
+     * @param value the sequence containing the number
+     * @param start the index of the first character of the number
+     * @param end the index after the last character of the number
+     * @return the decoded BigInteger
+     * @throws NumberFormatException if the part is not a valid hexadecimal number
+     */
+    public static BigInteger decode(CharSequence value, int start, int end) {
+        int first = start;
+        int signum = 1;
+        if(first < end && (value.charAt(first) == '-' || value.charAt(first) == '+')) {
+            signum = value.charAt(first) == '-' ? -1 : 1;
+            first++;
+        }
+        if(first >= end) {
+            throw new NumberFormatException("Zero length BigInteger");
+        }
+
+        final byte[] magnitude = new byte[(end - first + 1) >>> 1];
+        int position = magnitude.length - 1;
+        int i = end - 1;
+        for(; i > first; i -= 2, position--) {
+            magnitude[position] = (byte) (digit(value, i - 1) << 4 | digit(value, i));
+        }
+        if(i == first) {
+            magnitude[position] = (byte) digit(value, i);
+        }
+        return new BigInteger(signum, magnitude);
+    }
+
+    /**
+     * Encodes a BigInteger as hexadecimal string.
+     * @param value the BigInteger to encode
+     * @return the hexadecimal representation of value
+     */
+    public static String encode(BigInteger value) {
+        return encode(value, new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the hexadecimal representation of a BigInteger.
+     * @param value the BigInteger to encode
+     * @param out the builder to append to
+     * @return out
+     */
+    public static StringBuilder encode(BigInteger value, StringBuilder out) {
+        if(value.signum() == 0) {
+            return out.append('0');
+        }
+        if(value.signum() < 0) {
+            out.append('-');
+        }
+
+        final byte[] bytes = (value.signum() < 0 ? value.negate() : value).toByteArray();
+        int i = 0;
+        while(bytes[i] == 0) {
+            i++;
+        }
+
+        out.ensureCapacity(out.length() + 2 * (bytes.length - i));
+        if((bytes[i] & 0xf0) == 0) {
+            out.append(DIGITS[bytes[i] & 0x0f]);
+            i++;
+        }
+        for(; i < bytes.length; i++) {
+            out.append(DIGITS[(bytes[i] >>> 4) & 0x0f]).append(DIGITS[bytes[i] & 0x0f]);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the value of a hex digit.
+     * @param value the sequence containing the digit
+     * @param index the index of the digit
+     * @return the value of the digit
+     * @throws NumberFormatException if the character is not a hex digit
+     */
+    private static int digit(CharSequence value, int index) {
+        final char c = value.charAt(index);
+        final int digit = c < VALUES.length ? VALUES[c] : -1;
+        if(digit < 0) {
+            throw new NumberFormatException("Illegal hexadecimal digit: " + c);
+        }
+        return digit;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.warmup;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * REST resource reporting whether the server has finished its warm-up, for
+ * use as readiness check of load balancers.
+ * @author Pascal Mainini
+ */
+@Path("ready")
+public class ReadyResource {
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Reports the readiness of the server.
+     * @return HTTP status 200 if the warm-up is finished, 503 otherwise
+     */
+    @GET
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response ready() {
+        return WarmUp.isReady() ? Response.ok("ready").build()
+                : Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("warming up").build();
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+
+/**
+ * Warm-up of the application before it accepts requests, so the first
+ * requests don't pay for loading native libraries, creating JAXB contexts and
+ * interpreting code not compiled by the JIT yet.
+ *
+ * The warm-up sends requests to the application in-process, through the same
+ * resources and providers used by the listeners:
+ * - the groups in the file given by famodulus.warmup.groups, one JSON object
+ *   per line as expected by /api/groups, are registered
+ * - for each size in bits given by famodulus.warmup.bits (comma separated),
+ *   famodulus.warmup.iterations queries with random modexps are calculated,
+ *   both in constant and variable time
+ * - at least one small query is always sent, warming up serialization
+ * The results are neither cached nor checked, failures are logged only.
+ * @author Pascal Mainini
+ */
+public class WarmUp implements Runnable {
+
+//////////////////////////////////////// Constants
+
+    private static final Logger LOG = Logger.getLogger(WarmUp.class.getName());
+
+    private static final int DEFAULT_ITERATIONS = 50;
+
+    /**
+     * Number of modexps per query.
+     */
+    private static final int BATCH_SIZE = 16;
+
+    /**
+     * Size of the modulus of the query always sent.
+     */
+    private static final int MIN_BITS = 64;
+
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_CREATED = 201;
+
+    private static final Random RND = new SecureRandom();
+
+    private static volatile boolean ready;
+
+//////////////////////////////////////// Fields
+
+    private final ApplicationHandler handler;
+    private final URI baseUri;
+    private final List<Integer> bits = new ArrayList<>();
+    private final int iterations;
+    private final String groups;
+
+//////////////////////////////////////// Constructors
+
+    /**
+     * Constructor which reads the configuration from the famodulus.warmup.* system properties.
+     * @param handler the application to warm up
+     * @param apiUri the URI of the API, ending with a slash
+     */
+    public WarmUp(ApplicationHandler handler, URI apiUri) {
+        this(handler, apiUri, System.getProperty("famodulus.warmup.bits", ""),
+                Integer.getInteger("famodulus.warmup.iterations", DEFAULT_ITERATIONS),
+                System.getProperty("famodulus.warmup.groups"));
+    }
+
+    /**
+     * Constructor.
+     * @param handler the application to warm up
+     * @param apiUri the URI of the API, ending with a slash
+     * @param bits the comma separated sizes of the moduli in bits
+     * @param iterations the number of queries per size and engine
+     * @param groups the name of the file containing the groups to register, or null
+     */
+    public WarmUp(ApplicationHandler handler, URI apiUri, String bits, int iterations, String groups) {
+        this.handler = handler;
+        this.baseUri = apiUri;
+        for(String size: bits.split(",")) {
+            if(!size.trim().isEmpty()) {
+                this.bits.add(Integer.parseInt(size.trim()));
+            }
+        }
+        this.iterations = iterations;
+        this.groups = groups;
+    }
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * @return true once a warm-up has finished, successfully or not
+     */
+    public static boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Marks the server as not ready, before a warm-up is started in the background.
+     */
+    public static void reset() {
+        ready = false;
+    }
+
+    /**
+     * Runs the warm-up and marks the server as ready afterwards.
+     */
+    @Override
+    public void run() {
+        final long startTime = System.nanoTime();
+        try {
+            if(groups != null && !groups.isEmpty()) {
+                registerGroups();
+            }
+            query(MIN_BITS, true);
+            for(int size: bits) {
+                for(int i = 0; i < iterations; i++) {
+                    query(size, true);
+                    query(size, false);
+                }
+            }
+            LOG.info(String.format("Warm-up finished in %d ms.", (System.nanoTime() - startTime) / 1000000));
+        } catch(IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Warm-up failed!", e);
+        } finally {
+            ready = true;
+        }
+    }
+
+    /**
+     * Registers all groups of the configured file.
+     * @throws IOException if the file cannot be read
+     */
+    private void registerGroups() throws IOException {
+        int count = 0;
+        for(String line: Files.readAllLines(Paths.get(groups), StandardCharsets.UTF_8)) {
+            if(line.trim().isEmpty()) {
+                continue;
+            }
+            final int status = post("groups", line.trim());
+            if(status != HTTP_CREATED) {
+                LOG.warning(String.format("Could not register group %s, HTTP status %d.", line.trim(), status));
+            } else {
+                count++;
+            }
+        }
+        LOG.fine(String.format("Registered %d groups during warm-up.", count));
+    }
+
+    /**
+     * Sends a query with random modexps.
+     * @param size the size of the modulus in bits
+     * @param secure whether to calculate in constant time
+     */
+    private void query(int size, boolean secure) {
+        final BigInteger modulus = new BigInteger(size, RND).setBit(size - 1).setBit(0);
+        final StringBuilder query = new StringBuilder();
+        query.append(String.format("{\"m\":\"%s\",\"e\":\"%s\",\"secure\":%b,\"cache\":false,\"modexps\":[",
+                modulus.toString(16), new BigInteger(size, RND).toString(16), secure));
+        for(int i = 0; i < BATCH_SIZE; i++) {
+            query.append(i > 0 ? "," : "").append(String.format("{\"b\":\"%s\"}", new BigInteger(size - 1, RND).toString(16)));
+        }
+        query.append("]}");
+
+        final int status = post("modexp", query.toString());
+        if(status != HTTP_OK) {
+            throw new IllegalStateException(String.format("Warm-up query failed with HTTP status %d!", status));
+        }
+    }
+
+    /**
+     * Sends a JSON request to the application.
+     * @param path the path of the resource, relative to the API
+     * @param json the request body
+     * @return the HTTP status of the response
+     */
+    private int post(String path, String json) {
+        final ContainerRequest request = new ContainerRequest(baseUri, baseUri.resolve(path), HttpMethod.POST,
+                null, new MapPropertiesDelegate());
+        request.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON);
+        request.header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON);
+        request.setEntityStream(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        try {
+            return handler.apply(request, new ByteArrayOutputStream()).get().getStatus();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during warm-up!", e);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("Warm-up request failed!", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * This package contains the warm-up run before the server accepts requests and
+ * the "ready" REST resource reporting its completion.
+ */
+package ch.mainini.famodulus.server.warmup;
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Variant;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit test for CompressionInterceptor
+ * @author Pascal Mainini
+ */
+public class CompressionInterceptorTest {
+
+//////////////////////////////////////// Constants
+
+    private static final String API_PATH = "modexp";
+
+    private static final String SMALL_QUERY = "{\"modexps\":[{\"m\":\"b\",\"b\":\"2\",\"e\":\"3\"}]}";
+    private static final String SMALL_RESPONSE = "{\"modexps\":[{\"r\":\"8\"}]}";
+
+    private static final BigInteger TWO = BigInteger.valueOf(2);
+    private static final BigInteger ELEVEN = BigInteger.valueOf(11);
+
+    private static final int MODEXPS = 256;
+
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+
+//////////////////////////////////////// Fields
+
+    private static HttpServer server;
+    private static WebTarget target;
+
+
+//////////////////////////////////////// Methods
+
+///////////////////// Initialization
+
+    /**
+     * Pre-test setup
+     * @throws Exception in case of trouble
+     */
+    @BeforeClass
+    public static void setUp() throws Exception {
+        server = Server.startServer();
+
+        final Client c = ClientBuilder.newClient();
+        target = c.target(Server.DEFAULT_BASE_URI + Server.API_PATH);
+    }
+
+    /**
+     * After-test cleanup
+     * @throws Exception in case of trouble
+     */
+    @AfterClass
+    public static void tearDown() throws Exception {
+        server.shutdownNow();
+    }
+
+///////////////////// Tests
+
+    /**
+     * Test negotiating the encoding from Accept-Encoding
+     */
+    @Test
+    public void negotiate() {
+        assertNull(CompressionInterceptor.negotiate(null));
+        assertNull(CompressionInterceptor.negotiate(Arrays.asList("identity")));
+        assertNull(CompressionInterceptor.negotiate(Arrays.asList("gzip;q=0")));
+        assertEquals("gzip", CompressionInterceptor.negotiate(Arrays.asList("deflate, gzip")));
+        assertEquals("gzip", CompressionInterceptor.negotiate(Arrays.asList("*")));
+        assertEquals("deflate", CompressionInterceptor.negotiate(Arrays.asList("gzip;q=0, deflate;q=0.5")));
+        assertEquals("deflate", CompressionInterceptor.negotiate(Arrays.asList("br", "DEFLATE")));
+        assertEquals("deflate", CompressionInterceptor.negotiate(Arrays.asList("gzip;q=0, *")));
+        assertEquals("deflate", CompressionInterceptor.negotiate(Arrays.asList("*", "x-gzip;q=0")));
+        assertNull(CompressionInterceptor.negotiate(Arrays.asList("gzip;q=0, deflate;q=0, *")));
+        assertNull(CompressionInterceptor.negotiate(Arrays.asList("identity;q=0")));
+        assertEquals("gzip", CompressionInterceptor.negotiate(Arrays.asList("identity;q=0, *")));
+    }
+
+    /**
+     * Test if large responses are compressed using gzip
+     * @throws IOException in case of trouble
+     */
+    @Test
+    public void gzipResponse() throws IOException {
+        final Response response = target.path(API_PATH).request().header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .post(Entity.entity(largeQuery(), MediaType.APPLICATION_JSON));
+        assertEquals(HTTP_OK, response.getStatus());
+        assertEquals("gzip", response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(largeResponse(), read(new GZIPInputStream(new ByteArrayInputStream(response.readEntity(byte[].class)))));
+    }
+
+    /**
+     * Test if large responses are compressed using deflate
+     * @throws IOException in case of trouble
+     */
+    @Test
+    public void deflateResponse() throws IOException {
+        final Response response = target.path(API_PATH).request().header(HttpHeaders.ACCEPT_ENCODING, "deflate")
+                .post(Entity.entity(largeQuery(), MediaType.APPLICATION_JSON));
+        assertEquals("deflate", response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(largeResponse(), read(new InflaterInputStream(new ByteArrayInputStream(response.readEntity(byte[].class)))));
+    }
+
+    /**
+     * Test if small responses and responses to clients not accepting
+     * compression are not compressed
+     */
+    @Test
+    public void uncompressedResponse() {
+        Response response = target.path(API_PATH).request().header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .post(Entity.entity(SMALL_QUERY, MediaType.APPLICATION_JSON));
+        assertNull(response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(SMALL_RESPONSE, response.readEntity(String.class));
+
+        response = target.path(API_PATH).request().post(Entity.entity(largeQuery(), MediaType.APPLICATION_JSON));
+        assertNull(response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(largeResponse(), response.readEntity(String.class));
+    }
+
+    /**
+     * Test sending a gzip compressed query
+     * @throws IOException in case of trouble
+     */
+    @Test
+    public void gzipRequest() throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try(GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(SMALL_QUERY.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals(SMALL_RESPONSE, target.path(API_PATH).request()
+                .post(Entity.entity(compressed.toByteArray(), new Variant(MediaType.APPLICATION_JSON_TYPE, (String) null, "gzip")), String.class));
+    }
+
+    /**
+     * Test sending a query with unsupported encoding
+     */
+    @Test
+    public void unsupportedRequest() {
+        assertEquals(HTTP_UNSUPPORTED_MEDIA_TYPE, target.path(API_PATH).request()
+                .post(Entity.entity(SMALL_QUERY, new Variant(MediaType.APPLICATION_JSON_TYPE, (String) null, "br"))).getStatus());
+    }
+
+    /**
+     * @return a query with many small modexps
+     */
+    private static String largeQuery() {
+        final StringBuilder query = new StringBuilder("{\"m\":\"b\",\"b\":\"2\",\"modexps\":[");
+        for(int i = 0; i < MODEXPS; i++) {
+            query.append(i > 0 ? "," : "").append("{\"e\":\"").append(Integer.toHexString(i)).append("\"}");
+        }
+        return query.append("]}").toString();
+    }
+
+    /**
+     * @return the expected response to largeQuery()
+     */
+    private static String largeResponse() {
+        final StringBuilder response = new StringBuilder("{\"modexps\":[");
+        for(int i = 0; i < MODEXPS; i++) {
+            response.append(i > 0 ? "," : "").append("{\"r\":\"").append(TWO.modPow(BigInteger.valueOf(i), ELEVEN).toString(16)).append("\"}");
+        }
+        return response.append("]}").toString();
+    }
+
+    /**
+     * @param in the stream to read
+     * @return the content of the stream as UTF-8 string
+     */
+    private static String read(InputStream in) {
+        return new Scanner(in, StandardCharsets.UTF_8.name()).useDelimiter("\\A").next();
+    }
+}
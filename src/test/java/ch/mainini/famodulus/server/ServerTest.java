@@ -9,7 +9,9 @@ import java.io.InputStream;
 import java.util.Scanner;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
 import org.glassfish.grizzly.http.server.HttpServer;
 import org.junit.AfterClass;
 import static org.junit.Assert.assertEquals;
@@ -23,7 +25,12 @@ import org.junit.Test;
 public class ServerTest {
 //////////////////////////////////////// Constants
 
+    private static final int HTTP_OK = 200;
     private static final int HTTP_NOT_FOUND = 404;
+    private static final int HTTP_BAD_REQUEST = 400;
+
+    private static final String CONFIGURED_API_URI = "http://localhost:8085/" + Server.API_PATH;
+    private static final String ADDITIONAL_URI = "http://localhost:8086/";
 
 //////////////////////////////////////// Fields
 
@@ -64,4 +71,43 @@ public class ServerTest {
 
         assertEquals(s.next(), target.request().get(String.class));
     }
+
+    /**
+     * Starts a server with an additional listener and a maximum post size,
+     * and checks if both are effective.
+     */
+    @Test
+    public void configuredListeners() {
+        System.setProperty("famodulus.listeners", ADDITIONAL_URI);
+        System.setProperty("famodulus.max_post_size", "64");
+        System.setProperty("famodulus.transport.io_strategy", "worker");
+        final HttpServer configured;
+        try {
+            configured = Server.startServer(CONFIGURED_API_URI);
+        } finally {
+            System.clearProperty("famodulus.listeners");
+            System.clearProperty("famodulus.max_post_size");
+            System.clearProperty("famodulus.transport.io_strategy");
+        }
+
+        try {
+            final Client c = ClientBuilder.newClient();
+            assertEquals(2, configured.getListeners().size());
+            assertEquals(HTTP_OK, c.target(CONFIGURED_API_URI).path("metrics").request().get().getStatus());
+            assertEquals(HTTP_OK, c.target(ADDITIONAL_URI + Server.API_PATH).path("metrics").request().get().getStatus());
+
+            final String small = "{\"modexps\":[{\"m\":\"b\",\"b\":\"2\",\"e\":\"3\"}]}";
+            final StringBuilder large = new StringBuilder("{\"modexps\":[{\"m\":\"b\",\"b\":\"2\",\"e\":\"3");
+            while(large.length() < 128) {
+                large.append('0');
+            }
+            large.append("\"}]}");
+            assertEquals(HTTP_OK, c.target(ADDITIONAL_URI + Server.API_PATH).path("modexp").request()
+                    .post(Entity.entity(small, MediaType.APPLICATION_JSON)).getStatus());
+            assertEquals(HTTP_BAD_REQUEST, c.target(ADDITIONAL_URI + Server.API_PATH).path("modexp").request()
+                    .post(Entity.entity(large.toString(), MediaType.APPLICATION_JSON)).getStatus());
+        } finally {
+            configured.shutdownNow();
+        }
+    }
 }
\ No newline at end of file
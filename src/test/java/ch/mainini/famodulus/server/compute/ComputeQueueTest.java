@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for ComputeQueue
+ * @author Pascal Mainini
+ */
+public class ComputeQueueTest {
+
+//////////////////////////////////////// Constants
+
+    private static final long MAX_COST = 100;
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+//////////////////////////////////////// Fields
+
+    private ForkJoinPool pool;
+
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Pre-test setup
+     */
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(1);
+    }
+
+    /**
+     * After-test cleanup
+     */
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Test if tasks are rejected once the pending cost exceeds the maximum
+     * @throws InterruptedException in case of trouble
+     */
+    @Test
+    public void rejectOverBudget() throws InterruptedException {
+        final ComputeQueue queue = new ComputeQueue(pool, MAX_COST);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+
+        assertTrue(queue.submit(60, new Blocking(release, done)));
+        assertTrue(queue.submit(40, new Blocking(release, done)));
+        assertFalse(queue.submit(1, new Blocking(release, done)));
+        assertEquals(100, queue.getPendingCost());
+        assertEquals(2, queue.getPendingTasks());
+        assertEquals(1, queue.getRejected());
+        assertEquals(1, queue.getRetryAfter());
+
+        release.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        pool.awaitQuiescence(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(0, queue.getPendingCost());
+        assertEquals(0, queue.getPendingTasks());
+    }
+
+    /**
+     * Test if an oversized task is accepted if nothing else is pending
+     * @throws InterruptedException in case of trouble
+     */
+    @Test
+    public void acceptOversizedWhenIdle() throws InterruptedException {
+        final ComputeQueue queue = new ComputeQueue(pool, MAX_COST);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        assertTrue(queue.submit(10 * MAX_COST, new Blocking(release, done)));
+        assertFalse(queue.submit(1, new Blocking(release, done)));
+
+        release.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test if an unlimited queue accepts everything
+     * @throws InterruptedException in case of trouble
+     */
+    @Test
+    public void unlimited() throws InterruptedException {
+        final ComputeQueue queue = new ComputeQueue(pool, 0);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+
+        for(int i = 0; i < 3; i++) {
+            assertTrue(queue.submit(Long.MAX_VALUE / 4, new Blocking(release, done)));
+        }
+        assertEquals(0, queue.getRejected());
+
+        release.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+///////////////////// Inner classes
+
+    /**
+     * Task blocking until released.
+     */
+    private static class Blocking implements Runnable {
+
+        private final CountDownLatch release;
+        private final CountDownLatch done;
+
+        /**
+         * @param release the latch to wait for
+         * @param done the latch to count down when done
+         */
+        Blocking(CountDownLatch release, CountDownLatch done) {
+            this.release = release;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                release.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Unit test for CrtContext
+ * @author Pascal Mainini
+ */
+public class CrtContextTest {
+
+//////////////////////////////////////// Constants
+
+    private static final SecureRandom RND = new SecureRandom();
+
+    /**
+     * Bit lengths of the factors, including unbalanced ones.
+     */
+    private static final int[][] BITS = new int[][] { { 8, 8 }, { 33, 31 }, { 256, 256 }, { 512, 512 }, { 768, 256 } };
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Test modexps with secure and variable time recombination against BigInteger.modPow()
+     */
+    @Test
+    public void modPow() {
+        for(int[] bits: BITS) {
+            final BigInteger p = BigInteger.probablePrime(bits[0], RND);
+            BigInteger q = BigInteger.probablePrime(bits[1], RND);
+            while(q.equals(p)) {
+                q = BigInteger.probablePrime(bits[1], RND);
+            }
+            final BigInteger modulus = p.multiply(q);
+            final CrtContext context = new CrtContext(q, p);
+            assertEquals(modulus, context.getModulus());
+
+            final BigInteger base = new BigInteger(modulus.bitLength(), RND);
+            final BigInteger exponent = new BigInteger(modulus.bitLength(), RND);
+            assertEquals(base.modPow(exponent, modulus), context.modPow(base, exponent, true));
+            assertEquals(base.modPow(exponent, modulus), context.modPow(base, exponent, false));
+        }
+    }
+
+    /**
+     * Test modexps with edge case values
+     */
+    @Test
+    public void modPowEdgeCases() {
+        final BigInteger p = BigInteger.valueOf(11);
+        final BigInteger q = BigInteger.valueOf(13);
+        final BigInteger modulus = p.multiply(q);
+        final CrtContext context = new CrtContext(p, q);
+        for(boolean secure: new boolean[] { true, false }) {
+            assertEquals(BigInteger.ONE, context.modPow(BigInteger.valueOf(7), BigInteger.ZERO, secure));
+            assertEquals(BigInteger.valueOf(7), context.modPow(BigInteger.valueOf(7), BigInteger.ONE, secure));
+            assertEquals(BigInteger.ZERO, context.modPow(BigInteger.ZERO, BigInteger.TEN, secure));
+            assertEquals(p.modPow(BigInteger.TEN, modulus), context.modPow(p, BigInteger.TEN, secure));
+            assertEquals(q.modPow(q, modulus), context.modPow(q, q, secure));
+        }
+    }
+
+    /**
+     * Test rejection of identical factors
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void identicalFactors() {
+        new CrtContext(BigInteger.valueOf(11), BigInteger.valueOf(11));
+    }
+
+    /**
+     * Test rejection of even factors
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void evenFactor() {
+        new CrtContext(BigInteger.valueOf(2), BigInteger.valueOf(11));
+    }
+}
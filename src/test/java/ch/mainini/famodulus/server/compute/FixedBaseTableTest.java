@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit test for FixedBaseTable and FixedBaseCache
+ * @author Pascal Mainini
+ */
+public class FixedBaseTableTest {
+
+//////////////////////////////////////// Constants
+
+    private static final SecureRandom RND = new SecureRandom();
+
+    private static final BigInteger MODULUS = BigInteger.probablePrime(1024, RND);
+    private static final BigInteger BASE = new BigInteger(1024, RND);
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Test modexps with random exponents against BigInteger.modPow()
+     */
+    @Test
+    public void modPowRandom() {
+        for(int window = 1; window <= 6; window++) {
+            final FixedBaseTable table = new FixedBaseTable(BASE, MODULUS, MODULUS.bitLength(), window);
+            for(int i = 0; i < 4; i++) {
+                final BigInteger exponent = new BigInteger(RND.nextInt(MODULUS.bitLength()) + 1, RND);
+                assertEquals(BASE.modPow(exponent, MODULUS), table.modPow(exponent));
+            }
+        }
+    }
+
+    /**
+     * Test modexps with edge case exponents
+     */
+    @Test
+    public void modPowEdgeCases() {
+        final FixedBaseTable table = new FixedBaseTable(BASE, MODULUS, 100, 4);
+        assertEquals(BigInteger.ONE, table.modPow(BigInteger.ZERO));
+        assertEquals(BASE.mod(MODULUS), table.modPow(BigInteger.ONE));
+
+        final BigInteger maximum = BigInteger.ONE.shiftLeft(table.getExponentBits()).subtract(BigInteger.ONE);
+        assertEquals(BASE.modPow(maximum, MODULUS), table.modPow(maximum));
+    }
+
+    /**
+     * Test which exponents are supported
+     */
+    @Test
+    public void supports() {
+        final FixedBaseTable table = new FixedBaseTable(BASE, MODULUS, 100, 4);
+        assertEquals(100, table.getExponentBits());
+        assertTrue(table.supports(BigInteger.ZERO));
+        assertTrue(table.supports(BigInteger.ONE.shiftLeft(99)));
+        assertFalse(table.supports(BigInteger.ONE.shiftLeft(100)));
+        assertFalse(table.supports(BigInteger.ONE.negate()));
+    }
+
+    /**
+     * Test if the cache only builds tables after the threshold is reached
+     */
+    @Test
+    public void cacheThreshold() {
+        final FixedBaseCache cache = new FixedBaseCache(1L << 30, 3, 4, DIRECT);
+        assertNull(cache.lookup(BASE, MODULUS));
+        assertNull(cache.lookup(BASE, MODULUS));
+
+        final FixedBaseTable table = cache.lookup(BASE, MODULUS);
+        assertNotNull(table);
+        assertSame(table, cache.lookup(BASE, MODULUS));
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(table.getSizeBytes(), cache.getBytes());
+    }
+
+    /**
+     * Test if tables are built by the executor and lookups don't wait for them
+     */
+    @Test
+    public void cacheBuildDeferred() {
+        final List<Runnable> builds = new ArrayList<>();
+        final FixedBaseCache cache = new FixedBaseCache(1L << 30, 1, 4, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                builds.add(command);
+            }
+        });
+
+        assertNull(cache.lookup(BASE, MODULUS));
+        assertNull(cache.lookup(BASE, MODULUS));
+        assertEquals(1, builds.size());
+        assertEquals(0, cache.size());
+
+        builds.get(0).run();
+        assertNotNull(cache.lookup(BASE, MODULUS));
+        assertEquals(1, cache.getHits());
+    }
+
+    /**
+     * Test if the least recently used table gets evicted
+     */
+    @Test
+    public void cacheEviction() {
+        final BigInteger otherBase = BASE.add(BigInteger.ONE);
+        final long tableBytes = new FixedBaseTable(BASE, MODULUS, MODULUS.bitLength(), 4).getSizeBytes();
+        final FixedBaseCache cache = new FixedBaseCache(tableBytes * 3 / 2, 1, 4, DIRECT);
+
+        assertNotNull(cache.lookup(BASE, MODULUS));
+        assertNotNull(cache.lookup(otherBase, MODULUS));
+        assertEquals(1, cache.size());
+        assertEquals(tableBytes, cache.getBytes());
+        assertEquals(otherBase, cache.lookup(otherBase, MODULUS).getBase());
+        assertEquals(1, cache.getHits());
+    }
+
+    /**
+     * Test that a disabled cache never builds tables
+     */
+    @Test
+    public void cacheDisabled() {
+        final FixedBaseCache cache = new FixedBaseCache(0, 1, 4, DIRECT);
+        assertNull(cache.lookup(BASE, MODULUS));
+        assertNull(cache.lookup(BASE, MODULUS));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import com.squareup.jnagmp.Gmp;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeNoException;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for GmpBatch
+ * @author Pascal Mainini
+ */
+public class GmpBatchTest {
+
+//////////////////////////////////////// Constants
+
+    private static final SecureRandom RND = new SecureRandom();
+
+    private static final BigInteger MODULUS = BigInteger.probablePrime(1024, RND);
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Skips the tests if gmplib is not available
+     */
+    @Before
+    public void checkGmp() {
+        try {
+            Gmp.checkLoaded();
+        } catch(UnsatisfiedLinkError e) {
+            assumeNoException(e);
+        }
+    }
+
+    /**
+     * Test batches with a shared exponent against BigInteger.modPow()
+     */
+    @Test
+    public void sharedExponent() {
+        final BigInteger[] bases = random(32, 1024);
+        final BigInteger exponent = new BigInteger(1024, RND);
+        for(boolean secure: new boolean[] { true, false }) {
+            final BigInteger[] results = GmpBatch.modPow(bases, new BigInteger[] { exponent }, MODULUS, secure);
+            for(int i = 0; i < bases.length; i++) {
+                assertEquals(bases[i].modPow(exponent, MODULUS), results[i]);
+            }
+        }
+    }
+
+    /**
+     * Test batches with an exponent per base, including edge case bases,
+     * against BigInteger.modPow()
+     */
+    @Test
+    public void exponents() {
+        final BigInteger[] bases = random(16, 1024);
+        bases[0] = BigInteger.ZERO;
+        bases[1] = BigInteger.ONE;
+        bases[2] = MODULUS;
+        bases[3] = MODULUS.shiftLeft(100).add(BigInteger.TEN);
+        final BigInteger[] exponents = random(16, 2048);
+        exponents[4] = BigInteger.ONE;
+        for(boolean secure: new boolean[] { true, false }) {
+            final BigInteger[] results = GmpBatch.modPow(bases, exponents, MODULUS, secure);
+            for(int i = 0; i < bases.length; i++) {
+                assertEquals(bases[i].modPow(exponents[i], MODULUS), results[i]);
+            }
+        }
+    }
+
+    /**
+     * Test batches larger than the initial buffer and batches falling back to Gmp
+     */
+    @Test
+    public void largeAndFallback() {
+        final BigInteger modulus = BigInteger.probablePrime(3072, RND);
+        final BigInteger[] bases = random(256, 3072);
+        final BigInteger[] exponents = random(256, 256);
+        exponents[7] = BigInteger.ZERO;
+
+        final BigInteger[] results = GmpBatch.modPow(bases, exponents, modulus, false);
+        for(int i = 0; i < bases.length; i++) {
+            assertEquals(bases[i].modPow(exponents[i], modulus), results[i]);
+        }
+
+        exponents[7] = BigInteger.ONE;
+        final BigInteger[] secureResults = GmpBatch.modPow(bases, exponents, modulus, true);
+        for(int i = 0; i < bases.length; i++) {
+            assertEquals(bases[i].modPow(exponents[i], modulus), secureResults[i]);
+        }
+    }
+
+    /**
+     * @param count the number of values
+     * @param bits the number of bits of each value
+     * @return random non-negative values
+     */
+    private static BigInteger[] random(int count, int bits) {
+        final BigInteger[] values = new BigInteger[count];
+        for(int i = 0; i < count; i++) {
+            values[i] = new BigInteger(bits, RND);
+        }
+        return values;
+    }
+}
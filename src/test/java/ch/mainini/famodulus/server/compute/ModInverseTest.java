@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ * Unit test for ModInverse
+ * @author Pascal Mainini
+ */
+public class ModInverseTest {
+
+//////////////////////////////////////// Constants
+
+    private static final SecureRandom RND = new SecureRandom();
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Test random values with odd and even moduli, blinded and not blinded
+     */
+    @Test
+    public void random() {
+        final BigInteger prime = BigInteger.probablePrime(512, RND);
+        for(BigInteger modulus: new BigInteger[] { prime, prime.shiftLeft(3) }) {
+            for(int count: new int[] { 1, 2, 50 }) {
+                final BigInteger[] values = new BigInteger[count];
+                for(int i = 0; i < count; i++) {
+                    values[i] = new BigInteger(600, RND).setBit(0);
+                }
+                assertInverses(values, modulus, ModInverse.modInverse(values, modulus, true));
+                assertInverses(values, modulus, ModInverse.modInverse(values, modulus, false));
+            }
+        }
+    }
+
+    /**
+     * Test that values without inverse are reported without affecting the others
+     */
+    @Test
+    public void notInvertible() {
+        final BigInteger modulus = BigInteger.valueOf(3 * 5 * 7);
+        final BigInteger[] values = new BigInteger[] { BigInteger.valueOf(2), BigInteger.ZERO, BigInteger.valueOf(10),
+            BigInteger.valueOf(-4), BigInteger.valueOf(105), BigInteger.valueOf(21), BigInteger.valueOf(104) };
+        final BigInteger[] inverses = ModInverse.modInverse(values, modulus, true);
+        assertInverses(values, modulus, inverses);
+        assertNull(inverses[1]);
+        assertNull(inverses[2]);
+        assertNull(inverses[4]);
+        assertNull(inverses[5]);
+
+        final BigInteger[] none = ModInverse.modInverse(new BigInteger[] { BigInteger.valueOf(6), BigInteger.valueOf(7) },
+                BigInteger.valueOf(42), false);
+        assertNull(none[0]);
+        assertNull(none[1]);
+    }
+
+    /**
+     * Test if a modulus not greater than one is rejected
+     */
+    @Test(expected=ArithmeticException.class)
+    public void invalidModulus() {
+        ModInverse.modInverse(new BigInteger[] { BigInteger.ONE }, BigInteger.ONE, false);
+    }
+
+    /**
+     * Compares the inverses against BigInteger.modInverse().
+     * @param values the values
+     * @param modulus the modulus
+     * @param inverses the inverses to check
+     */
+    private static void assertInverses(BigInteger[] values, BigInteger modulus, BigInteger[] inverses) {
+        assertEquals(values.length, inverses.length);
+        for(int i = 0; i < values.length; i++) {
+            if(values[i].gcd(modulus).equals(BigInteger.ONE)) {
+                assertEquals(values[i].modInverse(modulus), inverses[i]);
+            } else {
+                assertNull(inverses[i]);
+            }
+        }
+    }
+}
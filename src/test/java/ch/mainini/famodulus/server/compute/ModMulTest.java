@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Unit test for ModMul
+ * @author Pascal Mainini
+ */
+public class ModMulTest {
+
+//////////////////////////////////////// Constants
+
+    private static final SecureRandom RND = new SecureRandom();
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Test the product tree against sequential multiplication, including trees split across the compute pool
+     */
+    @Test
+    public void product() {
+        final BigInteger modulus = BigInteger.probablePrime(2048, RND);
+        for(int count: new int[] { 1, 2, 7, 3000 }) {
+            final BigInteger[] values = new BigInteger[count];
+            BigInteger expected = BigInteger.ONE;
+            for(int i = 0; i < count; i++) {
+                values[i] = new BigInteger(2100, RND);
+                expected = expected.multiply(values[i]).mod(modulus);
+            }
+            assertEquals(expected, ModMul.product(values, modulus));
+        }
+    }
+
+    /**
+     * Test element-wise products with different moduli and negative factors
+     */
+    @Test
+    public void multiply() {
+        final int count = 3000;
+        final BigInteger[] a = new BigInteger[count];
+        final BigInteger[] b = new BigInteger[count];
+        final BigInteger[] moduli = new BigInteger[count];
+        final BigInteger[] expected = new BigInteger[count];
+        for(int i = 0; i < count; i++) {
+            a[i] = new BigInteger(2048, RND).subtract(BigInteger.ONE.shiftLeft(2047));
+            b[i] = new BigInteger(2048, RND);
+            moduli[i] = new BigInteger(i % 2 == 0 ? 2048 : 64, RND).setBit(0);
+            expected[i] = a[i].multiply(b[i]).mod(moduli[i]);
+        }
+        assertArrayEquals(expected, ModMul.multiply(a, b, moduli));
+    }
+
+    /**
+     * Test the product of no values and the modulus one
+     */
+    @Test
+    public void edgeCases() {
+        assertEquals(BigInteger.ONE, ModMul.product(new BigInteger[0], BigInteger.TEN));
+        assertEquals(BigInteger.ZERO, ModMul.product(new BigInteger[] { BigInteger.TEN }, BigInteger.ONE));
+    }
+
+    /**
+     * Test if a modulus not greater than zero is rejected
+     */
+    @Test(expected=ArithmeticException.class)
+    public void invalidModulus() {
+        ModMul.product(new BigInteger[] { BigInteger.ONE }, BigInteger.ZERO);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import com.squareup.jnagmp.Gmp;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ * Unit test for MontgomeryContext and MontgomeryEngine
+ * @author Pascal Mainini
+ */
+public class MontgomeryContextTest {
+
+//////////////////////////////////////// Constants
+
+    private static final SecureRandom RND = new SecureRandom();
+
+    private static final int[] BITS = new int[] { 2, 17, 32, 33, 64, 127, 512, 1024, 2048 };
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Test multiplication and conversion for various sizes against BigInteger
+     */
+    @Test
+    public void multiply() {
+        for(int bits: BITS) {
+            final BigInteger modulus = randomOddModulus(bits);
+            final MontgomeryContext context = new MontgomeryContext(modulus);
+            final BigInteger a = new BigInteger(bits + 8, RND);
+            final BigInteger b = new BigInteger(bits, RND);
+
+            final int[] product = new int[context.getLength()];
+            context.multiply(context.toMontgomery(a), context.toMontgomery(b), product, context.newScratch());
+            assertEquals(a.multiply(b).mod(modulus), context.fromMontgomery(product));
+            assertEquals(a.mod(modulus), context.fromMontgomery(context.toMontgomery(a)));
+        }
+    }
+
+    /**
+     * Test reduction of limbs and modular subtraction for various sizes against BigInteger
+     */
+    @Test
+    public void subtract() {
+        for(int bits: BITS) {
+            final BigInteger modulus = randomOddModulus(bits);
+            final MontgomeryContext context = new MontgomeryContext(modulus);
+            final BigInteger a = new BigInteger(context.getLength() * 32, RND);
+            final BigInteger b = new BigInteger(bits, RND).mod(modulus);
+
+            final int[] reduced = Limbs.fromBigInteger(a, context.getLength());
+            context.toMontgomery(reduced, reduced, context.newScratch());
+            final int[] difference = new int[context.getLength()];
+            context.subtract(reduced, context.toMontgomery(b), difference);
+            assertEquals(a.subtract(b).mod(modulus), context.fromMontgomery(difference));
+            context.subtract(context.toMontgomery(b), reduced, difference);
+            assertEquals(b.subtract(a).mod(modulus), context.fromMontgomery(difference));
+        }
+    }
+
+    /**
+     * Test modexps for various sizes against BigInteger.modPow() and gmplib
+     */
+    @Test
+    public void modPow() {
+        final ModExpEngine engine = new MontgomeryEngine();
+        for(int bits: BITS) {
+            final BigInteger modulus = randomOddModulus(bits);
+            final BigInteger base = new BigInteger(bits, RND);
+            final BigInteger exponent = new BigInteger(bits * 2, RND);
+
+            assertEquals(base.modPow(exponent, modulus), engine.modPow(base, exponent, modulus));
+            assertEquals(Gmp.modPowSecure(base, exponent, modulus), engine.modPow(base, exponent, modulus));
+        }
+    }
+
+    /**
+     * Test modexps of multiple bases sharing the exponent against BigInteger.modPow() and gmplib
+     */
+    @Test
+    public void modPowSharedExponent() {
+        final ModExpEngine engine = new MontgomeryEngine();
+        for(int bits: BITS) {
+            final BigInteger modulus = randomOddModulus(bits);
+            final BigInteger exponent = new BigInteger(bits, RND);
+            final BigInteger[] bases = new BigInteger[] { new BigInteger(bits, RND), BigInteger.ZERO, BigInteger.ONE, new BigInteger(bits, RND) };
+
+            final BigInteger[] results = engine.modPow(bases, exponent, modulus);
+            final BigInteger[] gmpSecure = new GmpEngine().modPow(bases, exponent, modulus);
+            final BigInteger[] gmpInsecure = new GmpInsecureEngine().modPow(bases, exponent, modulus);
+            for(int i = 0; i < bases.length; i++) {
+                assertEquals(bases[i].modPow(exponent, modulus), results[i]);
+                assertEquals(results[i], gmpSecure[i]);
+                assertEquals(results[i], gmpInsecure[i]);
+            }
+        }
+    }
+
+    /**
+     * Test modexps with edge case values
+     */
+    @Test
+    public void modPowEdgeCases() {
+        final ModExpEngine engine = new MontgomeryEngine();
+        assertEquals(BigInteger.valueOf(2), engine.modPow(BigInteger.valueOf(2), BigInteger.valueOf(3), BigInteger.valueOf(3)));
+        assertEquals(BigInteger.valueOf(5), engine.modPow(BigInteger.valueOf(3), BigInteger.valueOf(5), BigInteger.valueOf(17)));
+        assertEquals(BigInteger.ONE, engine.modPow(BigInteger.valueOf(7), BigInteger.ZERO, BigInteger.valueOf(11)));
+        assertEquals(BigInteger.ZERO, engine.modPow(BigInteger.ZERO, BigInteger.TEN, BigInteger.valueOf(11)));
+        assertEquals(BigInteger.valueOf(5), engine.modPow(BigInteger.valueOf(-7), BigInteger.valueOf(2), BigInteger.valueOf(11)));
+    }
+
+    /**
+     * Test rejection of invalid moduli and exponents
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void evenModulus() {
+        new MontgomeryContext(BigInteger.TEN);
+    }
+
+    /**
+     * Test rejection of negative exponents
+     */
+    @Test(expected = ArithmeticException.class)
+    public void negativeExponent() {
+        new MontgomeryEngine().modPow(BigInteger.TEN, BigInteger.ONE.negate(), BigInteger.valueOf(11));
+    }
+
+    /**
+     * Test if contexts are reused
+     */
+    @Test
+    public void cached() {
+        final BigInteger modulus = randomOddModulus(256);
+        assertSame(MontgomeryContext.of(modulus), MontgomeryContext.of(modulus));
+    }
+
+    /**
+     * Creates a random odd modulus with exactly the given number of bits.
+     * @param bits the number of bits
+     * @return the modulus
+     */
+    private static BigInteger randomOddModulus(int bits) {
+        return new BigInteger(bits, RND).setBit(bits - 1).setBit(0);
+    }
+}
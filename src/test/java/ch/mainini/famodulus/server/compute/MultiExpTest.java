@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Unit test for MultiExp
+ * @author Pascal Mainini
+ */
+public class MultiExpTest {
+
+//////////////////////////////////////// Constants
+
+    private static final SecureRandom RND = new SecureRandom();
+
+    private static final BigInteger MODULUS = BigInteger.probablePrime(512, RND);
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Test Straus' method against the product of individual modexps
+     */
+    @Test
+    public void straus() {
+        for(int count: new int[] { 1, 2, 5, MultiExp.STRAUS_THRESHOLD }) {
+            final BigInteger[][] input = randomInput(count, 512);
+            assertEquals(expected(input[0], input[1]), MultiExp.straus(input[0], input[1], MODULUS));
+        }
+    }
+
+    /**
+     * Test the constant time variant of Straus' method against the product of individual modexps
+     */
+    @Test
+    public void strausSecure() {
+        for(int count: new int[] { 1, 2, 5, 40 }) {
+            final BigInteger[][] input = randomInput(count, 512);
+            assertEquals(expected(input[0], input[1]), MultiExp.strausSecure(input[0], input[1], MODULUS));
+            assertEquals(expected(input[0], input[1]), MultiExp.multiExpSecure(input[0], input[1], MODULUS));
+        }
+    }
+
+    /**
+     * Test Pippenger's method against the product of individual modexps
+     */
+    @Test
+    public void pippenger() {
+        for(int count: new int[] { 1, 3, 40, 300 }) {
+            final BigInteger[][] input = randomInput(count, 256);
+            assertEquals(expected(input[0], input[1]), MultiExp.pippenger(input[0], input[1], MODULUS));
+        }
+    }
+
+    /**
+     * Test zero exponents, exponents of different length and even moduli
+     */
+    @Test
+    public void edgeCases() {
+        final BigInteger[] bases = new BigInteger[] { BigInteger.valueOf(3), BigInteger.valueOf(5), BigInteger.valueOf(7) };
+        final BigInteger[] exponents = new BigInteger[] { BigInteger.ZERO, BigInteger.ONE, BigInteger.ONE.shiftLeft(100) };
+        assertEquals(expected(bases, exponents), MultiExp.multiExp(bases, exponents, MODULUS));
+        assertEquals(expected(bases, exponents), MultiExp.pippenger(bases, exponents, MODULUS));
+        assertEquals(expected(bases, exponents), MultiExp.strausSecure(bases, exponents, MODULUS));
+        assertEquals(BigInteger.ONE, MultiExp.strausSecure(bases, new BigInteger[] { BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO }, MODULUS));
+        assertEquals(BigInteger.valueOf(3 * 5 * 7 % 16), MultiExp.multiExp(bases,
+                new BigInteger[] { BigInteger.ONE, BigInteger.ONE, BigInteger.ONE }, BigInteger.valueOf(16)));
+    }
+
+    /**
+     * Test the choice of the window size for Pippenger's method
+     */
+    @Test
+    public void pippengerWindow() {
+        assertEquals(2, MultiExp.pippengerWindow(1));
+        assertEquals(2, MultiExp.pippengerWindow(16));
+        assertEquals(8, MultiExp.pippengerWindow(1024));
+    }
+
+    /**
+     * Creates random bases and exponents.
+     * @param count the number of bases and exponents
+     * @param bits the number of bits of the exponents
+     * @return Array with [0] = bases and [1] = exponents
+     */
+    private static BigInteger[][] randomInput(int count, int bits) {
+        final BigInteger[][] input = new BigInteger[2][count];
+        for(int i = 0; i < count; i++) {
+            input[0][i] = new BigInteger(MODULUS.bitLength(), RND);
+            input[1][i] = new BigInteger(bits, RND);
+        }
+        return input;
+    }
+
+    /**
+     * Calculates the expected product of individual modexps.
+     * @param bases the bases
+     * @param exponents the exponents
+     * @return the product of all modexps mod MODULUS
+     */
+    private static BigInteger expected(BigInteger[] bases, BigInteger[] exponents) {
+        BigInteger product = BigInteger.ONE;
+        for(int i = 0; i < bases.length; i++) {
+            product = product.multiply(bases[i].modPow(exponents[i], MODULUS)).mod(MODULUS);
+        }
+        return product;
+    }
+}
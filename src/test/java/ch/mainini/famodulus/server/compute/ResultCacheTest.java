@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit test for ResultCache
+ * @author Pascal Mainini
+ */
+public class ResultCacheTest {
+
+//////////////////////////////////////// Constants
+
+    private static final long MAX_BYTES = 1L << 20;
+    private static final int STRIPES = 4;
+
+    private static final BigInteger M = BigInteger.valueOf(11);
+    private static final BigInteger B = BigInteger.valueOf(2);
+    private static final BigInteger E = BigInteger.valueOf(3);
+    private static final BigInteger R = BigInteger.valueOf(8);
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Test if results are found by their key only
+     */
+    @Test
+    public void getAndPut() {
+        final ResultCache cache = new ResultCache(MAX_BYTES, 1, TimeUnit.HOURS, STRIPES);
+        assertTrue(cache.isEnabled());
+        assertNull(cache.get(cache.key(B, E, M)));
+
+        cache.put(cache.key(B, E, M), R);
+        assertEquals(R, cache.get(cache.key(B, E, M)));
+        assertNull(cache.get(cache.key(E, B, M)));
+        assertNull(cache.get(cache.key(B, E.negate(), M)));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    /**
+     * Test if expired results are not returned anymore
+     */
+    @Test
+    public void expire() {
+        final ResultCache cache = new ResultCache(MAX_BYTES, 0, TimeUnit.NANOSECONDS, STRIPES);
+        cache.put(cache.key(B, E, M), R);
+        assertNull(cache.get(cache.key(B, E, M)));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+    }
+
+    /**
+     * Test if the least recently used results are evicted once the cache is full
+     */
+    @Test
+    public void evict() {
+        final ResultCache cache = new ResultCache(MAX_BYTES / 256, 1, TimeUnit.HOURS, 1);
+        for(int i = 0; i < 1024; i++) {
+            cache.put(cache.key(B, BigInteger.valueOf(i), M), BigInteger.valueOf(i));
+            assertTrue(cache.getBytes() <= MAX_BYTES / 256);
+        }
+        assertTrue(cache.size() < 1024);
+        assertEquals(BigInteger.valueOf(1023), cache.get(cache.key(B, BigInteger.valueOf(1023), M)));
+        assertNull(cache.get(cache.key(B, BigInteger.ZERO, M)));
+    }
+
+    /**
+     * Test if nothing is cached if the cache is disabled
+     */
+    @Test
+    public void disabled() {
+        final ResultCache cache = new ResultCache(0, 1, TimeUnit.HOURS, STRIPES);
+        assertFalse(cache.isEnabled());
+        cache.put(cache.key(B, E, M), R);
+        assertNull(cache.get(cache.key(B, E, M)));
+        assertEquals(0, cache.size());
+    }
+}
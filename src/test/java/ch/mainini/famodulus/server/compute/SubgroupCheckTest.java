@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.compute;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit test for SubgroupCheck
+ * @author Pascal Mainini
+ */
+public class SubgroupCheckTest {
+
+//////////////////////////////////////// Constants
+
+    private static final SecureRandom RND = new SecureRandom();
+
+    private static final int[] PRIMES = new int[] { 3, 5, 7, 11, 13, 23, 31, 47, 101 };
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Test the Jacobi symbol against Euler's criterion for small primes
+     */
+    @Test
+    public void jacobi() {
+        for(int prime: PRIMES) {
+            final BigInteger p = BigInteger.valueOf(prime);
+            final BigInteger half = BigInteger.valueOf(prime / 2);
+            for(int a = 0; a < 2 * prime; a++) {
+                final BigInteger euler = BigInteger.valueOf(a).modPow(half, p);
+                final int expected = euler.signum() == 0 ? 0 : euler.equals(BigInteger.ONE) ? 1 : -1;
+                assertEquals(expected, SubgroupCheck.jacobi(BigInteger.valueOf(a), p));
+            }
+        }
+        assertEquals(0, SubgroupCheck.jacobi(BigInteger.valueOf(3), BigInteger.valueOf(15)));
+    }
+
+    /**
+     * Test membership in the quadratic residues of a safe prime
+     */
+    @Test
+    public void containsSafePrime() {
+        final BigInteger order = BigInteger.valueOf(11);
+        final BigInteger modulus = BigInteger.valueOf(23);
+        assertTrue(SubgroupCheck.isSafePrime(order, modulus));
+        assertTrue(SubgroupCheck.contains(new BigInteger[] { BigInteger.valueOf(2), BigInteger.valueOf(3), BigInteger.valueOf(18) }, order, modulus, true));
+        assertFalse(SubgroupCheck.contains(new BigInteger[] { BigInteger.valueOf(2), BigInteger.valueOf(5) }, order, modulus, true));
+        assertFalse(SubgroupCheck.contains(new BigInteger[] { BigInteger.ZERO }, order, modulus, false));
+    }
+
+    /**
+     * Test membership in a random Schnorr group which is not safe prime
+     */
+    @Test
+    public void containsSchnorrGroup() {
+        final BigInteger order = BigInteger.probablePrime(160, RND);
+        BigInteger cofactor;
+        BigInteger modulus;
+        do {
+            cofactor = new BigInteger(352, RND).setBit(351).clearBit(0);
+            modulus = cofactor.multiply(order).add(BigInteger.ONE);
+        } while(!modulus.isProbablePrime(64));
+        assertFalse(SubgroupCheck.isSafePrime(order, modulus));
+
+        final BigInteger generator = BigInteger.valueOf(2).modPow(cofactor, modulus);
+        final BigInteger[] bases = new BigInteger[] { generator, generator.modPow(new BigInteger(160, RND), modulus), BigInteger.ONE };
+        for(boolean secure: new boolean[] { true, false }) {
+            assertTrue(SubgroupCheck.contains(bases, order, modulus, secure));
+            assertFalse(SubgroupCheck.contains(new BigInteger[] { generator, modulus.subtract(BigInteger.ONE) }, order, modulus, secure));
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Test code for package ch.mainini.famodulus.server.compute.
+ */
+package ch.mainini.famodulus.server.compute;
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.group;
+
+import java.math.BigInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Unit test for GroupRegistry
+ * @author Pascal Mainini
+ */
+public class GroupRegistryTest {
+
+//////////////////////////////////////// Constants
+
+    private static final int MAX_GROUPS = 2;
+    private static final int WINDOW = 4;
+
+    private static final BigInteger M = BigInteger.valueOf(23);
+    private static final BigInteger G = BigInteger.valueOf(2);
+    private static final BigInteger O = BigInteger.valueOf(11);
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Test if registering the same parameters yields the same group and id
+     */
+    @Test
+    public void register() {
+        final GroupRegistry registry = new GroupRegistry(MAX_GROUPS, WINDOW);
+        final Group group = registry.register(M, G, O);
+        assertEquals(16, group.getId().length());
+        assertSame(group, registry.register(M, G, O));
+        assertSame(group, registry.get(group.getId()));
+        assertEquals(group.getId(), new GroupRegistry(MAX_GROUPS, WINDOW).register(M, G, O).getId());
+        assertNotEquals(group.getId(), registry.register(M, G, null).getId());
+        assertEquals(2, registry.size());
+
+        assertEquals(G.modPow(BigInteger.TEN, M), group.getTable().modPow(BigInteger.TEN));
+    }
+
+    /**
+     * Test if groups are removed and the maximum number of groups is enforced
+     */
+    @Test
+    public void remove() {
+        final GroupRegistry registry = new GroupRegistry(MAX_GROUPS, WINDOW);
+        final Group group = registry.register(M, G, O);
+        registry.register(M, BigInteger.valueOf(3), O);
+        try {
+            registry.register(M, BigInteger.valueOf(4), O);
+            fail("Registering more than the maximum number of groups must fail!");
+        } catch(IllegalStateException e) {
+            // expected
+        }
+
+        assertTrue(registry.remove(group.getId()));
+        assertFalse(registry.remove(group.getId()));
+        assertNull(registry.get(group.getId()));
+        registry.register(M, BigInteger.valueOf(4), O);
+    }
+
+    /**
+     * Test rejection of an even modulus
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void evenModulus() {
+        new GroupRegistry(MAX_GROUPS, WINDOW).register(BigInteger.TEN, BigInteger.valueOf(3), null);
+    }
+
+    /**
+     * Test rejection of a generator outside of [1, modulus)
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidGenerator() {
+        new GroupRegistry(MAX_GROUPS, WINDOW).register(M, M, null);
+    }
+
+    /**
+     * Test rejection of an order which is not the order of the generator
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidOrder() {
+        new GroupRegistry(MAX_GROUPS, WINDOW).register(M, BigInteger.valueOf(5), O);
+    }
+}
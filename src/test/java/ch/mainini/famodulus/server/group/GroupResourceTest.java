@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.group;
+
+import ch.mainini.famodulus.server.Server;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit test for GroupResource and modexps referencing groups
+ * @author Pascal Mainini
+ */
+public class GroupResourceTest {
+
+//////////////////////////////////////// Constants
+
+    private static final String API_PATH = "groups";
+
+    private static final SecureRandom RND = new SecureRandom();
+
+    private static final BigInteger P_1024 = BigInteger.probablePrime(1024, RND);
+
+    private static final Pattern ID = Pattern.compile("\"id\":\"([0-9a-f]+)\"");
+
+    private static final int HTTP_CREATED = 201;
+    private static final int HTTP_NO_CONTENT = 204;
+    private static final int HTTP_BAD_REQUEST = 400;
+    private static final int HTTP_NOT_FOUND = 404;
+
+//////////////////////////////////////// Fields
+
+    private static HttpServer server;
+    private static WebTarget target;
+
+
+//////////////////////////////////////// Methods
+
+///////////////////// Initialization
+
+    /**
+     * Pre-test setup
+     * @throws Exception in case of trouble
+     */
+    @BeforeClass
+    public static void setUp() throws Exception {
+        server = Server.startServer();
+
+        final Client c = ClientBuilder.newClient();
+        target = c.target(Server.DEFAULT_BASE_URI + Server.API_PATH);
+    }
+
+    /**
+     * After-test cleanup
+     * @throws Exception in case of trouble
+     */
+    @AfterClass
+    public static void tearDown() throws Exception {
+        server.shutdownNow();
+    }
+
+///////////////////// Tests
+
+    /**
+     * Test registering a group, using it for modexps, retrieving and removing it
+     */
+    @Test
+    public void lifecycle() {
+        final Response created = target.path(API_PATH).request().post(Entity.entity(
+                String.format("{\"m\":\"%s\",\"g\":\"2\"}", P_1024.toString(16)), MediaType.APPLICATION_JSON));
+        assertEquals(HTTP_CREATED, created.getStatus());
+        final String body = created.readEntity(String.class);
+        final Matcher matcher = ID.matcher(body);
+        assertTrue(matcher.find());
+        final String id = matcher.group(1);
+        assertTrue(created.getLocation().getPath().endsWith(API_PATH + "/" + id));
+
+        final BigInteger e1 = new BigInteger(1024, RND);
+        final BigInteger e2 = new BigInteger(1024, RND);
+        final String response = target.path("modexp").request().post(Entity.entity(String.format(
+                "{\"group\":\"%s\",\"modexps\":[{\"e\":\"%s\"},{\"b\":\"3\",\"e\":\"%s\"}]}", id, e1.toString(16), e2.toString(16)),
+                MediaType.APPLICATION_JSON), String.class);
+        assertEquals(String.format("{\"modexps\":[{\"r\":\"%s\"},{\"r\":\"%s\"}]}",
+                BigInteger.valueOf(2).modPow(e1, P_1024).toString(16), BigInteger.valueOf(3).modPow(e2, P_1024).toString(16)), response);
+
+        assertEquals(body, target.path(API_PATH).path(id).request().get(String.class));
+        assertEquals(HTTP_NO_CONTENT, target.path(API_PATH).path(id).request().delete().getStatus());
+        assertEquals(HTTP_NOT_FOUND, target.path(API_PATH).path(id).request().get().getStatus());
+        assertEquals(HTTP_NOT_FOUND, target.path(API_PATH).path(id).request().delete().getStatus());
+    }
+
+    /**
+     * Test referencing a group which is not registered
+     */
+    @Test
+    public void unknownGroup() {
+        assertEquals(HTTP_BAD_REQUEST, target.path("modexp").request().post(Entity.entity(
+                "{\"modexps\":[{\"group\":\"0123456789abcdef\",\"e\":\"3\"}]}", MediaType.APPLICATION_JSON)).getStatus());
+    }
+
+    /**
+     * Test registering invalid groups
+     */
+    @Test
+    public void registerInvalid() {
+        assertEquals(HTTP_BAD_REQUEST, target.path(API_PATH).request().post(Entity.entity(
+                "{\"m\":\"a\",\"g\":\"3\"}", MediaType.APPLICATION_JSON)).getStatus());
+        assertEquals(HTTP_BAD_REQUEST, target.path(API_PATH).request().post(Entity.entity(
+                "{\"m\":\"17\"}", MediaType.APPLICATION_JSON)).getStatus());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.metrics;
+
+import ch.mainini.famodulus.server.Server;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit test for MetricsResource and MetricsInterceptor
+ * @author Pascal Mainini
+ */
+public class MetricsResourceTest {
+
+//////////////////////////////////////// Constants
+
+    private static final String API_PATH = "metrics";
+
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_METHOD_NOT_ALLOWED = 405;
+
+//////////////////////////////////////// Fields
+
+    private static HttpServer server;
+    private static WebTarget target;
+
+
+//////////////////////////////////////// Methods
+
+///////////////////// Initialization
+
+    /**
+     * Pre-test setup
+     * @throws Exception in case of trouble
+     */
+    @BeforeClass
+    public static void setUp() throws Exception {
+        server = Server.startServer();
+
+        final Client c = ClientBuilder.newClient();
+        target = c.target(Server.DEFAULT_BASE_URI + Server.API_PATH);
+    }
+
+    /**
+     * After-test cleanup
+     * @throws Exception in case of trouble
+     */
+    @AfterClass
+    public static void tearDown() throws Exception {
+        server.shutdownNow();
+    }
+
+///////////////////// Tests
+
+    /**
+     * Test performing a simple HTTP POST and checks for the appropriate status code.
+     */
+    @Test
+    public void methodPost() {
+        assertEquals(HTTP_METHOD_NOT_ALLOWED, target.path(API_PATH).request().post(Entity.text("")).getStatus());
+    }
+
+    /**
+     * Test if a modexp request is recorded and exposed
+     */
+    @Test
+    public void recordModExp() {
+        final Metrics metrics = Metrics.getDefault();
+        final long requests = metrics.getRequests();
+        final long modexps = metrics.getModExps(1024);
+        final long computations = metrics.getCompute().getCount();
+
+        target.path("modexp").request().post(Entity.entity("{\"modexps\":[{\"m\":\"b\",\"b\":\"2\",\"e\":\"3\"}]}",
+                MediaType.APPLICATION_JSON), String.class);
+        assertEquals(requests + 1, metrics.getRequests());
+        assertEquals(modexps + 1, metrics.getModExps(1024));
+        assertEquals(computations + 1, metrics.getCompute().getCount());
+
+        final Response response = target.path(API_PATH).request().get();
+        assertEquals(HTTP_OK, response.getStatus());
+        assertTrue(response.getMediaType().toString().startsWith(MediaType.TEXT_PLAIN));
+        final String output = response.readEntity(String.class);
+        assertTrue(output.contains("famodulus_requests_total " + metrics.getRequests() + "\n"));
+        assertTrue(output.contains("famodulus_request_phase_seconds_count{phase=\"parse\"}"));
+
+        // the metrics resource itself is not metered
+        assertEquals(requests + 1, metrics.getRequests());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit test for Metrics and Histogram
+ * @author Pascal Mainini
+ */
+public class MetricsTest {
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Test the logarithmic buckets of the histogram
+     */
+    @Test
+    public void histogramBuckets() {
+        assertEquals(0, Histogram.bucket(0));
+        assertEquals(1, Histogram.bucket(1));
+        assertEquals(2, Histogram.bucket(2));
+        assertEquals(2, Histogram.bucket(3));
+        assertEquals(11, Histogram.bucket(1024));
+        assertEquals(Histogram.BUCKETS - 1, Histogram.bucket(Long.MAX_VALUE));
+    }
+
+    /**
+     * Test recording durations
+     */
+    @Test
+    public void histogramRecord() {
+        final Histogram histogram = new Histogram();
+        histogram.record(100);
+        histogram.record(1000);
+        histogram.record(-5);
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(1100, histogram.getSum());
+        assertEquals(1, histogram.getCumulativeCount(0));
+        assertEquals(2, histogram.getCumulativeCount(7));
+        assertEquals(3, histogram.getCumulativeCount(10));
+    }
+
+    /**
+     * Test the buckets of the modulus sizes
+     */
+    @Test
+    public void modulusBuckets() {
+        assertEquals(0, Metrics.modulusBucket(512));
+        assertEquals(0, Metrics.modulusBucket(1024));
+        assertEquals(1, Metrics.modulusBucket(1025));
+        assertEquals(2, Metrics.modulusBucket(3072));
+        assertEquals(Metrics.MODULUS_BITS.length, Metrics.modulusBucket(16384));
+    }
+
+    /**
+     * Test the Prometheus output
+     */
+    @Test
+    public void prometheus() {
+        final Metrics metrics = new Metrics();
+        metrics.recordRequest();
+        metrics.recordBytesIn(42);
+        metrics.recordCompute(2000000000L);
+        metrics.recordModExp(2048, 1000);
+        metrics.recordModExp(2000, 1000);
+
+        final String output = metrics.writePrometheus(new StringBuilder()).toString();
+        assertTrue(output.contains("# TYPE famodulus_requests_total counter\nfamodulus_requests_total 1\n"));
+        assertTrue(output.contains("famodulus_received_bytes_total 42\n"));
+        assertTrue(output.contains("famodulus_modexps_total{bits=\"2048\"} 2\n"));
+        assertTrue(output.contains("famodulus_modexps_total{bits=\"+Inf\"} 0\n"));
+        assertTrue(output.contains("famodulus_request_phase_seconds_bucket{phase=\"compute\",le=\"1.073741824\"} 0\n"));
+        assertTrue(output.contains("famodulus_request_phase_seconds_bucket{phase=\"compute\",le=\"2.147483648\"} 1\n"));
+        assertTrue(output.contains("famodulus_request_phase_seconds_sum{phase=\"compute\"} 2.0\n"));
+        assertTrue(output.contains("famodulus_modexp_seconds_count{bits=\"2048\"} 2\n"));
+    }
+}
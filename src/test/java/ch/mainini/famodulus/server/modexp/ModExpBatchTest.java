@@ -0,0 +1,261 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.modexp;
+
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.P_1024;
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.P_2048;
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.P_3072;
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.randomModexp;
+import java.math.BigInteger;
+import javax.ws.rs.BadRequestException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit test for ModExpBatch
+ * @author Pascal Mainini
+ */
+public class ModExpBatchTest {
+
+//////////////////////////////////////// Constants
+
+    private static final BigInteger[] PRIMES = new BigInteger[] { P_1024, P_2048, P_3072 };
+
+    private static final int BATCH_SIZE = 64;
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Test if default values are applied to modexps missing them
+     */
+    @Test
+    public void resolveDefaults() {
+        final ModExpQueryBean query = new ModExpQueryBean(new ModExpBean[] {
+            new ModExpBean(null, BigInteger.valueOf(3), null),
+            new ModExpBean(BigInteger.valueOf(11), null, BigInteger.valueOf(5)) });
+        query.setModulus(BigInteger.valueOf(23));
+        query.setBase(BigInteger.valueOf(9));
+        query.setExponent(BigInteger.valueOf(2));
+
+        final ModExpBatch batch = new ModExpBatch(query);
+        assertEquals(2, batch.size());
+        assertEquals(BigInteger.valueOf(23), batch.getModulus(0));
+        assertEquals(BigInteger.valueOf(3), batch.getBase(0));
+        assertEquals(BigInteger.valueOf(2), batch.getExponent(0));
+        assertEquals(BigInteger.valueOf(11), batch.getModulus(1));
+        assertEquals(BigInteger.valueOf(9), batch.getBase(1));
+        assertEquals(BigInteger.valueOf(5), batch.getExponent(1));
+    }
+
+    /**
+     * Test resolving the secure option from modexp and query
+     */
+    @Test
+    public void resolveSecure() {
+        final ModExpBean insecure = new ModExpBean(P_1024, BigInteger.ONE, BigInteger.ONE);
+        insecure.setSecure(false);
+        final ModExpBean secure = new ModExpBean(P_1024, BigInteger.ONE, BigInteger.ONE);
+        secure.setSecure(true);
+        final ModExpBean unspecified = new ModExpBean(P_1024, BigInteger.ONE, BigInteger.ONE);
+        final ModExpBean[] modexps = new ModExpBean[] { insecure, secure, unspecified };
+
+        final ModExpQueryBean query = new ModExpQueryBean(modexps);
+        ModExpBatch batch = new ModExpBatch(query);
+        assertFalse(batch.isSecure(0));
+        assertTrue(batch.isSecure(1));
+        assertTrue(batch.isSecure(2));
+
+        query.setSecure(false);
+        batch = new ModExpBatch(query);
+        assertFalse(batch.isSecure(0));
+        assertTrue(batch.isSecure(1));
+        assertFalse(batch.isSecure(2));
+    }
+
+    /**
+     * Test resolving the cache option of modexps and query, secure modexps are not cached by default
+     */
+    @Test
+    public void resolveCache() {
+        final ModExpBean uncached = new ModExpBean(P_1024, BigInteger.ONE, BigInteger.ONE);
+        uncached.setCache(false);
+        final ModExpBean cached = new ModExpBean(P_1024, BigInteger.ONE, BigInteger.ONE);
+        cached.setCache(true);
+        final ModExpBean unspecified = new ModExpBean(P_1024, BigInteger.ONE, BigInteger.ONE);
+        final ModExpBean insecure = new ModExpBean(P_1024, BigInteger.ONE, BigInteger.ONE);
+        insecure.setSecure(false);
+        final ModExpBean[] modexps = new ModExpBean[] { uncached, cached, unspecified, insecure };
+
+        final ModExpQueryBean query = new ModExpQueryBean(modexps);
+        ModExpBatch batch = new ModExpBatch(query);
+        assertFalse(batch.isCached(0));
+        assertTrue(batch.isCached(1));
+        assertFalse(batch.isCached(2));
+        assertTrue(batch.isCached(3));
+
+        query.setCache(false);
+        batch = new ModExpBatch(query);
+        assertFalse(batch.isCached(0));
+        assertTrue(batch.isCached(1));
+        assertFalse(batch.isCached(2));
+        assertFalse(batch.isCached(3));
+
+        query.setCache(true);
+        batch = new ModExpBatch(query);
+        assertFalse(batch.isCached(0));
+        assertTrue(batch.isCached(1));
+        assertTrue(batch.isCached(2));
+        assertTrue(batch.isCached(3));
+    }
+
+    /**
+     * Test resolving the group order of modexps and query and the reduction of exponents
+     */
+    @Test
+    public void resolveOrder() {
+        final ModExpBean own = new ModExpBean(BigInteger.valueOf(31), BigInteger.valueOf(2), BigInteger.valueOf(-1));
+        own.setOrder(BigInteger.valueOf(5));
+        final ModExpBean[] modexps = new ModExpBean[] { own,
+            new ModExpBean(BigInteger.valueOf(23), BigInteger.valueOf(2), BigInteger.valueOf(25)) };
+
+        final ModExpQueryBean query = new ModExpQueryBean(modexps);
+        query.setOrder(BigInteger.valueOf(11));
+        final ModExpBatch batch = new ModExpBatch(query);
+        assertEquals(BigInteger.valueOf(5), batch.getOrder(0));
+        assertEquals(BigInteger.valueOf(4), batch.getExponent(0));
+        assertEquals(BigInteger.valueOf(11), batch.getOrder(1));
+        assertEquals(BigInteger.valueOf(3), batch.getExponent(1));
+
+        final BigInteger[] results = batch.evaluate();
+        assertEquals(BigInteger.valueOf(2).modInverse(BigInteger.valueOf(31)), results[0]);
+        assertEquals(BigInteger.valueOf(8), results[1]);
+    }
+
+    /**
+     * Test rejection of modexps missing a value without default
+     */
+    @Test(expected = BadRequestException.class)
+    public void resolveMissing() {
+        new ModExpBatch(new ModExpQueryBean(new ModExpBean[] { new ModExpBean(BigInteger.valueOf(23), BigInteger.valueOf(2), null) }));
+    }
+
+    /**
+     * Test rejection of non-positive group orders
+     */
+    @Test(expected = BadRequestException.class)
+    public void resolveOrderInvalid() {
+        final ModExpQueryBean query = new ModExpQueryBean(new ModExpBean[] { new ModExpBean(BigInteger.valueOf(23), BigInteger.valueOf(2), BigInteger.ONE) });
+        query.setOrder(BigInteger.ZERO);
+        new ModExpBatch(query);
+    }
+
+    /**
+     * Test resolving the factors of modexps and query
+     */
+    @Test
+    public void resolveCrt() {
+        final ModExpBean own = new ModExpBean(BigInteger.valueOf(143), BigInteger.valueOf(2), BigInteger.valueOf(7));
+        own.setP(BigInteger.valueOf(13));
+        own.setQ(BigInteger.valueOf(11));
+        final ModExpBean[] modexps = new ModExpBean[] { own,
+            new ModExpBean(BigInteger.valueOf(221), BigInteger.valueOf(2), BigInteger.valueOf(7)),
+            new ModExpBean(BigInteger.valueOf(11), BigInteger.valueOf(2), BigInteger.valueOf(7)) };
+
+        final ModExpQueryBean query = new ModExpQueryBean(modexps);
+        query.setP(BigInteger.valueOf(13));
+        query.setQ(BigInteger.valueOf(17));
+        final ModExpBatch batch = new ModExpBatch(query);
+        assertEquals(BigInteger.valueOf(143), batch.getCrt(0).getModulus());
+        assertEquals(BigInteger.valueOf(221), batch.getCrt(1).getModulus());
+        assertNull(batch.getCrt(2));
+
+        final BigInteger[] results = batch.evaluate();
+        assertEquals(BigInteger.valueOf(128), results[0]);
+        assertEquals(BigInteger.valueOf(128), results[1]);
+        assertEquals(BigInteger.valueOf(7), results[2]);
+
+        // negative exponents are not calculated using the factors
+        query.setModexps(new ModExpBean[] { new ModExpBean(BigInteger.valueOf(221), BigInteger.valueOf(2), BigInteger.valueOf(-1)) });
+        assertNull(new ModExpBatch(query).getCrt(0));
+    }
+
+    /**
+     * Test if factors not matching the modulus are rejected
+     */
+    @Test(expected = BadRequestException.class)
+    public void resolveCrtMismatch() {
+        final ModExpBean modexp = new ModExpBean(BigInteger.valueOf(143), BigInteger.valueOf(2), BigInteger.valueOf(7));
+        modexp.setP(BigInteger.valueOf(13));
+        modexp.setQ(BigInteger.valueOf(17));
+        new ModExpBatch(new ModExpQueryBean(new ModExpBean[] { modexp }));
+    }
+
+    /**
+     * Test if insecure modexps are calculated correctly
+     */
+    @Test
+    public void evaluateInsecure() {
+        final ModExpBean[] modexps = new ModExpBean[PRIMES.length];
+        final BigInteger[] expected = new BigInteger[PRIMES.length];
+        for(int i = 0; i < PRIMES.length; i++) {
+            final BigInteger[] modexp = randomModexp(PRIMES[i], PRIMES[i].bitLength());
+            modexps[i] = new ModExpBean(modexp[0], modexp[1], modexp[2]);
+            expected[i] = modexp[3];
+        }
+        final ModExpQueryBean query = new ModExpQueryBean(modexps);
+        query.setSecure(false);
+
+        final BigInteger[] results = new ModExpBatch(query).evaluate();
+        for(int i = 0; i < PRIMES.length; i++) {
+            assertEquals(expected[i], results[i]);
+        }
+    }
+
+    /**
+     * Test the cost estimation and accumulation
+     */
+    @Test
+    public void cost() {
+        assertEquals(3072L * 3072L * 3072L, ModExpBatch.estimateCost(P_3072, P_3072));
+        assertEquals(1024L * 1024L, ModExpBatch.estimateCost(P_1024, BigInteger.ZERO));
+
+        final ModExpBatch batch = new ModExpBatch(new ModExpQueryBean(), new ModExpBean[] {
+            new ModExpBean(P_1024, BigInteger.ONE, P_1024), new ModExpBean(P_2048, BigInteger.ONE, P_2048) });
+        assertEquals(1024L * 1024L * 1024L + 2048L * 2048L * 2048L, batch.getCost());
+    }
+
+    /**
+     * Test if a large batch of modexps with mixed sizes is calculated
+     * correctly and in order.
+     */
+    @Test
+    public void evaluateMixed() {
+        final ModExpBean[] modexps = new ModExpBean[BATCH_SIZE];
+        final BigInteger[] expected = new BigInteger[BATCH_SIZE];
+        for(int i = 0; i < BATCH_SIZE; i++) {
+            final BigInteger prime = PRIMES[i % PRIMES.length];
+            final BigInteger[] modexp = randomModexp(prime, prime.bitLength());
+            modexps[i] = new ModExpBean(modexp[0], modexp[1], modexp[2]);
+            expected[i] = modexp[3];
+        }
+
+        final BigInteger[] results = new ModExpBatch(new ModExpQueryBean(modexps)).evaluate();
+        for(int i = 0; i < BATCH_SIZE; i++) {
+            assertEquals(expected[i], results[i]);
+        }
+    }
+
+    /**
+     * Test evaluating an empty batch
+     */
+    @Test
+    public void evaluateEmpty() {
+        assertEquals(0, new ModExpBatch(new ModExpQueryBean(new ModExpBean[0])).evaluate().length);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.modexp;
+
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.P_1024;
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.P_2048;
+import ch.mainini.famodulus.server.compute.ComputePool;
+import ch.mainini.famodulus.server.compute.ComputeQueue;
+import ch.mainini.famodulus.server.metrics.Metrics;
+import java.math.BigInteger;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit test for ModExpCoalescer
+ * @author Pascal Mainini
+ */
+public class ModExpCoalescerTest {
+
+//////////////////////////////////////// Constants
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Test if batches sharing a modulus are calculated as one micro-batch once the delay has passed,
+     * recording the time spent only once
+     * @throws InterruptedException in case of trouble
+     */
+    @Test
+    public void coalesceDelay() throws InterruptedException {
+        final long computeCount = Metrics.getDefault().getCompute().getCount();
+        final ModExpCoalescer coalescer = new ModExpCoalescer(20, TimeUnit.MILLISECONDS, 64, queue());
+        final Result[] results = new Result[3];
+        final CountDownLatch latch = new CountDownLatch(results.length);
+        for(int i = 0; i < results.length; i++) {
+            results[i] = new Result(latch);
+            assertTrue(coalescer.submit(batch(P_1024, i + 1, BigInteger.valueOf(i + 2)), results[i]));
+        }
+
+        assertTrue(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        for(int i = 0; i < results.length; i++) {
+            assertNull(results[i].failure);
+            assertEquals(i + 1, results[i].results.length);
+            for(BigInteger result: results[i].results) {
+                assertEquals(BigInteger.valueOf(i + 2).modPow(BigInteger.TEN, P_1024), result);
+            }
+        }
+        assertEquals(3, coalescer.getCoalescedBatches());
+        assertEquals(1, coalescer.getMicroBatches());
+        assertEquals(computeCount + 1, Metrics.getDefault().getCompute().getCount());
+    }
+
+    /**
+     * Test if a micro-batch is submitted at once when it reaches the maximum size
+     * @throws InterruptedException in case of trouble
+     */
+    @Test
+    public void coalesceMaxSize() throws InterruptedException {
+        final ModExpCoalescer coalescer = new ModExpCoalescer(1, TimeUnit.HOURS, 4, queue());
+        final CountDownLatch latch = new CountDownLatch(2);
+        final Result first = new Result(latch);
+        final Result second = new Result(latch);
+        assertTrue(coalescer.submit(batch(P_1024, 2, BigInteger.valueOf(3)), first));
+        assertTrue(coalescer.submit(batch(P_1024, 2, BigInteger.valueOf(5)), second));
+
+        assertTrue(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(BigInteger.valueOf(3).modPow(BigInteger.TEN, P_1024), first.results[1]);
+        assertEquals(BigInteger.valueOf(5).modPow(BigInteger.TEN, P_1024), second.results[0]);
+        assertEquals(1, coalescer.getMicroBatches());
+    }
+
+    /**
+     * Test which batches are not coalesced
+     */
+    @Test
+    public void notCoalesced() {
+        final Result result = new Result(new CountDownLatch(1));
+        final ModExpCoalescer disabled = new ModExpCoalescer(0, TimeUnit.MILLISECONDS, 64, queue());
+        assertFalse(disabled.isEnabled());
+        assertFalse(disabled.submit(batch(P_1024, 1, BigInteger.ONE), result));
+
+        final ModExpCoalescer coalescer = new ModExpCoalescer(1, TimeUnit.HOURS, 4, queue());
+        assertFalse(coalescer.submit(batch(P_1024, 4, BigInteger.ONE), result));
+
+        final ModExpQueryBean mixed = new ModExpQueryBean(new ModExpBean[] {
+            new ModExpBean(P_1024, BigInteger.ONE, BigInteger.ONE), new ModExpBean(P_2048, BigInteger.ONE, BigInteger.ONE) });
+        assertFalse(coalescer.submit(new ModExpBatch(mixed), result));
+        assertEquals(0, coalescer.getCoalescedBatches());
+    }
+
+    /**
+     * Test if a failing batch does not fail the other batches of its micro-batch
+     * @throws InterruptedException in case of trouble
+     */
+    @Test
+    public void failureIsolated() throws InterruptedException {
+        final ModExpCoalescer coalescer = new ModExpCoalescer(20, TimeUnit.MILLISECONDS, 64, queue());
+        final CountDownLatch latch = new CountDownLatch(2);
+        final Result valid = new Result(latch);
+        final Result invalid = new Result(latch);
+
+        final ModExpBean noInverse = new ModExpBean(P_1024, BigInteger.ZERO, BigInteger.ONE.negate());
+        noInverse.setSecure(false);
+        assertTrue(coalescer.submit(batch(P_1024, 1, BigInteger.valueOf(3)), valid));
+        assertTrue(coalescer.submit(new ModExpBatch(new ModExpQueryBean(new ModExpBean[] { noInverse })), invalid));
+
+        assertTrue(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertNull(valid.failure);
+        assertEquals(BigInteger.valueOf(3).modPow(BigInteger.TEN, P_1024), valid.results[0]);
+        assertNotNull(invalid.failure);
+    }
+
+    /**
+     * Test if errors, not only exceptions, fail the callbacks instead of leaving them pending
+     * @throws InterruptedException in case of trouble
+     */
+    @Test
+    public void errorFails() throws InterruptedException {
+        final ModExpCoalescer coalescer = new ModExpCoalescer(20, TimeUnit.MILLISECONDS, 64, queue());
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Result broken = new Result(latch);
+        assertTrue(coalescer.submit(new ModExpBatch(new ModExpQueryBean(new ModExpBean[] {
+                new ModExpBean(P_1024, BigInteger.ONE, BigInteger.ONE) })) {
+            @Override
+            public BigInteger[] evaluate() {
+                throw new AssertionError("broken");
+            }
+        }, broken));
+        assertTrue(latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(broken.failure instanceof AssertionError);
+
+        final CountDownLatch both = new CountDownLatch(2);
+        final Result throwing = new Result(both) {
+            @Override
+            public void completed(BigInteger[] results, long nanos) {
+                throw new AssertionError("broken");
+            }
+        };
+        final Result valid = new Result(both);
+        assertTrue(coalescer.submit(batch(P_1024, 1, BigInteger.valueOf(3)), throwing));
+        assertTrue(coalescer.submit(batch(P_1024, 1, BigInteger.valueOf(5)), valid));
+        assertTrue(both.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(throwing.failure instanceof AssertionError);
+        assertEquals(BigInteger.valueOf(5).modPow(BigInteger.TEN, P_1024), valid.results[0]);
+    }
+
+    /**
+     * @return a queue without limit in front of the default pool
+     */
+    private static ComputeQueue queue() {
+        return new ComputeQueue(ComputePool.getPool(), 0);
+    }
+
+    /**
+     * @param modulus the modulus of all modexps
+     * @param size the number of modexps
+     * @param base the base of all modexps
+     * @return a batch of identical modexps with exponent 10
+     */
+    private static ModExpBatch batch(BigInteger modulus, int size, BigInteger base) {
+        final ModExpBean[] modexps = new ModExpBean[size];
+        for(int i = 0; i < size; i++) {
+            modexps[i] = new ModExpBean(modulus, base, BigInteger.TEN);
+        }
+        return new ModExpBatch(new ModExpQueryBean(modexps));
+    }
+
+///////////////////// Inner classes
+
+    /**
+     * Callback recording the results or failure of a batch.
+     */
+    private static class Result implements ModExpCoalescer.Callback {
+
+        private final CountDownLatch latch;
+        private volatile BigInteger[] results;
+        private volatile Throwable failure;
+
+        /**
+         * @param latch the latch to count down on completion
+         */
+        Result(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void completed(BigInteger[] results, long nanos) {
+            this.results = results;
+            latch.countDown();
+        }
+
+        @Override
+        public void failed(Throwable t) {
+            this.failure = t;
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.modexp;
+
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.P_1024;
+import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.P_2048;
+import ch.mainini.famodulus.server.compute.GmpEngine;
+import ch.mainini.famodulus.server.compute.ModExpEngines;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Test;
+
+/**
+ * Unit test for ModExpPlan
+ * @author Pascal Mainini
+ */
+public class ModExpPlanTest {
+
+//////////////////////////////////////// Constants
+
+    private static final SecureRandom RND = new SecureRandom();
+
+    private static final int GROUP_SIZE = 8;
+
+    private static final int MIN_GROUP = 4;
+
+    private static final int JAVA_TABLE_COST = 1;
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Test if identical modexps are only calculated once
+     */
+    @Test
+    public void deduplicate() {
+        final BigInteger b = new BigInteger(1024, RND);
+        final BigInteger e = new BigInteger(1024, RND);
+        final ModExpBatch batch = new ModExpBatch(new ModExpQueryBean(new ModExpBean[] {
+            new ModExpBean(P_1024, b, e), new ModExpBean(P_2048, b, e), new ModExpBean(P_1024, b, e) }));
+
+        final ModExpPlan plan = new ModExpPlan(batch, new boolean[batch.size()]);
+        assertEquals(2, plan.getSteps().size());
+        assertEquals(0, plan.getSource(0));
+        assertEquals(1, plan.getSource(1));
+        assertEquals(0, plan.getSource(2));
+
+        final BigInteger[] results = batch.evaluate();
+        assertEquals(b.modPow(e, P_1024), results[0]);
+        assertEquals(b.modPow(e, P_2048), results[1]);
+        assertEquals(b.modPow(e, P_1024), results[2]);
+    }
+
+    /**
+     * Test if modexps sharing base and modulus are calculated using a table
+     */
+    @Test
+    public void sharedBase() {
+        final BigInteger b = new BigInteger(1024, RND);
+        final ModExpBean[] modexps = new ModExpBean[GROUP_SIZE + 1];
+        for(int i = 0; i < GROUP_SIZE; i++) {
+            modexps[i] = new ModExpBean(P_1024, b, new BigInteger(1024, RND));
+        }
+        modexps[GROUP_SIZE] = new ModExpBean(P_2048, b, new BigInteger(1024, RND));
+        final ModExpBatch batch = new ModExpBatch(new ModExpQueryBean(modexps));
+
+        final ModExpPlan plan = new ModExpPlan(batch, new boolean[batch.size()], MIN_GROUP, JAVA_TABLE_COST);
+        assertEquals(1, plan.getTableCount());
+        assertEquals(GROUP_SIZE + 1, plan.getSteps().size());
+        plan.buildTables();
+        for(ModExpPlan.Step step: plan.getSteps()) {
+            if(step.getIndices()[0] < GROUP_SIZE) {
+                assertNotNull(step.getTable());
+            } else {
+                assertNull(step.getTable());
+            }
+        }
+
+        assertResults(modexps, batch.evaluate());
+    }
+
+    /**
+     * Test if modexps sharing exponent and modulus are calculated together
+     */
+    @Test
+    public void sharedExponent() {
+        final BigInteger e = new BigInteger(1024, RND);
+        final ModExpBean[] modexps = new ModExpBean[GROUP_SIZE];
+        for(int i = 0; i < GROUP_SIZE; i++) {
+            modexps[i] = new ModExpBean(P_1024, new BigInteger(1024, RND), e);
+        }
+        final ModExpBatch batch = new ModExpBatch(new ModExpQueryBean(modexps));
+
+        final ModExpPlan plan = new ModExpPlan(batch, new boolean[batch.size()]);
+        assertEquals(0, plan.getTableCount());
+        assertEquals(1, plan.getSteps().size());
+        assertEquals(GROUP_SIZE, plan.getSteps().get(0).getIndices().length);
+
+        assertResults(modexps, batch.evaluate());
+    }
+
+    /**
+     * Test if every modexp gets its own step if grouping is disabled
+     */
+    @Test
+    public void groupingDisabled() {
+        final BigInteger b = new BigInteger(1024, RND);
+        final BigInteger e = new BigInteger(1024, RND);
+        final ModExpBean[] modexps = new ModExpBean[2 * GROUP_SIZE];
+        for(int i = 0; i < GROUP_SIZE; i++) {
+            modexps[i] = new ModExpBean(P_1024, b, new BigInteger(1024, RND));
+            modexps[GROUP_SIZE + i] = new ModExpBean(P_1024, new BigInteger(1024, RND), e);
+        }
+
+        final ModExpPlan plan = new ModExpPlan(new ModExpBatch(new ModExpQueryBean(modexps)), new boolean[modexps.length], 0, 0);
+        assertEquals(0, plan.getTableCount());
+        assertEquals(modexps.length, plan.getSteps().size());
+        for(int i = 0; i < modexps.length; i++) {
+            assertEquals(1, plan.getSteps().get(i).getIndices().length);
+            assertEquals(i, plan.getSteps().get(i).getIndices()[0]);
+            assertNull(plan.getSteps().get(i).getTable());
+        }
+    }
+
+    /**
+     * Test if modexps with known results are left out
+     */
+    @Test
+    public void known() {
+        final BigInteger e = new BigInteger(1024, RND);
+        final ModExpBean[] modexps = new ModExpBean[GROUP_SIZE];
+        for(int i = 0; i < GROUP_SIZE; i++) {
+            modexps[i] = new ModExpBean(P_1024, new BigInteger(1024, RND), e);
+        }
+        final boolean[] known = new boolean[GROUP_SIZE];
+        Arrays.fill(known, 1, GROUP_SIZE, true);
+
+        final ModExpPlan plan = new ModExpPlan(new ModExpBatch(new ModExpQueryBean(modexps)), known);
+        assertEquals(1, plan.getSteps().size());
+        assertEquals(0, plan.getSteps().get(0).getIndices()[0]);
+    }
+
+    /**
+     * Test if a table is only chosen if it saves work, using the pure Java engine
+     */
+    @Test
+    public void chooseWindow() {
+        final BigInteger b = new BigInteger(1024, RND);
+        final ModExpBean[] modexps = new ModExpBean[256];
+        for(int i = 0; i < modexps.length; i++) {
+            modexps[i] = new ModExpBean(P_1024, b, new BigInteger(1024, RND).setBit(1023));
+        }
+        final ModExpBatch batch = new ModExpBatch(new ModExpQueryBean(modexps));
+
+        assertEquals(0, ModExpPlan.chooseWindow(batch, Arrays.asList(0), JAVA_TABLE_COST));
+        assertEquals(2, ModExpPlan.chooseWindow(batch, Arrays.asList(0, 1, 2, 3), JAVA_TABLE_COST));
+        final Integer[] all = new Integer[modexps.length];
+        for(int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        assertEquals(6, ModExpPlan.chooseWindow(batch, Arrays.asList(all), JAVA_TABLE_COST));
+    }
+
+    /**
+     * Test if no table is chosen for small groups if the engine is gmplib
+     */
+    @Test
+    public void chooseWindowGmp() {
+        final BigInteger b = new BigInteger(2048, RND);
+        final ModExpBean[] modexps = new ModExpBean[GROUP_SIZE];
+        for(int i = 0; i < modexps.length; i++) {
+            modexps[i] = new ModExpBean(P_2048, b, new BigInteger(2048, RND).setBit(2047));
+        }
+        final ModExpBatch batch = new ModExpBatch(new ModExpQueryBean(modexps));
+        final int gmpCost = ModExpEngines.NATIVE_TABLE_MULTIPLY_COST;
+
+        assertEquals(0, ModExpPlan.chooseWindow(batch, Arrays.asList(0, 1, 2, 3), gmpCost));
+        assertEquals(0, ModExpPlan.chooseWindow(batch, Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7), gmpCost));
+        assertEquals(0, new ModExpPlan(batch, new boolean[batch.size()], MIN_GROUP, gmpCost).getTableCount());
+
+        assumeTrue(ModExpEngines.getSecure() instanceof GmpEngine);
+        assertEquals(gmpCost, ModExpEngines.getTableMultiplyCost(true));
+        assertEquals(0, new ModExpPlan(batch, new boolean[batch.size()]).getTableCount());
+    }
+
+    /**
+     * Compares the results of a batch with BigInteger.modPow()
+     * @param modexps the modexps of the batch
+     * @param results the results of the batch
+     */
+    private static void assertResults(ModExpBean[] modexps, BigInteger[] results) {
+        for(int i = 0; i < modexps.length; i++) {
+            assertEquals(modexps[i].getBase().modPow(modexps[i].getExponent(), modexps[i].getModulus()), results[i]);
+        }
+    }
+}
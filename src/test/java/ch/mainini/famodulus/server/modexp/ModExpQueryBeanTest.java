@@ -112,4 +112,25 @@ public class ModExpQueryBeanTest {
         bean.setBrief(false);
         assertFalse(bean.getBrief());
     }
+
+    /**
+     * Test if clearing keeps only the results of the modexps
+     */
+    @Test
+    public void clear() {
+        final ModExpBean modexp = new ModExpBean(BigInteger.TEN, BigInteger.ONE, BigInteger.ONE, BigInteger.ONE);
+        modexp.setSecure(false);
+        final ModExpQueryBean bean = new ModExpQueryBean(new ModExpBean[] { modexp });
+        bean.setModulus(BigInteger.TEN);
+        bean.setCache(false);
+        bean.clear();
+
+        assertNull(bean.getModulus());
+        assertNull(bean.getCache());
+        assertNull(bean.getBrief());
+        assertNull(modexp.getModulus());
+        assertNull(modexp.getBase());
+        assertNull(modexp.getSecure());
+        assertEquals(BigInteger.ONE, modexp.getResult());
+    }
 }
\ No newline at end of file
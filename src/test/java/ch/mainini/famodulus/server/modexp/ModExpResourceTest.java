@@ -15,6 +15,11 @@ import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.serial
 import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.serializeModexpResponse;
 import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.serializeQuery;
 import static ch.mainini.famodulus.server.modexp.ModExpResourceTestHelper.serializeResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.math.BigInteger;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
@@ -149,6 +154,55 @@ public class ModExpResourceTest {
                 Entity.entity("{\"brief\":true,\"modexps\":[{\"m\":\"3\",\"b\":\"2\",\"e\":\"3\"}]}", MediaType.APPLICATION_JSON), String.class));
     }
 
+    /**
+     * Test if the "secure" option is passed through for full responses,
+     * removed for brief ones and allows variable time calculation.
+     */
+    @Test
+    public void secureQuery() {
+        // variable time calculation also supports even moduli
+        assertEquals("{\"brief\":false,\"modexps\":[{\"m\":\"a\",\"b\":\"3\",\"e\":\"3\",\"r\":\"7\"}],\"secure\":false}", target.path(API_PATH).request().post(
+                Entity.entity("{\"brief\":false,\"secure\":false,\"modexps\":[{\"m\":\"a\",\"b\":\"3\",\"e\":\"3\"}]}", MediaType.APPLICATION_JSON), String.class));
+
+        // per-modexp override, brief response
+        assertEquals("{\"modexps\":[{\"r\":\"2\"},{\"r\":\"7\"}]}", target.path(API_PATH).request().post(
+                Entity.entity("{\"secure\":true,\"modexps\":[{\"m\":\"3\",\"b\":\"2\",\"e\":\"3\"},{\"m\":\"a\",\"b\":\"3\",\"e\":\"3\",\"secure\":false}]}",
+                        MediaType.APPLICATION_JSON), String.class));
+    }
+
+    /**
+     * Test if the group order is passed through for full responses with the
+     * original exponent, and the reduced exponent yields the same result.
+     */
+    @Test
+    public void orderQuery() {
+        assertEquals("{\"m\":\"17\",\"o\":\"b\",\"brief\":false,\"modexps\":[{\"b\":\"2\",\"e\":\"19\",\"r\":\"8\"}]}",
+                target.path(API_PATH).request().post(Entity.entity(
+                        "{\"m\":\"17\",\"o\":\"b\",\"brief\":false,\"modexps\":[{\"b\":\"2\",\"e\":\"19\"}]}",
+                        MediaType.APPLICATION_JSON), String.class));
+    }
+
+    /**
+     * Test if the factors p and q are passed through for full responses,
+     * removed for brief ones, and rejected if they do not match the modulus.
+     */
+    @Test
+    public void crtQuery() {
+        assertEquals("{\"brief\":false,\"modexps\":[{\"m\":\"8f\",\"b\":\"2\",\"e\":\"7\",\"p\":\"b\",\"q\":\"d\",\"r\":\"80\"}]}",
+                target.path(API_PATH).request().post(Entity.entity(
+                        "{\"brief\":false,\"modexps\":[{\"m\":\"8f\",\"b\":\"2\",\"e\":\"7\",\"p\":\"b\",\"q\":\"d\"}]}",
+                        MediaType.APPLICATION_JSON), String.class));
+
+        // default factors only apply to the matching modulus
+        assertEquals("{\"modexps\":[{\"r\":\"80\"},{\"r\":\"1\"}]}", target.path(API_PATH).request().post(
+                Entity.entity("{\"p\":\"b\",\"q\":\"d\",\"modexps\":[{\"m\":\"8f\",\"b\":\"2\",\"e\":\"7\"},{\"m\":\"b\",\"b\":\"3\",\"e\":\"5\"}]}",
+                        MediaType.APPLICATION_JSON), String.class));
+
+        assertEquals(HTTP_BAD_REQUEST, target.path(API_PATH).request().post(
+                Entity.entity("{\"modexps\":[{\"m\":\"8f\",\"b\":\"2\",\"e\":\"7\",\"p\":\"b\",\"q\":\"7\"}]}",
+                        MediaType.APPLICATION_JSON)).getStatus());
+    }
+
     /**
      * Test calculating a single, randomized modexp on the server.
      */
@@ -271,6 +325,182 @@ public class ModExpResourceTest {
         assertEquals(response, target.path(API_PATH).request().post(Entity.entity(query,MediaType.APPLICATION_JSON), String.class));
     }
 
+///////////////////// Streaming tests
+
+    /**
+     * Test streaming modexps with default values, expecting brief result format.
+     */
+    @Test
+    public void streamBrief() {
+        final String query = String.format("{\"m\":\"%s\"}\n%s\n\n%s\n%s", P_3072.toString(16),
+                serializeModexpNoModulus(MODEXP_1, false), serializeModexpNoModulus(MODEXP_2, false), serializeModexp(MODEXP_3, false));
+        final String response = String.format("%s\n%s\n%s\n", serializeModexpResponse(MODEXP_1[3]),
+                serializeModexpResponse(MODEXP_2[3]), serializeModexpResponse(MODEXP_3[3]));
+
+        assertEquals(response, target.path(API_PATH).path("stream").request().post(
+                Entity.entity(query, ModExpResource.MEDIA_TYPE_NDJSON), String.class));
+    }
+
+    /**
+     * Test streaming modexps, expecting full result format.
+     */
+    @Test
+    public void streamFull() {
+        final String query = String.format("{\"brief\":false}\n%s\n%s\n", serializeModexp(MODEXP_4, false), serializeModexp(MODEXP_5, false));
+        final String response = String.format("%s\n%s\n", serializeModexp(MODEXP_4, true), serializeModexp(MODEXP_5, true));
+
+        assertEquals(response, target.path(API_PATH).path("stream").request().post(
+                Entity.entity(query, ModExpResource.MEDIA_TYPE_NDJSON), String.class));
+    }
+
+    /**
+     * Test streaming with only a header and without any modexps.
+     */
+    @Test
+    public void streamHeaderOnly() {
+        assertEquals("", target.path(API_PATH).path("stream").request().post(
+                Entity.entity("{}", ModExpResource.MEDIA_TYPE_NDJSON), String.class));
+    }
+
+    /**
+     * Test streaming without header line.
+     */
+    @Test
+    public void streamEmpty() {
+        assertEquals(HTTP_BAD_REQUEST, target.path(API_PATH).path("stream").request().post(
+                Entity.entity("", ModExpResource.MEDIA_TYPE_NDJSON)).getStatus());
+    }
+
+///////////////////// Binary format tests
+
+    /**
+     * Test calculating modexps using the binary format, expecting brief result format.
+     * @throws IOException in case of trouble
+     */
+    @Test
+    public void binaryBrief() throws IOException {
+        final ByteArrayOutputStream query = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(query);
+        out.writeByte(ModExpBinaryProvider.VERSION);
+        out.writeByte(ModExpBinaryProvider.FLAG_BRIEF | ModExpBinaryProvider.FLAG_M);
+        writeBinaryValue(out, P_3072);
+        out.writeInt(2);
+        out.writeByte(ModExpBinaryProvider.FLAG_B | ModExpBinaryProvider.FLAG_E);
+        writeBinaryValue(out, MODEXP_1[1]);
+        writeBinaryValue(out, MODEXP_1[2]);
+        out.writeByte(ModExpBinaryProvider.FLAG_M | ModExpBinaryProvider.FLAG_B | ModExpBinaryProvider.FLAG_E);
+        writeBinaryValue(out, MODEXP_2[0]);
+        writeBinaryValue(out, MODEXP_2[1]);
+        writeBinaryValue(out, MODEXP_2[2]);
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(target.path(API_PATH).request(MediaType.APPLICATION_OCTET_STREAM).post(
+                Entity.entity(query.toByteArray(), MediaType.APPLICATION_OCTET_STREAM), byte[].class)));
+        assertEquals(ModExpBinaryProvider.VERSION, in.readUnsignedByte());
+        assertEquals(ModExpBinaryProvider.FLAG_BRIEF, in.readUnsignedByte());
+        assertEquals(2, in.readInt());
+        assertEquals(MODEXP_1[3], readBinaryValue(in));
+        assertEquals(MODEXP_2[3], readBinaryValue(in));
+        assertEquals(-1, in.read());
+    }
+
+    /**
+     * Test calculating modexps using the binary format, expecting full result format.
+     * @throws IOException in case of trouble
+     */
+    @Test
+    public void binaryFull() throws IOException {
+        final ByteArrayOutputStream query = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(query);
+        out.writeByte(ModExpBinaryProvider.VERSION);
+        out.writeByte(ModExpBinaryProvider.FLAG_E);
+        writeBinaryValue(out, BigInteger.valueOf(2));
+        out.writeInt(1);
+        out.writeByte(ModExpBinaryProvider.FLAG_M | ModExpBinaryProvider.FLAG_B);
+        writeBinaryValue(out, BigInteger.valueOf(11));
+        writeBinaryValue(out, BigInteger.valueOf(3));
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(target.path(API_PATH).request(MediaType.APPLICATION_OCTET_STREAM).post(
+                Entity.entity(query.toByteArray(), MediaType.APPLICATION_OCTET_STREAM), byte[].class)));
+        assertEquals(ModExpBinaryProvider.VERSION, in.readUnsignedByte());
+        assertEquals(ModExpBinaryProvider.FLAG_E, in.readUnsignedByte());
+        assertEquals(BigInteger.valueOf(2), readBinaryValue(in));
+        assertEquals(1, in.readInt());
+        assertEquals(ModExpBinaryProvider.FLAG_M | ModExpBinaryProvider.FLAG_B | ModExpBinaryProvider.FLAG_R, in.readUnsignedByte());
+        assertEquals(BigInteger.valueOf(11), readBinaryValue(in));
+        assertEquals(BigInteger.valueOf(3), readBinaryValue(in));
+        assertEquals(BigInteger.valueOf(9), readBinaryValue(in));
+        assertEquals(-1, in.read());
+    }
+
+    /**
+     * Send a binary query with the insecure flag set
+     * @throws IOException in case of trouble
+     */
+    @Test
+    public void binaryInsecure() throws IOException {
+        final ByteArrayOutputStream query = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(query);
+        out.writeByte(ModExpBinaryProvider.VERSION);
+        out.writeByte(ModExpBinaryProvider.FLAG_BRIEF | ModExpBinaryProvider.FLAG_INSECURE);
+        out.writeInt(1);
+        out.writeByte(ModExpBinaryProvider.FLAG_M | ModExpBinaryProvider.FLAG_B | ModExpBinaryProvider.FLAG_E | ModExpBinaryProvider.FLAG_INSECURE);
+        writeBinaryValue(out, BigInteger.valueOf(10));
+        writeBinaryValue(out, BigInteger.valueOf(3));
+        writeBinaryValue(out, BigInteger.valueOf(3));
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(target.path(API_PATH).request(MediaType.APPLICATION_OCTET_STREAM).post(
+                Entity.entity(query.toByteArray(), MediaType.APPLICATION_OCTET_STREAM), byte[].class)));
+        assertEquals(ModExpBinaryProvider.VERSION, in.readUnsignedByte());
+        assertEquals(ModExpBinaryProvider.FLAG_BRIEF, in.readUnsignedByte());
+        assertEquals(1, in.readInt());
+        assertEquals(BigInteger.valueOf(7), readBinaryValue(in));
+        assertEquals(-1, in.read());
+    }
+
+    /**
+     * Test calculating a modexp with factors using the binary format, expecting full result format.
+     * @throws IOException in case of trouble
+     */
+    @Test
+    public void binaryFactors() throws IOException {
+        final ByteArrayOutputStream query = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(query);
+        out.writeByte(ModExpBinaryProvider.VERSION);
+        out.writeByte(ModExpBinaryProvider.FLAG_M | ModExpBinaryProvider.FLAG_EXTENDED);
+        out.writeByte(ModExpBinaryProvider.EXTENDED_FLAG_P | ModExpBinaryProvider.EXTENDED_FLAG_Q);
+        writeBinaryValue(out, BigInteger.valueOf(143));
+        writeBinaryValue(out, BigInteger.valueOf(11));
+        writeBinaryValue(out, BigInteger.valueOf(13));
+        out.writeInt(1);
+        out.writeByte(ModExpBinaryProvider.FLAG_B | ModExpBinaryProvider.FLAG_E);
+        writeBinaryValue(out, BigInteger.valueOf(2));
+        writeBinaryValue(out, BigInteger.valueOf(7));
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(target.path(API_PATH).request(MediaType.APPLICATION_OCTET_STREAM).post(
+                Entity.entity(query.toByteArray(), MediaType.APPLICATION_OCTET_STREAM), byte[].class)));
+        assertEquals(ModExpBinaryProvider.VERSION, in.readUnsignedByte());
+        assertEquals(ModExpBinaryProvider.FLAG_M | ModExpBinaryProvider.FLAG_EXTENDED, in.readUnsignedByte());
+        assertEquals(ModExpBinaryProvider.EXTENDED_FLAG_P | ModExpBinaryProvider.EXTENDED_FLAG_Q, in.readUnsignedByte());
+        assertEquals(BigInteger.valueOf(143), readBinaryValue(in));
+        assertEquals(BigInteger.valueOf(11), readBinaryValue(in));
+        assertEquals(BigInteger.valueOf(13), readBinaryValue(in));
+        assertEquals(1, in.readInt());
+        assertEquals(ModExpBinaryProvider.FLAG_B | ModExpBinaryProvider.FLAG_E | ModExpBinaryProvider.FLAG_R, in.readUnsignedByte());
+        assertEquals(BigInteger.valueOf(2), readBinaryValue(in));
+        assertEquals(BigInteger.valueOf(7), readBinaryValue(in));
+        assertEquals(BigInteger.valueOf(128), readBinaryValue(in));
+        assertEquals(-1, in.read());
+    }
+
+    /**
+     * Send a truncated binary query
+     */
+    @Test
+    public void binaryTruncated() {
+        assertEquals(HTTP_BAD_REQUEST, target.path(API_PATH).request(MediaType.APPLICATION_OCTET_STREAM).post(
+                Entity.entity(new byte[] { ModExpBinaryProvider.VERSION, 0, 0, 0 }, MediaType.APPLICATION_OCTET_STREAM)).getStatus());
+    }
+
 ///////////////////// Incorrect payload tests
 
     /**
@@ -298,4 +528,31 @@ public class ModExpResourceTest {
         assertEquals(HTTP_INTERNAL_SERVER_ERROR, target.path(API_PATH).request().post(Entity.entity("{\"m\":23,\"b\":2,\"e\":3,\"modexps\":[]}", MediaType.APPLICATION_JSON)).getStatus());
         assertEquals(HTTP_BAD_REQUEST,           target.path(API_PATH).request().post(Entity.entity("{\"m\":23,\"b\":2,\"e\":3,\"modexps\":[\"m\":\"\"]}", MediaType.APPLICATION_JSON)).getStatus());
     }
+
+///////////////////// Helpers
+
+    /**
+     * Writes a non-negative value in binary format.
+     * @param out the stream to write to
+     * @param value the value to write
+     * @throws IOException in case of trouble
+     */
+    private static void writeBinaryValue(DataOutputStream out, BigInteger value) throws IOException {
+        final byte[] bytes = value.toByteArray();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a value in binary format.
+     * @param in the stream to read from
+     * @return the value read
+     * @throws IOException in case of trouble
+     */
+    private static BigInteger readBinaryValue(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        final byte[] bytes = new byte[Math.abs(length)];
+        in.readFully(bytes);
+        return new BigInteger(length < 0 ? -1 : 1, bytes);
+    }
 }
\ No newline at end of file
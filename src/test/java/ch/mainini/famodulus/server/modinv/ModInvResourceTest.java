@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.modinv;
+
+import ch.mainini.famodulus.server.Server;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit test for ModInvResource
+ * @author Pascal Mainini
+ */
+public class ModInvResourceTest {
+
+//////////////////////////////////////// Constants
+
+    private static final String API_PATH = "modinv";
+
+    private static final SecureRandom RND = new SecureRandom();
+
+    private static final int HTTP_BAD_REQUEST = 400;
+    private static final int HTTP_METHOD_NOT_ALLOWED = 405;
+
+//////////////////////////////////////// Fields
+
+    private static HttpServer server;
+    private static WebTarget target;
+
+
+//////////////////////////////////////// Methods
+
+///////////////////// Initialization
+
+    /**
+     * Pre-test setup
+     * @throws Exception in case of trouble
+     */
+    @BeforeClass
+    public static void setUp() throws Exception {
+        server = Server.startServer();
+
+        final Client c = ClientBuilder.newClient();
+        target = c.target(Server.DEFAULT_BASE_URI + Server.API_PATH);
+    }
+
+    /**
+     * After-test cleanup
+     * @throws Exception in case of trouble
+     */
+    @AfterClass
+    public static void tearDown() throws Exception {
+        server.shutdownNow();
+    }
+
+///////////////////// Tests
+
+    /**
+     * Test performing a simple HTTP GET and checks for the appropriate status code.
+     */
+    @Test
+    public void methodGet() {
+        assertEquals(HTTP_METHOD_NOT_ALLOWED, target.path(API_PATH).request().get().getStatus());
+    }
+
+    /**
+     * Test simple inverses with brief and full response, including a value without inverse
+     */
+    @Test
+    public void modinvSimple() {
+        // values are hex: 3^-1 mod 17 = 6, 2^-1 mod 17 = 9, 0 has no inverse, 3^-1 mod 10 = 7
+        assertEquals("{\"modexps\":[{\"r\":\"6\"},{\"r\":\"9\"},{},{\"r\":\"7\"}]}", target.path(API_PATH).request().post(Entity.entity(
+                "{\"m\":\"11\",\"modexps\":[{\"b\":\"3\"},{\"b\":\"2\"},{\"b\":\"0\"},{\"m\":\"a\",\"b\":\"3\"}]}", MediaType.APPLICATION_JSON), String.class));
+        assertEquals("{\"m\":\"11\",\"brief\":false,\"modexps\":[{\"b\":\"3\",\"r\":\"6\"}]}", target.path(API_PATH).request().post(Entity.entity(
+                "{\"m\":\"11\",\"brief\":false,\"modexps\":[{\"b\":\"3\"}]}", MediaType.APPLICATION_JSON), String.class));
+    }
+
+    /**
+     * Test many random inverses sharing a modulus
+     */
+    @Test
+    public void modinvRandom() {
+        final BigInteger modulus = BigInteger.probablePrime(1024, RND);
+        final StringBuilder query = new StringBuilder(String.format("{\"m\":\"%s\",\"modexps\":[", modulus.toString(16)));
+        final StringBuilder expected = new StringBuilder("{\"modexps\":[");
+        for(int i = 0; i < 50; i++) {
+            final BigInteger value = new BigInteger(1023, RND).add(BigInteger.ONE);
+            query.append(String.format("{\"b\":\"%s\"},", value.toString(16)));
+            expected.append(String.format("{\"r\":\"%s\"},", value.modInverse(modulus).toString(16)));
+        }
+        query.setCharAt(query.length() - 1, ']');
+        query.append('}');
+        expected.setCharAt(expected.length() - 1, ']');
+        expected.append('}');
+
+        assertEquals(expected.toString(),
+                target.path(API_PATH).request().post(Entity.entity(query.toString(), MediaType.APPLICATION_JSON), String.class));
+    }
+
+    /**
+     * Test if queries without modulus or with an invalid modulus are rejected
+     */
+    @Test
+    public void modinvInvalid() {
+        assertEquals(HTTP_BAD_REQUEST, target.path(API_PATH).request().post(Entity.entity(
+                "{\"modexps\":[{\"b\":\"3\"}]}", MediaType.APPLICATION_JSON)).getStatus());
+        assertEquals(HTTP_BAD_REQUEST, target.path(API_PATH).request().post(Entity.entity(
+                "{\"m\":\"1\",\"modexps\":[{\"b\":\"3\"}]}", MediaType.APPLICATION_JSON)).getStatus());
+        assertEquals(HTTP_BAD_REQUEST, target.path(API_PATH).request().post(Entity.entity(
+                "{\"m\":\"11\",\"modexps\":[]}", MediaType.APPLICATION_JSON)).getStatus());
+    }
+}
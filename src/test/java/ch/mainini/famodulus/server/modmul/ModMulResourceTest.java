@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.modmul;
+
+import ch.mainini.famodulus.server.Server;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit test for ModMulResource
+ * @author Pascal Mainini
+ */
+public class ModMulResourceTest {
+
+//////////////////////////////////////// Constants
+
+    private static final String API_PATH = "modmul";
+    private static final String PRODUCT_PATH = "modmul/product";
+
+    private static final SecureRandom RND = new SecureRandom();
+
+    private static final int HTTP_BAD_REQUEST = 400;
+    private static final int HTTP_METHOD_NOT_ALLOWED = 405;
+
+//////////////////////////////////////// Fields
+
+    private static HttpServer server;
+    private static WebTarget target;
+
+
+//////////////////////////////////////// Methods
+
+///////////////////// Initialization
+
+    /**
+     * Pre-test setup
+     * @throws Exception in case of trouble
+     */
+    @BeforeClass
+    public static void setUp() throws Exception {
+        server = Server.startServer();
+
+        final Client c = ClientBuilder.newClient();
+        target = c.target(Server.DEFAULT_BASE_URI + Server.API_PATH);
+    }
+
+    /**
+     * After-test cleanup
+     * @throws Exception in case of trouble
+     */
+    @AfterClass
+    public static void tearDown() throws Exception {
+        server.shutdownNow();
+    }
+
+///////////////////// Tests
+
+    /**
+     * Test performing a simple HTTP GET and checks for the appropriate status code.
+     */
+    @Test
+    public void methodGet() {
+        assertEquals(HTTP_METHOD_NOT_ALLOWED, target.path(API_PATH).request().get().getStatus());
+        assertEquals(HTTP_METHOD_NOT_ALLOWED, target.path(PRODUCT_PATH).request().get().getStatus());
+    }
+
+    /**
+     * Test simple element-wise products with default values, brief and full response
+     */
+    @Test
+    public void modmulSimple() {
+        // values are hex: 3 * 5 mod 17 = 15, 4 * 5 mod 17 = 3, 3 * 3 mod 7 = 2
+        assertEquals("{\"modexps\":[{\"r\":\"f\"},{\"r\":\"3\"},{\"r\":\"2\"}]}", target.path(API_PATH).request().post(Entity.entity(
+                "{\"m\":\"11\",\"e\":\"5\",\"modexps\":[{\"b\":\"3\"},{\"b\":\"4\"},{\"m\":\"7\",\"b\":\"3\",\"e\":\"3\"}]}", MediaType.APPLICATION_JSON), String.class));
+        assertEquals("{\"m\":\"11\",\"brief\":false,\"modexps\":[{\"b\":\"3\",\"e\":\"5\",\"r\":\"f\"}]}", target.path(API_PATH).request().post(Entity.entity(
+                "{\"m\":\"11\",\"brief\":false,\"modexps\":[{\"b\":\"3\",\"e\":\"5\"}]}", MediaType.APPLICATION_JSON), String.class));
+    }
+
+    /**
+     * Test the product of many random values with brief and full response
+     */
+    @Test
+    public void productRandom() {
+        final BigInteger modulus = BigInteger.probablePrime(1024, RND);
+        final StringBuilder query = new StringBuilder(String.format("{\"m\":\"%s\",\"modexps\":[", modulus.toString(16)));
+        BigInteger expected = BigInteger.ONE;
+        for(int i = 0; i < 500; i++) {
+            final BigInteger value = new BigInteger(1024, RND);
+            expected = expected.multiply(value).mod(modulus);
+            query.append(String.format("{\"b\":\"%s\"},", value.toString(16)));
+        }
+        query.setCharAt(query.length() - 1, ']');
+        query.append('}');
+
+        assertEquals(String.format("{\"r\":\"%s\"}", expected.toString(16)),
+                target.path(PRODUCT_PATH).request().post(Entity.entity(query.toString(), MediaType.APPLICATION_JSON), String.class));
+        query.insert(1, "\"brief\":false,");
+        assertEquals(String.format("{\"m\":\"%s\",\"r\":\"%s\"}", modulus.toString(16), expected.toString(16)),
+                target.path(PRODUCT_PATH).request().post(Entity.entity(query.toString(), MediaType.APPLICATION_JSON), String.class));
+    }
+
+    /**
+     * Test if invalid queries are rejected
+     */
+    @Test
+    public void modmulInvalid() {
+        assertEquals(HTTP_BAD_REQUEST, target.path(API_PATH).request().post(Entity.entity(
+                "{\"m\":\"11\",\"modexps\":[{\"b\":\"3\"}]}", MediaType.APPLICATION_JSON)).getStatus());
+        assertEquals(HTTP_BAD_REQUEST, target.path(API_PATH).request().post(Entity.entity(
+                "{\"m\":\"0\",\"modexps\":[{\"b\":\"3\",\"e\":\"5\"}]}", MediaType.APPLICATION_JSON)).getStatus());
+        assertEquals(HTTP_BAD_REQUEST, target.path(PRODUCT_PATH).request().post(Entity.entity(
+                "{\"modexps\":[{\"m\":\"11\",\"b\":\"3\"},{\"m\":\"13\",\"b\":\"2\"}]}", MediaType.APPLICATION_JSON)).getStatus());
+        assertEquals(HTTP_BAD_REQUEST, target.path(PRODUCT_PATH).request().post(Entity.entity(
+                "{\"m\":\"11\",\"modexps\":[]}", MediaType.APPLICATION_JSON)).getStatus());
+    }
+}
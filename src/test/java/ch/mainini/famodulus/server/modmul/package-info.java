@@ -0,0 +1,4 @@
+/**
+ * Test code for package ch.mainini.famodulus.server.modmul.
+ */
+package ch.mainini.famodulus.server.modmul;
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.multiexp;
+
+import ch.mainini.famodulus.server.Server;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit test for MultiExpResource
+ * @author Pascal Mainini
+ */
+public class MultiExpResourceTest {
+
+//////////////////////////////////////// Constants
+
+    private static final String API_PATH = "multiexp";
+
+    private static final SecureRandom RND = new SecureRandom();
+
+    private static final int HTTP_BAD_REQUEST = 400;
+    private static final int HTTP_METHOD_NOT_ALLOWED = 405;
+
+//////////////////////////////////////// Fields
+
+    private static HttpServer server;
+    private static WebTarget target;
+
+
+//////////////////////////////////////// Methods
+
+///////////////////// Initialization
+
+    /**
+     * Pre-test setup
+     * @throws Exception in case of trouble
+     */
+    @BeforeClass
+    public static void setUp() throws Exception {
+        server = Server.startServer();
+
+        final Client c = ClientBuilder.newClient();
+        target = c.target(Server.DEFAULT_BASE_URI + Server.API_PATH);
+    }
+
+    /**
+     * After-test cleanup
+     * @throws Exception in case of trouble
+     */
+    @AfterClass
+    public static void tearDown() throws Exception {
+        server.shutdownNow();
+    }
+
+///////////////////// Tests
+
+    /**
+     * Test performing a simple HTTP GET and checks for the appropriate status code.
+     */
+    @Test
+    public void methodGet() {
+        assertEquals(HTTP_METHOD_NOT_ALLOWED, target.path(API_PATH).request().get().getStatus());
+    }
+
+    /**
+     * Test a simple multiexp with brief and full response
+     */
+    @Test
+    public void multiexpSimple() {
+        // values are hex: 3^5 * 2^3 mod 17 = 5 * 8 mod 17 = 6
+        assertEquals("{\"r\":\"6\"}", target.path(API_PATH).request().post(Entity.entity(
+                "{\"m\":\"11\",\"modexps\":[{\"b\":\"3\",\"e\":\"5\"},{\"b\":\"2\",\"e\":\"3\"}]}", MediaType.APPLICATION_JSON), String.class));
+        assertEquals("{\"m\":\"11\",\"r\":\"6\"}", target.path(API_PATH).request().post(Entity.entity(
+                "{\"m\":\"11\",\"brief\":false,\"modexps\":[{\"b\":\"3\",\"e\":\"5\"},{\"b\":\"2\",\"e\":\"3\"}]}", MediaType.APPLICATION_JSON), String.class));
+    }
+
+    /**
+     * Test a multiexp of many random modexps with default base
+     */
+    @Test
+    public void multiexpRandom() {
+        final BigInteger modulus = BigInteger.probablePrime(1024, RND);
+        final BigInteger base = new BigInteger(1024, RND);
+        final StringBuilder query = new StringBuilder(String.format("{\"m\":\"%s\",\"b\":\"%s\",\"modexps\":[", modulus.toString(16), base.toString(16)));
+        BigInteger expected = BigInteger.ONE;
+        for(int i = 0; i < 50; i++) {
+            final BigInteger other = new BigInteger(1024, RND);
+            final BigInteger exponent = new BigInteger(1024, RND);
+            expected = expected.multiply(other.modPow(exponent, modulus)).multiply(base.modPow(exponent, modulus)).mod(modulus);
+            query.append(String.format("{\"b\":\"%s\",\"e\":\"%s\"},{\"e\":\"%s\"},", other.toString(16), exponent.toString(16), exponent.toString(16)));
+        }
+        query.setCharAt(query.length() - 1, ']');
+        query.append('}');
+
+        assertEquals(String.format("{\"r\":\"%s\"}", expected.toString(16)),
+                target.path(API_PATH).request().post(Entity.entity(query.toString(), MediaType.APPLICATION_JSON), String.class));
+    }
+
+    /**
+     * Test a multiexp mixing modexps calculated in constant and in variable time
+     */
+    @Test
+    public void multiexpMixed() {
+        final BigInteger modulus = BigInteger.probablePrime(1024, RND);
+        final StringBuilder query = new StringBuilder(String.format("{\"m\":\"%s\",\"secure\":false,\"modexps\":[", modulus.toString(16)));
+        BigInteger expected = BigInteger.ONE;
+        for(int i = 0; i < 10; i++) {
+            final BigInteger base = new BigInteger(1024, RND);
+            final BigInteger exponent = new BigInteger(1024, RND);
+            expected = expected.multiply(base.modPow(exponent, modulus)).mod(modulus);
+            query.append(String.format("{\"b\":\"%s\",\"e\":\"%s\",\"secure\":%b},", base.toString(16), exponent.toString(16), i % 2 == 0));
+        }
+        query.setCharAt(query.length() - 1, ']');
+        query.append('}');
+
+        assertEquals(String.format("{\"r\":\"%s\"}", expected.toString(16)),
+                target.path(API_PATH).request().post(Entity.entity(query.toString(), MediaType.APPLICATION_JSON), String.class));
+    }
+
+    /**
+     * Test if modexps with different moduli are rejected
+     */
+    @Test
+    public void multiexpDifferentModuli() {
+        assertEquals(HTTP_BAD_REQUEST, target.path(API_PATH).request().post(Entity.entity(
+                "{\"modexps\":[{\"m\":\"11\",\"b\":\"3\",\"e\":\"5\"},{\"m\":\"13\",\"b\":\"2\",\"e\":\"3\"}]}", MediaType.APPLICATION_JSON)).getStatus());
+    }
+
+    /**
+     * Test if negative exponents and missing values are rejected
+     */
+    @Test
+    public void multiexpInvalid() {
+        assertEquals(HTTP_BAD_REQUEST, target.path(API_PATH).request().post(Entity.entity(
+                "{\"m\":\"11\",\"secure\":false,\"modexps\":[{\"b\":\"3\",\"e\":\"-5\"}]}", MediaType.APPLICATION_JSON)).getStatus());
+        assertEquals(HTTP_BAD_REQUEST, target.path(API_PATH).request().post(Entity.entity(
+                "{\"m\":\"11\",\"modexps\":[{\"b\":\"3\",\"e\":\"-5\"}]}", MediaType.APPLICATION_JSON)).getStatus());
+        assertEquals(HTTP_BAD_REQUEST, target.path(API_PATH).request().post(Entity.entity(
+                "{\"m\":\"11\",\"modexps\":[{\"e\":\"5\"}]}", MediaType.APPLICATION_JSON)).getStatus());
+        assertEquals(HTTP_BAD_REQUEST, target.path(API_PATH).request().post(Entity.entity(
+                "{\"m\":\"11\",\"modexps\":[{\"b\":\"3\"}]}", MediaType.APPLICATION_JSON)).getStatus());
+        assertEquals(HTTP_BAD_REQUEST, target.path(API_PATH).request().post(Entity.entity(
+                "{\"modexps\":[{\"b\":\"3\",\"e\":\"5\"}]}", MediaType.APPLICATION_JSON)).getStatus());
+    }
+}
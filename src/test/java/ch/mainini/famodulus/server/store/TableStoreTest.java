@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.store;
+
+import ch.mainini.famodulus.server.compute.FixedBaseTable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for TableStore
+ * @author Pascal Mainini
+ */
+public class TableStoreTest {
+
+//////////////////////////////////////// Constants
+
+    private static final SecureRandom RND = new SecureRandom();
+
+    private static final BigInteger MODULUS = BigInteger.probablePrime(512, RND);
+    private static final BigInteger BASE = new BigInteger(511, RND);
+    private static final BigInteger OTHER_BASE = new BigInteger(511, RND);
+    private static final BigInteger EXPONENT = new BigInteger(256, RND);
+
+    private static final int BITS = 256;
+    private static final int WINDOW = 4;
+
+//////////////////////////////////////// Fields
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Test if added tables are mapped and found again after reopening the store
+     * @throws IOException in case of an error
+     */
+    @Test
+    public void addAndReopen() throws IOException {
+        final File file = new File(folder.getRoot(), "tables");
+        try(TableStore store = new TableStore(file)) {
+            assertNull(store.get(BASE, MODULUS));
+            final FixedBaseTable table = store.add(new FixedBaseTable(BASE, MODULUS, BITS, WINDOW));
+            assertFalse(table.isOnHeap());
+            assertSame(table, store.get(BASE, MODULUS));
+            assertEquals(BASE.modPow(EXPONENT, MODULUS), table.modPow(EXPONENT));
+        }
+
+        try(TableStore store = new TableStore(file)) {
+            assertEquals(1, store.size());
+            final FixedBaseTable table = store.get(BASE, MODULUS);
+            assertNotNull(table);
+            assertFalse(table.isOnHeap());
+            assertEquals(BITS, table.getExponentBits());
+            assertEquals(BASE.modPow(EXPONENT, MODULUS), table.modPow(EXPONENT));
+        }
+    }
+
+    /**
+     * Test if records with an invalid checksum are skipped, keeping the following ones
+     * @throws IOException in case of an error
+     */
+    @Test
+    public void corruptRecord() throws IOException {
+        final File file = new File(folder.getRoot(), "tables");
+        try(TableStore store = new TableStore(file)) {
+            store.add(new FixedBaseTable(BASE, MODULUS, BITS, WINDOW));
+            store.add(new FixedBaseTable(OTHER_BASE, MODULUS, BITS, WINDOW));
+        }
+
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(256);
+            final int corrupted = raf.read() ^ 1;
+            raf.seek(256);
+            raf.write(corrupted);
+        }
+
+        try(TableStore store = new TableStore(file)) {
+            assertNull(store.get(BASE, MODULUS));
+            assertEquals(OTHER_BASE.modPow(EXPONENT, MODULUS), store.get(OTHER_BASE, MODULUS).modPow(EXPONENT));
+        }
+    }
+
+    /**
+     * Test if a truncated record at the end is dropped and overwritten by the next one
+     * @throws IOException in case of an error
+     */
+    @Test
+    public void truncatedRecord() throws IOException {
+        final File file = new File(folder.getRoot(), "tables");
+        final long length;
+        try(TableStore store = new TableStore(file)) {
+            store.add(new FixedBaseTable(BASE, MODULUS, BITS, WINDOW));
+            length = store.getBytes();
+            store.add(new FixedBaseTable(OTHER_BASE, MODULUS, BITS, WINDOW));
+        }
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 100);
+        }
+
+        try(TableStore store = new TableStore(file)) {
+            assertEquals(1, store.size());
+            assertEquals(length, store.getBytes());
+            store.add(new FixedBaseTable(OTHER_BASE, MODULUS, BITS, WINDOW));
+        }
+        try(TableStore store = new TableStore(file)) {
+            assertEquals(2, store.size());
+            assertEquals(file.length(), store.getBytes());
+            assertEquals(BASE.modPow(EXPONENT, MODULUS), store.get(BASE, MODULUS).modPow(EXPONENT));
+        }
+    }
+
+    /**
+     * Test if files which are not a table store are rejected
+     * @throws IOException in case of an error
+     */
+    @Test(expected=IOException.class)
+    public void invalidFile() throws IOException {
+        final File file = folder.newFile();
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeLong(42);
+        }
+        new TableStore(file).close();
+    }
+
+    /**
+     * Test if a disabled store returns tables as given
+     */
+    @Test
+    public void disabled() {
+        final TableStore store = new TableStore();
+        final FixedBaseTable table = new FixedBaseTable(BASE, MODULUS, BITS, WINDOW);
+        assertFalse(store.isEnabled());
+        assertSame(table, store.add(table));
+        assertNull(store.get(BASE, MODULUS));
+    }
+}
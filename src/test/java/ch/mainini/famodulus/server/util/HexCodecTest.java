@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.util;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Unit test for HexCodec
+ * @author Pascal Mainini
+ */
+public class HexCodecTest {
+
+//////////////////////////////////////// Constants
+
+    private static final SecureRandom RND = new SecureRandom();
+
+//////////////////////////////////////// Methods
+
+    /**
+     * Test encoding and decoding random values against BigInteger
+     */
+    @Test
+    public void random() {
+        for(int bits = 1; bits < 600; bits += 7) {
+            final BigInteger value = new BigInteger(bits, RND);
+            final BigInteger negative = value.negate();
+            assertEquals(value.toString(16), HexCodec.encode(value));
+            assertEquals(negative.toString(16), HexCodec.encode(negative));
+            assertEquals(value, HexCodec.decode(value.toString(16)));
+            assertEquals(negative, HexCodec.decode(negative.toString(16)));
+            assertEquals(value, HexCodec.decode(value.toString(16).toUpperCase()));
+        }
+    }
+
+    /**
+     * Test encoding and decoding edge cases
+     */
+    @Test
+    public void edgeCases() {
+        assertEquals("0", HexCodec.encode(BigInteger.ZERO));
+        assertEquals("f", HexCodec.encode(BigInteger.valueOf(15)));
+        assertEquals("10", HexCodec.encode(BigInteger.valueOf(16)));
+        assertEquals("-80", HexCodec.encode(BigInteger.valueOf(-128)));
+        assertEquals(BigInteger.ZERO, HexCodec.decode("0"));
+        assertEquals(BigInteger.ZERO, HexCodec.decode("-0000"));
+        assertEquals(BigInteger.valueOf(255), HexCodec.decode("+00ff"));
+        assertEquals(BigInteger.valueOf(0xabc), HexCodec.decode("x abc,", 2, 5));
+        assertEquals("x=-1f", HexCodec.encode(BigInteger.valueOf(-31), new StringBuilder("x=")).toString());
+    }
+
+    /**
+     * Test decoding an empty string
+     */
+    @Test(expected = NumberFormatException.class)
+    public void decodeEmpty() {
+        HexCodec.decode("");
+    }
+
+    /**
+     * Test decoding only a sign
+     */
+    @Test(expected = NumberFormatException.class)
+    public void decodeSignOnly() {
+        HexCodec.decode("-");
+    }
+
+    /**
+     * Test decoding an invalid digit
+     */
+    @Test(expected = NumberFormatException.class)
+    public void decodeInvalid() {
+        HexCodec.decode("12g4");
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Pascal Mainini
+ * Licensed under MIT license, see included file LICENSE or
+ * http://opensource.org/licenses/MIT
+ */
+package ch.mainini.famodulus.server.warmup;
+
+import ch.mainini.famodulus.server.Server;
+import ch.mainini.famodulus.server.group.GroupRegistry;
+import java.io.File;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.SecureRandom;
+import java.util.Collections;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test for ReadyResource and WarmUp
+ * @author Pascal Mainini
+ */
+public class ReadyResourceTest {
+
+//////////////////////////////////////// Constants
+
+    private static final String API_PATH = "ready";
+
+    private static final SecureRandom RND = new SecureRandom();
+
+    private static final BigInteger P_512 = BigInteger.probablePrime(512, RND);
+
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_SERVICE_UNAVAILABLE = 503;
+
+//////////////////////////////////////// Fields
+
+    @ClassRule
+    public static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+    private static HttpServer server;
+    private static WebTarget target;
+    private static int groupsBefore;
+
+
+//////////////////////////////////////// Methods
+
+///////////////////// Initialization
+
+    /**
+     * Pre-test setup, starting the server with a warm-up registering a group
+     * @throws Exception in case of trouble
+     */
+    @BeforeClass
+    public static void setUp() throws Exception {
+        final File groups = FOLDER.newFile();
+        Files.write(groups.toPath(), Collections.singletonList(String.format("{\"m\":\"%s\",\"g\":\"3\"}", P_512.toString(16))),
+                StandardCharsets.UTF_8);
+
+        groupsBefore = GroupRegistry.getDefault().size();
+        System.setProperty("famodulus.warmup.bits", "256,512");
+        System.setProperty("famodulus.warmup.iterations", "2");
+        System.setProperty("famodulus.warmup.groups", groups.getPath());
+        try {
+            server = Server.startServer();
+        } finally {
+            System.clearProperty("famodulus.warmup.bits");
+            System.clearProperty("famodulus.warmup.iterations");
+            System.clearProperty("famodulus.warmup.groups");
+        }
+
+        final Client c = ClientBuilder.newClient();
+        target = c.target(Server.DEFAULT_BASE_URI + Server.API_PATH);
+    }
+
+    /**
+     * After-test cleanup
+     * @throws Exception in case of trouble
+     */
+    @AfterClass
+    public static void tearDown() throws Exception {
+        server.shutdownNow();
+    }
+
+///////////////////// Tests
+
+    /**
+     * Test if the server is ready after the warm-up and registered the configured group
+     */
+    @Test
+    public void ready() {
+        assertTrue(WarmUp.isReady());
+        assertEquals(groupsBefore + 1, GroupRegistry.getDefault().size());
+
+        final Response response = target.path(API_PATH).request().get();
+        assertEquals(HTTP_OK, response.getStatus());
+        assertEquals("ready", response.readEntity(String.class));
+    }
+
+    /**
+     * Test if the server reports not to be ready until a warm-up has finished
+     */
+    @Test
+    public void notReady() {
+        WarmUp.reset();
+        try {
+            assertFalse(WarmUp.isReady());
+            assertEquals(HTTP_SERVICE_UNAVAILABLE, target.path(API_PATH).request().get().getStatus());
+        } finally {
+            new WarmUp(new ApplicationHandler(new ResourceConfig().packages("ch.mainini.famodulus")),
+                    URI.create(Server.DEFAULT_BASE_URI + Server.API_PATH + "/"), "", 0, null).run();
+        }
+        assertTrue(WarmUp.isReady());
+        assertEquals(HTTP_OK, target.path(API_PATH).request().get().getStatus());
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Test code for package ch.mainini.famodulus.server.warmup.
+ */
+package ch.mainini.famodulus.server.warmup;